@@ -0,0 +1,90 @@
+package com.partner.app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.partner.app.DemoApplication;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Throughput of 32 threads reading partners through the JDBC DAO, with pools of 2 to 32 connections. Flyway
+ * holds two connections while it migrates the schema, a smaller pool does not start.
+ * Change the number of threads with -Djmh.args="ConnectionPoolBenchmark -t 8".
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class ConnectionPoolBenchmark {
+
+	private static final long FIRST_ID = 10;
+
+	private static final int ROWS = 10_000;
+
+	private static final int PAGE_SIZE = 100;
+
+	@Param({ "2", "4", "8", "16", "32" })
+	private int poolSize;
+
+	private ConfigurableApplicationContext context;
+
+	private PartnerDao dao;
+
+	@Setup
+	public void setUp() throws Exception {
+		context = new SpringApplicationBuilder(DemoApplication.class).web(WebApplicationType.NONE).run(
+				"--spring.datasource.url=jdbc:h2:mem:benchmark-pool-" + poolSize,
+				"--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+				"--spring.datasource.hikari.minimum-idle=" + poolSize,
+				"--partner.id-filter.enabled=false", "--spring.main.banner-mode=off", "--logging.level.root=warn");
+		dao = context.getBean(PartnerDao.class);
+		List<Partner> batch = new ArrayList<>();
+		for (long id = FIRST_ID; id < FIRST_ID + ROWS; id++) {
+			batch.add(new Partner(id, "Partner" + id, "ref" + id, Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01")));
+		}
+		dao.insertPartners(batch);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Partner selectPartner() throws Exception {
+		return dao.selectPartner(FIRST_ID + ThreadLocalRandom.current().nextInt(ROWS));
+	}
+
+	@Benchmark
+	public List<Partner> selectPartnersAfter() throws Exception {
+		return dao.selectPartnersAfter(FIRST_ID + ThreadLocalRandom.current().nextInt(ROWS - PAGE_SIZE), PAGE_SIZE,
+				null);
+	}
+}
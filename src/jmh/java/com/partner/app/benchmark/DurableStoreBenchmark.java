@@ -0,0 +1,97 @@
+package com.partner.app.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import com.partner.app.dao.DurablePartnerStore;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Time a durable store takes to restart from its snapshot. For 5 million partners run it with
+ * -p partners=5000000 -jvmArgs -Xmx4g.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DurableStoreBenchmark {
+
+	@Param({ "1000000" })
+	private int partners;
+
+	private Path directory;
+
+	private DurablePartnerStore restarted;
+
+	@Setup
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("partner-store");
+		DurablePartnerStore store = open();
+		List<Partner> batch = new ArrayList<>();
+		for (long id = 1; id <= partners; id++) {
+			batch.add(new Partner(id, "Partner" + id, "ref" + id, Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01")));
+			if (batch.size() == 10_000) {
+				store.insertPartners(batch);
+				batch.clear();
+			}
+		}
+		store.insertPartners(batch);
+		store.shutdown();
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeStore() {
+		if (restarted != null)
+			restarted.shutdown();
+		restarted = null;
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public DurablePartnerStore restart() throws Exception {
+		restarted = open();
+		return restarted;
+	}
+
+	private DurablePartnerStore open() throws Exception {
+		DurablePartnerStore store = new DurablePartnerStore(mock(PartnerDao.class), directory.toString(),
+				DataSize.ofMegabytes(64), true, 1_000_000);
+		store.load();
+		return store;
+	}
+}
@@ -0,0 +1,124 @@
+package com.partner.app.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.partner.app.DemoApplication;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Concurrency ceiling of the Tomcat threads against virtual threads. Some clients send the headers of a POST and
+ * then stall in the middle of the body, which blocks the thread serving each of them, while the benchmark reads a
+ * partner. With 200 Tomcat threads and 400 stalled requests every read waits for a thread and times out after
+ * 2 seconds, with virtual threads it is served at once.
+ * <p>
+ * The virtual mode needs Java 21, run it with: mvn -P jmh,java21 verify -Djmh.args="ExecutionMode"
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 4)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+	private static final long ID = 1_000_000_000;
+
+	private static final int MAX_THREADS = 200;
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+	@Param({ "platform", "virtual" })
+	private String execution;
+
+	@Param({ "0", "100", "400" })
+	private int stalled;
+
+	private ConfigurableApplicationContext context;
+
+	private final List<Socket> sockets = new ArrayList<>();
+
+	private HttpClient client;
+
+	private HttpRequest request;
+
+	@Setup
+	public void setUp() throws Exception {
+		context = new SpringApplicationBuilder(DemoApplication.class).run("--server.port=0",
+				"--partner.execution=" + execution, "--server.tomcat.max-threads=" + MAX_THREADS,
+				"--server.connection-timeout=10m", "--partner.id-filter.enabled=false",
+				"--spring.main.banner-mode=off", "--logging.level.root=warn",
+				// The stalled requests fail when their sockets are closed.
+				"--logging.level.org.springframework.web=error");
+		context.getBean(PartnerDao.class).insertPartners(Collections.singletonList(
+				new Partner(ID, "Partner", "ref", Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01"))));
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		byte[] stall = ("POST /api/partners HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+				+ "Content-Length: 1000\r\n\r\n{").getBytes(StandardCharsets.US_ASCII);
+		for (int i = 0; i < stalled; i++) {
+			Socket socket = new Socket("localhost", port);
+			OutputStream out = socket.getOutputStream();
+			out.write(stall);
+			out.flush();
+			sockets.add(socket);
+		}
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/partners/" + ID))
+				.timeout(TIMEOUT).build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		context.close();
+	}
+
+	/**
+	 * Reads a partner.
+	 * @return Status of the response, 0 if it timed out.
+	 * @throws Exception Error sending the request.
+	 */
+	@Benchmark
+	public int getPartner() throws Exception {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		} catch (HttpTimeoutException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.partner.app.benchmark;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.partner.app.DemoApplication;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Cost of the calls to PartnerController from the dispatcher servlet to the database and back, through MockMvc so
+ * the network is left out.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartnerControllerBenchmark {
+
+	/**
+	 * Far from the IDs given to the partners created by the benchmark.
+	 */
+	private static final long FIRST_ID = 1_000_000_000;
+
+	private static final int PARTNERS = 10_000;
+
+	private static final String PARTNER = "{\"name\":\"Benchmark\",\"reference\":\"ref\",\"locale\":\"en_GB\","
+			+ "\"expirationTime\":\"2030-01-01\"}";
+
+	private ConfigurableApplicationContext context;
+
+	private MockMvc mockMvc;
+
+	@Setup
+	public void setUp() throws Exception {
+		context = new SpringApplicationBuilder(DemoApplication.class).run("--server.port=0",
+				"--partner.id-filter.enabled=false", "--spring.main.banner-mode=off", "--logging.level.root=warn");
+		mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+		List<Partner> partners = new ArrayList<>();
+		for (long id = FIRST_ID; id < FIRST_ID + PARTNERS; id++) {
+			partners.add(new Partner(id, "Partner" + id, "ref" + id, Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01")));
+		}
+		context.getBean(PartnerDao.class).insertPartners(partners);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public MvcResult getPartner() throws Exception {
+		return mockMvc.perform(get("/api/partners/{id}", FIRST_ID + ThreadLocalRandom.current().nextInt(PARTNERS)))
+				.andReturn();
+	}
+
+	@Benchmark
+	public MvcResult getPartnersPage() throws Exception {
+		return mockMvc.perform(get("/api/partners").param("limit", "20")).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult postAndDeletePartner() throws Exception {
+		MvcResult created = mockMvc
+				.perform(post("/api/partners").contentType(MediaType.APPLICATION_JSON).content(PARTNER)).andReturn();
+		String location = created.getResponse().getHeader("Location");
+		return mockMvc.perform(delete(location.substring(location.indexOf("/api/")))).andReturn();
+	}
+}
@@ -0,0 +1,97 @@
+package com.partner.app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.partner.app.DemoApplication;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Cost of the reads of the DAO against H2 with 1000, 100000 and 1000000 partners, for the JDBC implementation
+ * and the in-memory store. The pages are read at a random position, by offset and by keyset.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PartnerDaoBenchmark {
+
+	private static final long FIRST_ID = 10;
+
+	private static final int PAGE_SIZE = 100;
+
+	@Param({ "1000", "100000", "1000000" })
+	private int rows;
+
+	@Param({ "jdbc", "memory" })
+	private String store;
+
+	private ConfigurableApplicationContext context;
+
+	private PartnerDao dao;
+
+	@Setup
+	public void setUp() throws Exception {
+		// Arguments, unlike default properties, take precedence over application.properties.
+		context = new SpringApplicationBuilder(DemoApplication.class).web(WebApplicationType.NONE).run(
+				"--spring.datasource.url=jdbc:h2:mem:benchmark-" + store + "-" + rows, "--partner.store=" + store,
+				"--partner.id-filter.enabled=false", "--spring.main.banner-mode=off", "--logging.level.root=warn");
+		dao = context.getBean(PartnerDao.class);
+		List<Partner> batch = new ArrayList<>();
+		for (long id = FIRST_ID; id < FIRST_ID + rows; id++) {
+			batch.add(new Partner(id, "Partner" + id, "ref" + id, Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01")));
+			if (batch.size() == 10_000) {
+				dao.insertPartners(batch);
+				batch.clear();
+			}
+		}
+		dao.insertPartners(batch);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Partner selectPartner() throws Exception {
+		return dao.selectPartner(FIRST_ID + ThreadLocalRandom.current().nextInt(rows));
+	}
+
+	@Benchmark
+	public List<Partner> selectAllPartners() throws Exception {
+		return dao.selectAllPartners(ThreadLocalRandom.current().nextInt(Math.max(1, rows - PAGE_SIZE)), PAGE_SIZE,
+				null);
+	}
+
+	@Benchmark
+	public List<Partner> selectPartnersAfter() throws Exception {
+		return dao.selectPartnersAfter(FIRST_ID + ThreadLocalRandom.current().nextInt(Math.max(1, rows - PAGE_SIZE)),
+				PAGE_SIZE, null);
+	}
+}
@@ -0,0 +1,84 @@
+package com.partner.app.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.partner.app.model.Partner;
+
+/**
+ * Cost of the JSON form of the partners, with the object mapper configured as Spring Boot does. The partners have
+ * a java.sql.Date, as they come from the database, and a locale with a country.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartnerJsonBenchmark {
+
+	private ObjectWriter writer;
+
+	private ObjectWriter listWriter;
+
+	private ObjectReader reader;
+
+	private Partner partner;
+
+	private List<Partner> page;
+
+	private byte[] json;
+
+	@Setup
+	public void setUp() throws IOException {
+		ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+		writer = mapper.writerFor(Partner.class);
+		listWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Partner.class));
+		reader = mapper.readerFor(Partner.class);
+		partner = new Partner(1, "Partner1", "xxxxx1", new Locale("en", "GB"), java.sql.Date.valueOf("2017-03-03"));
+		page = new ArrayList<>();
+		for (long id = 1; id <= 100; id++) {
+			page.add(new Partner(id, "Partner" + id, "xxxxx" + id, new Locale("en", "GB"),
+					java.sql.Date.valueOf("2017-03-03")));
+		}
+		json = writer.writeValueAsBytes(partner);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return writer.writeValueAsBytes(partner);
+	}
+
+	@Benchmark
+	public Partner deserialize() throws IOException {
+		return reader.readValue(json);
+	}
+
+	@Benchmark
+	public byte[] serializePageOf100() throws IOException {
+		return listWriter.writeValueAsBytes(page);
+	}
+}
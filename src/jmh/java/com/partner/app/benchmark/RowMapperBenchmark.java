@@ -0,0 +1,60 @@
+package com.partner.app.benchmark;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.partner.app.dao.PartnerRowMapper;
+import com.partner.app.model.Partner;
+
+/**
+ * Cost of PartnerRowMapper.mapRow on one row, read from an H2 result set in memory so the database is left out.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+
+	private final PartnerRowMapper mapper = new PartnerRowMapper();
+
+	private SimpleResultSet resultSet;
+
+	@Setup
+	public void setUp() {
+		resultSet = new SimpleResultSet();
+		// Lets the benchmark go back to the row.
+		resultSet.setAutoClose(false);
+		resultSet.addColumn("ID", Types.BIGINT, 19, 0);
+		resultSet.addColumn("COMPANYNAME", Types.VARCHAR, 30, 0);
+		resultSet.addColumn("REF", Types.VARCHAR, 30, 0);
+		resultSet.addColumn("LOCALE", Types.VARCHAR, 30, 0);
+		resultSet.addColumn("EXPIRES", Types.DATE, 10, 0);
+		resultSet.addRow(1L, "Partner1", "xxxxx1", "en_GB", Date.valueOf("2017-03-03"));
+	}
+
+	@Benchmark
+	public Partner mapRow() throws SQLException {
+		resultSet.beforeFirst();
+		resultSet.next();
+		return mapper.mapRow(resultSet, 0);
+	}
+}
@@ -0,0 +1,61 @@
+package com.partner.app.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.partner.app.cache.PartnerTextIndex;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+/**
+ * Latency of the searches with typos in the index of the trigrams, whose 99th percentile is printed by the
+ * sampling mode. The names and references of the partners, Partner{id} and ref{id}, all share most of their
+ * trigrams, which is the worst case for the lists. Run it with -jvmArgs -Xmx4g.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TextIndexBenchmark {
+
+	@Param({ "1000000" })
+	private int partners;
+
+	@Param({ "Partnr123456", "ref98765", "Partner" })
+	private String query;
+
+	private PartnerTextIndex index;
+
+	@Setup
+	public void setUp() {
+		index = new PartnerTextIndex(mock(PartnerDao.class), true, 0.5, 5000);
+		for (long id = 1; id <= partners; id++) {
+			index.put(new Partner(id, "Partner" + id, "ref" + id, Locale.ENGLISH, java.sql.Date.valueOf("2030-01-01")));
+		}
+	}
+
+	@Benchmark
+	public List<Partner> search() {
+		return index.search(query, 10, null);
+	}
+}
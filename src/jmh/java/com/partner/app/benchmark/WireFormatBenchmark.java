@@ -0,0 +1,110 @@
+package com.partner.app.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.partner.app.model.Partner;
+
+/**
+ * Size and cost of a page of 1000 partners in the wire formats of the API: JSON as it is sent today, and CBOR and
+ * Smile as WireFormatConfiguration sends them, each with and without gzip (as Tomcat compresses the responses).
+ * The size of every form is printed before its first benchmark. Run it with:
+ * mvn -P jmh verify -Djmh.args="WireFormatBenchmark"
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	@Param({ "json", "cbor", "smile" })
+	public String format;
+
+	private ObjectWriter writer;
+
+	private ObjectReader reader;
+
+	private List<Partner> page;
+
+	private byte[] serialized;
+
+	@Setup
+	public void setUp() throws IOException {
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+		switch (format) {
+		case "cbor":
+			builder.factory(new CBORFactory()).featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+			break;
+		case "smile":
+			builder.factory(new SmileFactory()).featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+			break;
+		default:
+			builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		}
+		ObjectMapper mapper = builder.build();
+		JavaType type = mapper.getTypeFactory().constructCollectionType(List.class, Partner.class);
+		writer = mapper.writerFor(type);
+		reader = mapper.readerFor(type);
+		page = new ArrayList<>();
+		for (long id = 1; id <= 1000; id++) {
+			page.add(new Partner(id, "Partner" + id, "xxxxx" + id, new Locale("en", "GB"),
+					java.sql.Date.valueOf("2017-03-03")));
+		}
+		serialized = writer.writeValueAsBytes(page);
+		System.out.printf("%nPage of 1000 partners in %s: %d bytes, %d bytes with gzip%n", format, serialized.length,
+				gzip().length);
+	}
+
+	@Benchmark
+	public byte[] serializePageOf1000() throws IOException {
+		return writer.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public byte[] serializeAndGzipPageOf1000() throws IOException {
+		return gzip();
+	}
+
+	@Benchmark
+	public List<Partner> deserializePageOf1000() throws IOException {
+		return reader.readValue(serialized);
+	}
+
+	private byte[] gzip() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(serialized.length / 4);
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			writer.writeValue(out, page);
+		}
+		return compressed.toByteArray();
+	}
+}
@@ -0,0 +1,145 @@
+package com.partner.app.cache;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.model.Partner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * In-process cache of the partners read by ID, bounded in size (evicting with W-TinyLFU) and in time.
+ * The hits, misses and evictions are published as the metrics cache.gets, cache.evictions and cache.size with the
+ * tag cache=partners.
+ * <p>
+ * The cache keeps its own copies of the partners and hands out copies of them, so the callers can change the
+ * partners they get or write without changing the cache.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class PartnerCache {
+
+	private final Cache<Long, Partner> cache;
+
+	/**
+	 * Constructor of the class PartnerCache.
+	 * @param enabled If false, every read goes to the loader.
+	 * @param maximumSize Maximum number of partners in the cache.
+	 * @param expireAfterWrite Time a partner stays in the cache since it was loaded or written.
+	 * @param registry Registry of the metrics.
+	 */
+	@Autowired
+	public PartnerCache(@Value("${partner.cache.enabled:true}") boolean enabled,
+			@Value("${partner.cache.maximum-size:100000}") long maximumSize,
+			@Value("${partner.cache.expire-after-write:10m}") Duration expireAfterWrite, MeterRegistry registry) {
+		if (enabled) {
+			cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats()
+					.build();
+			CaffeineCacheMetrics.monitor(registry, cache, "partners");
+		} else {
+			cache = null;
+		}
+	}
+
+	/**
+	 * Gets a partner from the cache, loading it if it is not there. Concurrent reads of the same ID share one load,
+	 * and a write or invalidation of the ID waits for the load, so a stale partner is never left in the cache.
+	 * @param id ID of the partner.
+	 * @param loader Loader of the partners which are not in the cache.
+	 * @return Partner with the selected ID.
+	 * @throws PartnerNotFoundException There is no partner with the ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public Partner get(long id, PartnerLoader loader) throws PartnerNotFoundException, InternalErrorException {
+		if (cache == null)
+			return loader.load(id);
+		try {
+			return copy(cache.get(id, key -> {
+				try {
+					return loader.load(key);
+				} catch (PartnerNotFoundException | InternalErrorException e) {
+					throw new LoadException(e);
+				}
+			}));
+		} catch (LoadException e) {
+			if (e.getCause() instanceof PartnerNotFoundException)
+				throw (PartnerNotFoundException) e.getCause();
+			throw (InternalErrorException) e.getCause();
+		}
+	}
+
+	/**
+	 * Gets a partner from the cache, without loading it.
+	 * @param id ID of the partner.
+	 * @return Partner with the selected ID, or null if it is not in the cache.
+	 */
+	public Partner getIfPresent(long id) {
+		Partner partner = cache == null ? null : cache.getIfPresent(id);
+		return partner == null ? null : copy(partner);
+	}
+
+	/**
+	 * Writes a partner which has been saved in the database. A partner in the cache is only replaced by a newer
+	 * version, so the writes which finish out of order do not leave the older one in the cache.
+	 * @param partner Partner, with the version it has been saved with.
+	 */
+	public void put(Partner partner) {
+		if (cache != null)
+			cache.asMap().merge(partner.getId(), copy(partner),
+					(cached, written) -> written.getVersion() > cached.getVersion() ? written : cached);
+	}
+
+	/**
+	 * Removes a partner from the cache.
+	 * @param id ID of the partner.
+	 */
+	public void invalidate(long id) {
+		if (cache != null)
+			cache.invalidate(id);
+	}
+
+	/**
+	 * Removes all the partners from the cache.
+	 */
+	public void invalidateAll() {
+		if (cache != null)
+			cache.invalidateAll();
+	}
+
+	private static Partner copy(Partner partner) {
+		Partner copy = new Partner(partner.getId(), partner.getCompanyName(), partner.getRef(), partner.getLocale(),
+				partner.getExpires());
+		copy.setVersion(partner.getVersion());
+		copy.setLastModified(partner.getLastModified());
+		return copy;
+	}
+
+	/**
+	 * Loads the partners which are not in the cache.
+	 */
+	@FunctionalInterface
+	public interface PartnerLoader {
+		Partner load(long id) throws PartnerNotFoundException, InternalErrorException;
+	}
+
+	/**
+	 * Carries the checked exceptions of the loader through the cache.
+	 */
+	private static final class LoadException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private LoadException(Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package com.partner.app.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bloom filter over the IDs of the partners, used to answer that a partner does not exist without querying the
+ * database. It is built from the database at startup and every ID is added before and after its partner is
+ * inserted, so neither a read racing with the insertion nor a rebuild running at the same time misses it.
+ * Deleted IDs cannot be removed from a Bloom filter, so they are counted and the filter is rebuilt in the
+ * background when they, or the inserted IDs, grow too many for its false positive rate.
+ * <p>
+ * Every partner has to be inserted through PartnerService, otherwise the filter could answer that an existing
+ * partner does not exist, and nothing would correct it. So it is off by default, and it is only enabled with an
+ * invalidation bus, which adds the IDs inserted by the other nodes, or with partner.id-filter.single-node=true.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class PartnerIdFilter {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerIdFilter.class);
+
+	private final PartnerDao partnerDao;
+
+	private final boolean enabled;
+
+	private final long expectedPartners;
+
+	private final double falsePositiveRate;
+
+	private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "partner-id-filter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+	private volatile Bits current;
+
+	/**
+	 * Filter being built by a rebuild, it gets the IDs inserted while the database is read.
+	 */
+	private volatile Bits pending;
+
+	/**
+	 * Number of resets asked and of resets done, the filter is not trusted while they differ.
+	 */
+	private final AtomicLong resets = new AtomicLong();
+
+	private volatile long reset;
+
+	private final Counter absent;
+
+	private final Counter maybe;
+
+	private final Counter falsePositives;
+
+	/**
+	 * Constructor of the class PartnerIdFilter.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param enabled If false, every ID might exist.
+	 * @param singleNode True if this node is the only one which inserts partners in the database.
+	 * @param bus Invalidation bus, see PartnerInvalidations.
+	 * @param expectedPartners Minimum number of partners the filter is sized for.
+	 * @param falsePositiveRate Target rate of absent IDs which the filter cannot tell apart.
+	 * @param registry Registry of the metrics.
+	 * @throws IllegalStateException The filter is enabled without bus on a node which is not the only one.
+	 */
+	@Autowired
+	public PartnerIdFilter(PartnerDao partnerDao,
+			@Value("${partner.id-filter.enabled:false}") boolean enabled,
+			@Value("${partner.id-filter.single-node:false}") boolean singleNode,
+			@Value("${partner.invalidation.bus:none}") String bus,
+			@Value("${partner.id-filter.expected-partners:1000000}") long expectedPartners,
+			@Value("${partner.id-filter.false-positive-rate:0.01}") double falsePositiveRate, MeterRegistry registry) {
+		if (enabled && !singleNode && "none".equals(bus))
+			throw new IllegalStateException("partner.id-filter.enabled=true needs partner.invalidation.bus, or "
+					+ "partner.id-filter.single-node=true if this node is the only one which inserts partners");
+		this.partnerDao = partnerDao;
+		this.enabled = enabled;
+		this.expectedPartners = expectedPartners;
+		this.falsePositiveRate = falsePositiveRate;
+		this.absent = registry.counter("partner.id.filter.lookups", "result", "absent");
+		this.maybe = registry.counter("partner.id.filter.lookups", "result", "maybe");
+		this.falsePositives = registry.counter("partner.id.filter.false.positives");
+		Gauge.builder("partner.id.filter.false.positive.rate", this, PartnerIdFilter::observedFalsePositiveRate)
+				.description("Share of the absent IDs which the filter let through").register(registry);
+		Gauge.builder("partner.id.filter.expected.false.positive.rate", this,
+				PartnerIdFilter::expectedFalsePositiveRate)
+				.description("False positive rate expected from the IDs in the filter").register(registry);
+	}
+
+	/**
+	 * Builds the filter before the application takes requests.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	@PostConstruct
+	public void init() throws InternalErrorException {
+		if (enabled)
+			build();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rebuilder.shutdownNow();
+	}
+
+	/**
+	 * Tells if a partner might exist.
+	 * @param id ID of the partner.
+	 * @return false if the partner does not exist, true if it might exist.
+	 */
+	public boolean mightContain(long id) {
+		Bits bits = current;
+		if (bits == null || reset != resets.get())
+			return true;
+		boolean result = bits.mightContain(id);
+		(result ? maybe : absent).increment();
+		return result;
+	}
+
+	/**
+	 * Adds the ID of a partner which is going to be inserted, so it is never reported as absent once the partner
+	 * is in the database.
+	 * @param id ID of the partner.
+	 */
+	public void adding(long id) {
+		Bits bits = current;
+		if (bits == null)
+			return;
+		bits.set(id);
+		Bits next = pending;
+		if (next != null)
+			next.set(id);
+	}
+
+	/**
+	 * Adds the ID of a partner which has been inserted, so a rebuild which has already read past it gets it too.
+	 * @param id ID of the partner.
+	 */
+	public void added(long id) {
+		Bits bits = current;
+		if (bits == null)
+			return;
+		bits.put(id);
+		Bits next = pending;
+		if (next != null)
+			next.put(id);
+		if (bits.insertions.get() > bits.capacity)
+			rebuildLater();
+	}
+
+	/**
+	 * Records that a partner has been removed, its ID stays in the filter until the next rebuild.
+	 * @param id ID of the partner.
+	 */
+	public void deleted(long id) {
+		Bits bits = current;
+		if (bits != null && bits.deletions.incrementAndGet() > bits.capacity / 4)
+			rebuildLater();
+	}
+
+	/**
+	 * Records that an ID which might exist does not exist.
+	 */
+	public void falsePositive() {
+		falsePositives.increment();
+	}
+
+	/**
+	 * Gets the rate of false positives observed since startup.
+	 * @return False positives divided by the lookups of IDs which do not exist.
+	 */
+	public double observedFalsePositiveRate() {
+		double fp = falsePositives.count();
+		double total = fp + absent.count();
+		return total == 0 ? 0 : fp / total;
+	}
+
+	/**
+	 * Gets the false positive rate expected from the number of IDs added to the filter.
+	 * @return Expected rate.
+	 */
+	public double expectedFalsePositiveRate() {
+		Bits bits = current;
+		if (bits == null)
+			return 1;
+		double fill = 1 - Math.exp(-(double) bits.hashes * bits.insertions.get() / bits.size);
+		return Math.pow(fill, bits.hashes);
+	}
+
+	/**
+	 * Rebuilds the filter from the database because partners may have been inserted behind its back, by another
+	 * node whose messages were lost. Until the rebuild is over every ID might exist.
+	 */
+	public void reset() {
+		if (!enabled)
+			return;
+		long generation = resets.incrementAndGet();
+		rebuilder.execute(() -> {
+			try {
+				build();
+				reset = generation;
+			} catch (InternalErrorException | RuntimeException e) {
+				log.warn("Could not rebuild the partner ID filter", e);
+			}
+		});
+	}
+
+	private void rebuildLater() {
+		if (rebuilding.compareAndSet(false, true)) {
+			rebuilder.execute(() -> {
+				try {
+					build();
+				} catch (InternalErrorException | RuntimeException e) {
+					log.warn("Could not rebuild the partner ID filter", e);
+				} finally {
+					rebuilding.set(false);
+				}
+			});
+		}
+	}
+
+	private void build() throws InternalErrorException {
+		Bits old = current;
+		long capacity = Math.max(expectedPartners, old == null ? 0 : 2 * old.insertions.get());
+		Bits next = new Bits(capacity, falsePositiveRate);
+		// IDs inserted from now on go to both filters, the ones inserted before are read from the database.
+		pending = next;
+		try {
+			partnerDao.streamAllPartners(partner -> next.put(partner.getId()));
+			current = next;
+		} finally {
+			pending = null;
+		}
+	}
+
+	/**
+	 * Bit array of a Bloom filter, with k hash functions derived from two halves of a 64 bit hash.
+	 */
+	private static final class Bits {
+		private final AtomicLongArray words;
+		private final long size;
+		private final int hashes;
+		private final long capacity;
+		private final AtomicLong insertions = new AtomicLong();
+		private final AtomicLong deletions = new AtomicLong();
+
+		private Bits(long capacity, double falsePositiveRate) {
+			long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+			this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+			this.size = words.length() * 64L;
+			this.hashes = (int) Math.max(1, Math.round((double) size / capacity * Math.log(2)));
+			this.capacity = capacity;
+		}
+
+		private void put(long id) {
+			set(id);
+			insertions.incrementAndGet();
+		}
+
+		private void set(long id) {
+			long hash = mix(id);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < hashes; i++) {
+				long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				long value = words.get(word);
+				while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+					value = words.get(word);
+				}
+			}
+		}
+
+		private boolean mightContain(long id) {
+			long hash = mix(id);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < hashes; i++) {
+				long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Finalizer of SplitMix64, spreads consecutive IDs over the whole range.
+		 */
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+	}
+}
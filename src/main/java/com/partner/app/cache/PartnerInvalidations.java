@@ -0,0 +1,295 @@
+package com.partner.app.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.partner.app.cache.invalidation.InvalidationBus;
+import com.partner.app.cache.invalidation.InvalidationMessage;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+import com.partner.app.service.PartnerChangeFeed;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps the cache, the ID filter and the indexes of several nodes of the API on the same database coherent. Every
+ * node sends the IDs of the partners it changes on the invalidation bus (partner.invalidation.bus, none by default
+ * for a single node) and the other nodes forget them in their cache and reload them in their filter and indexes.
+ * <p>
+ * The messages of a node are numbered one after the other, and every partner.invalidation.heartbeat the node sends
+ * the number of its last message even if nothing changed. A receiver which sees a number further than the next one
+ * has missed messages, and as it cannot know which partners they had it empties its cache and rebuilds its filter
+ * and indexes from the database. A lost message is therefore noticed by the next message or heartbeat of its node,
+ * which bounds how long a node may serve a stale partner. The counters partner.invalidation.sent,
+ * partner.invalidation.received and partner.invalidation.gaps show the traffic and the flushes.
+ * <p>
+ * The filter and the indexes are built before this node subscribes to the bus, so the numbers of a node start
+ * at 0: the first contact with a node which had already sent messages flushes too. The thread of the bus only
+ * forgets the partners in the cache and adds their IDs to the filter; the partners of a message are read for the
+ * indexes in one query, and the indexes are rebuilt, by a single thread in the background, in the order of the
+ * messages. The requests waiting in PartnerChangeFeed are woken up by the changes of the other nodes too.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class PartnerInvalidations {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerInvalidations.class);
+
+	private final PartnerDao partnerDao;
+
+	private final PartnerCache partnerCache;
+
+	private final PartnerIdFilter partnerIdFilter;
+
+	private final PartnerNameIndex partnerNameIndex;
+
+	private final PartnerTextIndex partnerTextIndex;
+
+	private final PartnerChangeFeed partnerChangeFeed;
+
+	private final InvalidationBus bus;
+
+	private final Duration heartbeat;
+
+	private final long node = ThreadLocalRandom.current().nextLong();
+
+	/**
+	 * Number of the last message sent, guarded by the lock of the sender.
+	 */
+	private long seq;
+
+	private final Object sending = new Object();
+
+	/**
+	 * Number of the last message received from every other node, guarded by the lock of the receiver.
+	 */
+	private final Map<Long, Long> received = new ConcurrentHashMap<>();
+
+	private final Object receiving = new Object();
+
+	private final Counter sent;
+
+	private final Counter receivedIds;
+
+	private final Counter gaps;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "partner-invalidations");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "partner-invalidation-reload");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Set while a rebuild of the indexes is queued, so the flushes coming meanwhile share it.
+	 */
+	private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+	/**
+	 * Constructor of the class PartnerInvalidations.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param partnerCache Cache of the partners read by ID.
+	 * @param partnerIdFilter Filter of the IDs which do not exist.
+	 * @param partnerNameIndex Index of the partners by name.
+	 * @param partnerTextIndex Index of the trigrams of the names and references.
+	 * @param partnerChangeFeed Feed of the changes, told about the changes of the other nodes.
+	 * @param bus Bus to the other nodes, if one is selected.
+	 * @param heartbeat Time between the heartbeats, 0 to send none.
+	 * @param registry Registry of the metrics.
+	 */
+	@Autowired
+	public PartnerInvalidations(PartnerDao partnerDao, PartnerCache partnerCache, PartnerIdFilter partnerIdFilter,
+			PartnerNameIndex partnerNameIndex, PartnerTextIndex partnerTextIndex, PartnerChangeFeed partnerChangeFeed,
+			ObjectProvider<InvalidationBus> bus, @Value("${partner.invalidation.heartbeat:5s}") Duration heartbeat,
+			MeterRegistry registry) {
+		this.partnerDao = partnerDao;
+		this.partnerCache = partnerCache;
+		this.partnerIdFilter = partnerIdFilter;
+		this.partnerNameIndex = partnerNameIndex;
+		this.partnerTextIndex = partnerTextIndex;
+		this.partnerChangeFeed = partnerChangeFeed;
+		this.bus = bus.getIfAvailable();
+		this.heartbeat = heartbeat;
+		this.sent = registry.counter("partner.invalidation.sent");
+		this.receivedIds = registry.counter("partner.invalidation.received");
+		this.gaps = registry.counter("partner.invalidation.gaps");
+	}
+
+	/**
+	 * Subscribes to the bus and schedules the heartbeats, if there is a bus.
+	 */
+	@PostConstruct
+	public void start() {
+		if (bus == null)
+			return;
+		bus.subscribe(this::receive);
+		if (!heartbeat.isZero())
+			scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+					TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		reloader.shutdownNow();
+	}
+
+	/**
+	 * Tells the other nodes about partners changed by this node, after the changes are committed.
+	 * @param ids IDs of the partners inserted, updated or removed.
+	 */
+	public void publish(List<Long> ids) {
+		if (bus == null || ids.isEmpty())
+			return;
+		// Sent under the lock, so the messages leave in the order of their numbers.
+		synchronized (sending) {
+			for (int from = 0; from < ids.size(); from += InvalidationMessage.MAX_IDS) {
+				int to = Math.min(ids.size(), from + InvalidationMessage.MAX_IDS);
+				long[] chunk = new long[to - from];
+				for (int i = from; i < to; i++) {
+					chunk[i - from] = ids.get(i);
+				}
+				bus.publish(new InvalidationMessage(node, ++seq, chunk));
+			}
+		}
+		sent.increment(ids.size());
+	}
+
+	/**
+	 * Gets the ID of this node in the messages.
+	 * @return Random ID chosen at startup.
+	 */
+	public long getNode() {
+		return node;
+	}
+
+	private void heartbeat() {
+		try {
+			synchronized (sending) {
+				bus.publish(new InvalidationMessage(node, seq, new long[0]));
+			}
+		} catch (RuntimeException e) {
+			log.warn("Could not send the invalidation heartbeat", e);
+		}
+	}
+
+	/**
+	 * Applies a message of another node. A number further than the next one flushes everything, the numbers of a
+	 * node not heard of yet are expected from 0. Repeated and late messages are applied again, which does no harm.
+	 */
+	void receive(InvalidationMessage message) {
+		if (message.getNode() == node)
+			return;
+		synchronized (receiving) {
+			Long last = received.get(message.getNode());
+			long expected = (last == null ? 0 : last) + (message.isHeartbeat() ? 0 : 1);
+			if (message.getSeq() > expected) {
+				gaps.increment();
+				log.warn("Missed the invalidations {} to {} of node {}, flushing the cache", expected,
+						message.getSeq() - 1, Long.toHexString(message.getNode()));
+				flush();
+			} else if (message.getIds().length > 0) {
+				apply(message.getIds());
+			}
+			if (last == null || message.getSeq() > last)
+				received.put(message.getNode(), message.getSeq());
+		}
+		receivedIds.increment(message.getIds().length);
+		if (!message.isHeartbeat())
+			partnerChangeFeed.changed();
+	}
+
+	/**
+	 * Forgets partners changed by another node. A deleted ID is left in the filter until its next rebuild, which
+	 * only costs a query, and the partners are reloaded in the indexes in the background, if there are indexes.
+	 */
+	private void apply(long[] ids) {
+		for (long id : ids) {
+			partnerCache.invalidate(id);
+			partnerIdFilter.added(id);
+		}
+		if (partnerNameIndex.isEnabled() || partnerTextIndex.isEnabled())
+			reloader.execute(() -> reload(ids));
+	}
+
+	/**
+	 * Reloads partners in the indexes, with one query. It runs on the thread of the rebuilds, so a rebuild queued
+	 * after a message cannot be overwritten by its older partners.
+	 */
+	private void reload(long[] ids) {
+		List<Long> list = new ArrayList<>(ids.length);
+		for (long id : ids) {
+			list.add(id);
+		}
+		try {
+			Set<Long> deleted = new HashSet<>(list);
+			for (Partner partner : partnerDao.selectPartners(list)) {
+				deleted.remove(partner.getId());
+				partnerNameIndex.put(partner);
+				partnerTextIndex.put(partner);
+			}
+			for (long id : deleted) {
+				partnerIdFilter.deleted(id);
+				partnerNameIndex.remove(id);
+				partnerTextIndex.remove(id);
+			}
+		} catch (InternalErrorException | RuntimeException e) {
+			log.warn("Could not reload {} partners, flushing the cache", ids.length, e);
+			flush();
+		}
+	}
+
+	/**
+	 * Empties the cache and rebuilds the filter and the indexes in the background.
+	 */
+	private void flush() {
+		partnerCache.invalidateAll();
+		partnerIdFilter.reset();
+		partnerChangeFeed.changed();
+		if ((partnerNameIndex.isEnabled() || partnerTextIndex.isEnabled()) && reloadQueued.compareAndSet(false, true))
+			reloader.execute(this::reload);
+	}
+
+	/**
+	 * Rebuilds the indexes. The messages received meanwhile are reloaded after it, on the same thread.
+	 */
+	private void reload() {
+		reloadQueued.set(false);
+		try {
+			partnerNameIndex.reload();
+			partnerTextIndex.reload();
+		} catch (InternalErrorException | RuntimeException e) {
+			log.warn("Could not reload the partner indexes", e);
+		}
+	}
+}
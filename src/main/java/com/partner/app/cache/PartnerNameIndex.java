@@ -0,0 +1,178 @@
+package com.partner.app.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+
+/**
+ * In-memory index of the partners by company name, used to look up the names by their beginning while they are
+ * typed without querying the database. It is enabled with the property partner.name-index.enabled=true, built from
+ * the database at startup and kept up to date by PartnerService, so the partners changed behind its back are not
+ * seen until the next start.
+ * <p>
+ * The partners are kept in a concurrent sorted map, by name and then by ID as the database orders them, and the
+ * partners with a prefix are a range of the map: reads take no lock and cost the logarithm of the number of
+ * partners plus the size of the page.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class PartnerNameIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerNameIndex.class);
+
+	/**
+	 * Ends the name in a key, it is lower than every character so a name goes before the names it is a prefix of.
+	 */
+	private static final char SEPARATOR = '\u0000';
+
+	private final PartnerDao partnerDao;
+
+	private final boolean enabled;
+
+	private final ConcurrentSkipListMap<String, Partner> byName = new ConcurrentSkipListMap<>();
+
+	private final ConcurrentHashMap<Long, String> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor of the class PartnerNameIndex.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param enabled If false, the index is empty and the names are looked up in the database.
+	 */
+	@Autowired
+	public PartnerNameIndex(PartnerDao partnerDao, @Value("${partner.name-index.enabled:false}") boolean enabled) {
+		this.partnerDao = partnerDao;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Builds the index before the application takes requests.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	@PostConstruct
+	public void init() throws InternalErrorException {
+		if (!enabled)
+			return;
+		long started = System.nanoTime();
+		partnerDao.streamAllPartners(this::put);
+		log.info("Indexed the names of {} partners in {} ms", keys.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	/**
+	 * Builds the index again from the database, for partners changed behind its back. The partners stay in the
+	 * index while it is rebuilt, and the ones which are no longer in the database are removed at the end.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public void reload() throws InternalErrorException {
+		if (!enabled)
+			return;
+		Set<Long> seen = new HashSet<>();
+		partnerDao.streamAllPartners(partner -> {
+			seen.add(partner.getId());
+			put(partner);
+		});
+		for (Long id : keys.keySet()) {
+			if (!seen.contains(id))
+				remove(id);
+		}
+	}
+
+	/**
+	 * Tells if the index is enabled.
+	 * @return true if the names can be looked up in the index.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the partners whose name begins with a prefix, ordered by name and ID.
+	 * @param prefix Beginning of the name, case sensitive.
+	 * @param from Offset in the results to paginate to.
+	 * @param size Window pagination size.
+	 * @param unexpiredAt If not null, only the partners which have not expired at this time.
+	 * @return List of partners.
+	 */
+	public List<Partner> lookup(String prefix, int from, int size, Date unexpiredAt) {
+		List<Partner> list = new ArrayList<>(Math.max(0, Math.min(size, 1024)));
+		Iterator<Partner> partners = byName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()
+				.stream().filter(partner -> unexpiredAt == null || !partner.isExpiredAt(unexpiredAt)).iterator();
+		for (int i = 0; i < from && partners.hasNext(); i++) {
+			partners.next();
+		}
+		while (list.size() < size && partners.hasNext()) {
+			list.add(partners.next());
+		}
+		return list;
+	}
+
+	/**
+	 * Adds or replaces a partner which has been saved in the database. A partner is only replaced by a newer
+	 * version, so the writes which finish out of order do not leave the older one in the index.
+	 * @param partner Partner, with the version it has been saved with.
+	 */
+	public void put(Partner partner) {
+		if (!enabled || partner.getCompanyName() == null)
+			return;
+		String key = key(partner);
+		synchronized (this) {
+			String previous = keys.get(partner.getId());
+			if (previous != null) {
+				if (byName.get(previous).getVersion() >= partner.getVersion())
+					return;
+				if (!previous.equals(key))
+					byName.remove(previous);
+			}
+			keys.put(partner.getId(), key);
+			byName.put(key, partner);
+		}
+	}
+
+	/**
+	 * Removes a partner which has been removed from the database.
+	 * @param id ID of the partner.
+	 */
+	public void remove(long id) {
+		if (!enabled)
+			return;
+		synchronized (this) {
+			String previous = keys.remove(id);
+			if (previous != null)
+				byName.remove(previous);
+		}
+	}
+
+	/**
+	 * Builds the key of a partner: the name, the separator and the ID as 20 digits, shifted so the negative IDs
+	 * sort first.
+	 */
+	private static String key(Partner partner) {
+		String id = Long.toUnsignedString(partner.getId() ^ Long.MIN_VALUE);
+		StringBuilder key = new StringBuilder(partner.getCompanyName().length() + 21);
+		key.append(partner.getCompanyName()).append(SEPARATOR);
+		for (int i = id.length(); i < 20; i++) {
+			key.append('0');
+		}
+		return key.append(id).toString();
+	}
+}
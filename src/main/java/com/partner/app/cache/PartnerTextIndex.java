@@ -0,0 +1,394 @@
+package com.partner.app.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+
+/**
+ * In-memory inverted index of the trigrams of the company names and references, used to find the partners whose
+ * name or reference looks like a text with typos, without querying the database. It is enabled with the property
+ * partner.text-index.enabled=true, built from the database at startup and kept up to date by PartnerService.
+ * <p>
+ * The texts are lower-cased and split into words, and every word padded with two spaces before and one after is
+ * split into trigrams, so "Partner1" has the trigrams "  p", " pa", "par", ... and "r1 ". Every trigram has the
+ * sorted list of the partners which have it. The score of a partner is the share of the trigrams of the query it
+ * has, and the partners under partner.text-index.min-similarity are not results.
+ * <p>
+ * The lists are read from the shortest: a partner first seen after the shortest lists cannot reach the minimum
+ * score any more, and the number of partners taken into account (partner.text-index.max-candidates) is bounded,
+ * after which the partners already seen are only looked up in the longer lists by binary search. A trigram which
+ * every partner has therefore costs little. Updated and deleted partners leave holes in the lists, which are
+ * compacted when they are as many as the partners.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class PartnerTextIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerTextIndex.class);
+
+	private static final int MIN_HOLES_TO_COMPACT = 1024;
+
+	private final PartnerDao partnerDao;
+
+	private final boolean enabled;
+
+	private final double minSimilarity;
+
+	private final int maxCandidates;
+
+	private final StampedLock lock = new StampedLock();
+
+	private final Map<Long, Postings> postings = new HashMap<>();
+
+	private final Map<Long, Integer> ordinals = new HashMap<>();
+
+	/**
+	 * Partners by ordinal, null for the holes. Ordinals grow with every insertion, so the lists stay sorted.
+	 */
+	private Partner[] partners = new Partner[1024];
+
+	private int nextOrdinal;
+
+	private int holes;
+
+	/**
+	 * Constructor of the class PartnerTextIndex.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param enabled If false, the index is empty.
+	 * @param minSimilarity Minimum share of the trigrams of the query a result has.
+	 * @param maxCandidates Maximum number of partners scored by a search.
+	 */
+	@Autowired
+	public PartnerTextIndex(PartnerDao partnerDao, @Value("${partner.text-index.enabled:false}") boolean enabled,
+			@Value("${partner.text-index.min-similarity:0.5}") double minSimilarity,
+			@Value("${partner.text-index.max-candidates:5000}") int maxCandidates) {
+		this.partnerDao = partnerDao;
+		this.enabled = enabled;
+		this.minSimilarity = minSimilarity;
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Builds the index before the application takes requests.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	@PostConstruct
+	public void init() throws InternalErrorException {
+		if (!enabled)
+			return;
+		long started = System.nanoTime();
+		partnerDao.streamAllPartners(this::put);
+		log.info("Indexed the trigrams of {} partners in {} ms", ordinals.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	/**
+	 * Builds the index again from the database, for partners changed behind its back. The partners stay in the
+	 * index while it is rebuilt, and the ones which are no longer in the database are removed at the end.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public void reload() throws InternalErrorException {
+		if (!enabled)
+			return;
+		Set<Long> seen = new HashSet<>();
+		partnerDao.streamAllPartners(partner -> {
+			seen.add(partner.getId());
+			put(partner);
+		});
+		long stamp = lock.writeLock();
+		try {
+			ordinals.entrySet().removeIf(entry -> {
+				if (seen.contains(entry.getKey()))
+					return false;
+				partners[entry.getValue()] = null;
+				holes++;
+				return true;
+			});
+			compactIfNeeded();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Tells if the index is enabled.
+	 * @return true if the partners can be searched in the index.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the partners whose name or reference looks most like a text.
+	 * @param text Text, with or without typos.
+	 * @param size Maximum number of partners.
+	 * @param unexpiredAt If not null, only the partners which have not expired at this time.
+	 * @return List of partners, the most alike first and then by ID.
+	 */
+	public List<Partner> search(String text, int size, Date unexpiredAt) {
+		long[] grams = trigrams(text);
+		if (grams.length == 0 || size <= 0)
+			return new ArrayList<>();
+		int minShared = Math.max(1, (int) Math.ceil(minSimilarity * grams.length));
+		long stamp = lock.readLock();
+		try {
+			Postings[] lists = new Postings[grams.length];
+			for (int i = 0; i < grams.length; i++) {
+				lists[i] = postings.getOrDefault(grams[i], Postings.EMPTY);
+			}
+			Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+			int[] seen = new int[Math.min(maxCandidates, nextOrdinal)];
+			Counts count = new Counts(seen.length);
+			int candidates = 0;
+			for (int i = 0; i < lists.length; i++) {
+				Postings list = lists[i];
+				int j = 0;
+				if (lists.length - i >= minShared) {
+					for (; j < list.size && candidates < seen.length; j++) {
+						int ordinal = list.ordinals[j];
+						if (count.increment(ordinal) == 0)
+							seen[candidates++] = ordinal;
+					}
+				}
+				count(list, j, seen, candidates, count);
+			}
+			List<Scored> results = new ArrayList<>();
+			for (int c = 0; c < candidates; c++) {
+				Partner partner = partners[seen[c]];
+				int shared = count.get(seen[c]);
+				if (partner != null && shared >= minShared
+						&& (unexpiredAt == null || !partner.isExpiredAt(unexpiredAt)))
+					results.add(new Scored(partner, shared));
+			}
+			results.sort(Comparator.comparingInt((Scored scored) -> -scored.shared)
+					.thenComparingLong(scored -> scored.partner.getId()));
+			List<Partner> list = new ArrayList<>(Math.min(size, results.size()));
+			for (int r = 0; r < results.size() && list.size() < size; r++) {
+				list.add(results.get(r).partner);
+			}
+			return list;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Counts the partners already seen which are in a list from a position, looking each of them up if the rest of
+	 * the list is much longer than them.
+	 */
+	private static void count(Postings list, int from, int[] seen, int candidates, Counts count) {
+		if ((long) candidates * 20 < list.size - from) {
+			for (int c = 0; c < candidates; c++) {
+				if (Arrays.binarySearch(list.ordinals, from, list.size, seen[c]) >= 0)
+					count.incrementIfPresent(seen[c]);
+			}
+		} else {
+			for (int j = from; j < list.size; j++) {
+				count.incrementIfPresent(list.ordinals[j]);
+			}
+		}
+	}
+
+	/**
+	 * Adds or replaces a partner which has been saved in the database. A partner is only replaced by a newer
+	 * version, so the writes which finish out of order do not leave the older one in the index.
+	 * @param partner Partner, with the version it has been saved with.
+	 */
+	public void put(Partner partner) {
+		if (!enabled)
+			return;
+		long[] grams = trigrams(partner.getCompanyName(), partner.getRef());
+		long stamp = lock.writeLock();
+		try {
+			Integer previous = ordinals.get(partner.getId());
+			if (previous != null && partners[previous].getVersion() >= partner.getVersion())
+				return;
+			removeOrdinal(partner.getId());
+			add(partner, grams);
+			compactIfNeeded();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes a partner which has been removed from the database.
+	 * @param id ID of the partner.
+	 */
+	public void remove(long id) {
+		if (!enabled)
+			return;
+		long stamp = lock.writeLock();
+		try {
+			removeOrdinal(id);
+			compactIfNeeded();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Gets the distinct trigrams of the words of some texts, three characters packed in a long.
+	 * @param texts Texts, null ones are skipped.
+	 * @return Trigrams.
+	 */
+	static long[] trigrams(String... texts) {
+		Set<Long> grams = new LinkedHashSet<>();
+		for (String text : texts) {
+			if (text == null)
+				continue;
+			for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+				if (word.isEmpty())
+					continue;
+				String padded = "  " + word + " ";
+				for (int i = 0; i + 3 <= padded.length(); i++) {
+					grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16)
+							| padded.charAt(i + 2));
+				}
+			}
+		}
+		return grams.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private void add(Partner partner, long[] grams) {
+		if (nextOrdinal == partners.length)
+			partners = Arrays.copyOf(partners, partners.length * 2);
+		int ordinal = nextOrdinal++;
+		partners[ordinal] = partner;
+		ordinals.put(partner.getId(), ordinal);
+		for (long gram : grams) {
+			postings.computeIfAbsent(gram, key -> new Postings()).add(ordinal);
+		}
+	}
+
+	private void removeOrdinal(long id) {
+		Integer previous = ordinals.remove(id);
+		if (previous != null) {
+			partners[previous] = null;
+			holes++;
+		}
+	}
+
+	/**
+	 * Rebuilds the lists without the holes, once they are as many as the partners.
+	 */
+	private void compactIfNeeded() {
+		if (holes < MIN_HOLES_TO_COMPACT || holes < ordinals.size())
+			return;
+		Partner[] live = new Partner[ordinals.size()];
+		int n = 0;
+		for (int i = 0; i < nextOrdinal; i++) {
+			if (partners[i] != null)
+				live[n++] = partners[i];
+		}
+		postings.clear();
+		ordinals.clear();
+		partners = new Partner[Math.max(1024, live.length * 2)];
+		nextOrdinal = 0;
+		holes = 0;
+		for (Partner partner : live) {
+			add(partner, trigrams(partner.getCompanyName(), partner.getRef()));
+		}
+	}
+
+	/**
+	 * Sorted list of the ordinals of the partners which have a trigram.
+	 */
+	private static final class Postings {
+		private static final Postings EMPTY = new Postings();
+
+		private int[] ordinals = new int[4];
+		private int size;
+
+		private void add(int ordinal) {
+			if (size == ordinals.length)
+				ordinals = Arrays.copyOf(ordinals, size * 2);
+			ordinals[size++] = ordinal;
+		}
+	}
+
+	/**
+	 * Number of trigrams shared by every candidate, in an open addressing hash table sized for the candidates of a
+	 * search rather than for all the partners.
+	 */
+	private static final class Counts {
+		/**
+		 * Ordinal plus one of every slot, 0 for the free ones.
+		 */
+		private final int[] keys;
+		private final int[] values;
+		private final int mask;
+
+		private Counts(int candidates) {
+			int capacity = Integer.highestOneBit(Math.max(2, candidates) * 2 - 1) << 1;
+			keys = new int[capacity];
+			values = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		/**
+		 * Adds one to the count of a partner, adding it if it is not there.
+		 * @return Previous count, 0 if the partner was not there.
+		 */
+		private int increment(int ordinal) {
+			int slot = slot(ordinal);
+			keys[slot] = ordinal + 1;
+			return values[slot]++;
+		}
+
+		private void incrementIfPresent(int ordinal) {
+			int slot = slot(ordinal);
+			if (keys[slot] != 0)
+				values[slot]++;
+		}
+
+		private int get(int ordinal) {
+			return values[slot(ordinal)];
+		}
+
+		/**
+		 * Finds the slot of a partner, or the free slot where it goes. The table is never more than half full.
+		 */
+		private int slot(int ordinal) {
+			int hash = ordinal * 0x9e3779b9;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != 0 && keys[slot] != ordinal + 1) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+	}
+
+	private static final class Scored {
+		private final Partner partner;
+		private final int shared;
+
+		private Scored(Partner partner, int shared) {
+			this.partner = partner;
+			this.shared = shared;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.partner.app.cache.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries the invalidation messages between the nodes of the API, so every node forgets the partners changed by
+ * the others. It is chosen with the property partner.invalidation.bus: local for the nodes in the same JVM, used by
+ * the tests, or multicast for UDP multicast. The bus may lose, duplicate or reorder messages, the receivers detect
+ * it from the numbers of the messages.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public interface InvalidationBus {
+
+	/**
+	 * Sends a message to the other nodes. It may also be received by the sender.
+	 * @param message Message.
+	 */
+	void publish(InvalidationMessage message);
+
+	/**
+	 * Registers the receiver of the messages.
+	 * @param listener Called for every message received, on a thread of the bus.
+	 */
+	void subscribe(Consumer<InvalidationMessage> listener);
+}
@@ -0,0 +1,110 @@
+package com.partner.app.cache.invalidation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+
+/**
+ * Message sent by a node to the others with the IDs of the partners it has changed. The messages of a node are
+ * numbered one after the other, so a node which receives a number further than the next one knows it has missed
+ * messages. A message without IDs is a heartbeat, with the number of the last message sent.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public final class InvalidationMessage {
+
+	/**
+	 * Maximum number of IDs in a message, so it fits in a datagram of 1500 bytes.
+	 */
+	public static final int MAX_IDS = 128;
+
+	private static final int MAGIC = 0x50494e56;
+
+	private final long node;
+
+	private final long seq;
+
+	private final long[] ids;
+
+	/**
+	 * Constructor of the class InvalidationMessage.
+	 * @param node ID of the node which sends the message.
+	 * @param seq Number of the message among the ones of the node.
+	 * @param ids IDs of the partners changed, empty for a heartbeat.
+	 */
+	public InvalidationMessage(long node, long seq, long[] ids) {
+		this.node = node;
+		this.seq = seq;
+		this.ids = ids;
+	}
+
+	public long getNode() {
+		return node;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public long[] getIds() {
+		return ids;
+	}
+
+	/**
+	 * Tells if the message is a heartbeat.
+	 * @return true if the message has no IDs.
+	 */
+	public boolean isHeartbeat() {
+		return ids.length == 0;
+	}
+
+	/**
+	 * Writes the message as bytes.
+	 * @return Bytes.
+	 */
+	public byte[] encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(24 + ids.length * Long.BYTES);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeLong(node);
+			out.writeLong(seq);
+			out.writeInt(ids.length);
+			for (long id : ids) {
+				out.writeLong(id);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a message written by encode.
+	 * @param bytes Bytes.
+	 * @param length Number of bytes of the message.
+	 * @return Message, or null if the bytes are not a message.
+	 */
+	public static InvalidationMessage decode(byte[] bytes, int length) {
+		ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+		try {
+			if (in.getInt() != MAGIC)
+				return null;
+			long node = in.getLong();
+			long seq = in.getLong();
+			int count = in.getInt();
+			if (count < 0 || count > in.remaining() / Long.BYTES)
+				return null;
+			long[] ids = new long[count];
+			for (int i = 0; i < count; i++) {
+				ids[i] = in.getLong();
+			}
+			return new InvalidationMessage(node, seq, ids);
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.partner.app.cache.invalidation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bus between the application contexts of the same JVM, selected with partner.invalidation.bus=local. The
+ * contexts with the same partner.invalidation.local.channel get each other's messages, which are delivered on the
+ * thread of the sender, in order and without losses.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "partner.invalidation.bus", havingValue = "local")
+public class LocalInvalidationBus implements InvalidationBus {
+
+	private static final Map<String, List<Consumer<InvalidationMessage>>> CHANNELS = new ConcurrentHashMap<>();
+
+	private final List<Consumer<InvalidationMessage>> listeners;
+
+	private final List<Consumer<InvalidationMessage>> subscribed = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor of the class LocalInvalidationBus.
+	 * @param channel Name of the channel shared by the contexts.
+	 */
+	public LocalInvalidationBus(@Value("${partner.invalidation.local.channel:partners}") String channel) {
+		this.listeners = CHANNELS.computeIfAbsent(channel, name -> new CopyOnWriteArrayList<>());
+	}
+
+	@Override
+	public void publish(InvalidationMessage message) {
+		for (Consumer<InvalidationMessage> listener : listeners) {
+			listener.accept(message);
+		}
+	}
+
+	@Override
+	public void subscribe(Consumer<InvalidationMessage> listener) {
+		subscribed.add(listener);
+		listeners.add(listener);
+	}
+
+	/**
+	 * Leaves the channel when the context is closed.
+	 */
+	@PreDestroy
+	public void close() {
+		listeners.removeAll(subscribed);
+	}
+}
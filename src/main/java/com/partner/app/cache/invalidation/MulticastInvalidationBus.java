@@ -0,0 +1,118 @@
+package com.partner.app.cache.invalidation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.StandardSocketOptions;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bus over UDP multicast, selected with partner.invalidation.bus=multicast. Every node joins the group
+ * partner.invalidation.multicast.group on partner.invalidation.multicast.port and sends a datagram per message;
+ * partner.invalidation.multicast.ttl bounds how many routers the datagrams cross (0 keeps them in the host, 1 in the
+ * local network). The datagrams may be lost, which the receivers detect from the numbers of the messages.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "partner.invalidation.bus", havingValue = "multicast")
+public class MulticastInvalidationBus implements InvalidationBus {
+
+	private static final Logger log = LoggerFactory.getLogger(MulticastInvalidationBus.class);
+
+	private static final int MAX_DATAGRAM = 1500;
+
+	private final InetSocketAddress group;
+
+	private final MulticastSocket socket;
+
+	private final List<Consumer<InvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+	private final Thread receiver;
+
+	/**
+	 * Constructor of the class MulticastInvalidationBus, joins the group.
+	 * @param group Multicast address of the group.
+	 * @param port Port of the group.
+	 * @param ttl Time to live of the datagrams sent.
+	 */
+	@Autowired
+	public MulticastInvalidationBus(@Value("${partner.invalidation.multicast.group:239.255.42.99}") String group,
+			@Value("${partner.invalidation.multicast.port:4446}") int port,
+			@Value("${partner.invalidation.multicast.ttl:1}") int ttl) {
+		try {
+			this.group = new InetSocketAddress(InetAddress.getByName(group), port);
+			this.socket = new MulticastSocket(port);
+			socket.setTimeToLive(ttl);
+			// The nodes of the same host get each other's datagrams.
+			socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+			socket.joinGroup(this.group, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not join the invalidation group " + group + ":" + port, e);
+		}
+		receiver = new Thread(this::receive, "partner-invalidation-receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	@Override
+	public void publish(InvalidationMessage message) {
+		byte[] bytes = message.encode();
+		try {
+			socket.send(new DatagramPacket(bytes, bytes.length, group));
+		} catch (IOException e) {
+			// The receivers see the gap in the numbers and flush their caches.
+			log.warn("Could not send the invalidation message {}", message.getSeq(), e);
+		}
+	}
+
+	@Override
+	public void subscribe(Consumer<InvalidationMessage> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Leaves the group and stops the receiver.
+	 */
+	@PreDestroy
+	public void close() {
+		socket.close();
+	}
+
+	private void receive() {
+		byte[] buffer = new byte[MAX_DATAGRAM];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while (!socket.isClosed()) {
+			try {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+				InvalidationMessage message = InvalidationMessage.decode(buffer, packet.getLength());
+				if (message == null)
+					continue;
+				for (Consumer<InvalidationMessage> listener : listeners) {
+					listener.accept(message);
+				}
+			} catch (IOException e) {
+				if (!socket.isClosed())
+					log.warn("Could not receive an invalidation message", e);
+			} catch (RuntimeException e) {
+				log.warn("Could not apply an invalidation message", e);
+			}
+		}
+	}
+}
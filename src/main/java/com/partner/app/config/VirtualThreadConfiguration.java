@@ -0,0 +1,56 @@
+package com.partner.app.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Execution mode selected with the property partner.execution=virtual, where Tomcat runs every request on a new
+ * virtual thread instead of its pool of server.tomcat.max-threads threads. A request blocked on JDBC then holds
+ * no platform thread, and the requests in flight are only bounded by server.tomcat.max-connections and, for the
+ * ones which reach the database, by the connection pool.
+ * <p>
+ * Virtual threads need Java 21 (see the profile java21 in pom.xml). The code is compiled for older versions, so
+ * the executor is created by reflection and the application does not start if the JVM has no virtual threads.
+ * Note that H2 synchronizes on its sessions, which pins the virtual thread to its carrier while a query runs.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "partner.execution", havingValue = "virtual")
+public class VirtualThreadConfiguration {
+
+	/**
+	 * Executor which starts a virtual thread per request, shut down with the application.
+	 * @return Executor.
+	 */
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService virtualThreadExecutor() {
+		return newVirtualThreadPerTaskExecutor();
+	}
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> virtualThreadCustomizer(ExecutorService virtualThreadExecutor) {
+		return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+	}
+
+	/**
+	 * Creates an executor which starts a virtual thread per task.
+	 * @return Executor.
+	 * @throws IllegalStateException The JVM has no virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("partner.execution=virtual needs Java 21, this is Java "
+					+ Runtime.version().feature(), e);
+		}
+	}
+}
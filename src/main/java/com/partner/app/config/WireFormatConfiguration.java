@@ -0,0 +1,93 @@
+package com.partner.app.config;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary forms of the JSON of the API, enabled with the property partner.binary-formats.enabled=true. The clients
+ * ask for them with the Accept header (application/cbor or application/x-jackson-smile) and send them with the
+ * Content-Type header, the rest keep getting JSON, which stays the first converter.
+ * <p>
+ * Spring MVC adds its own CBOR and Smile converters when their libraries are present, with object mappers which do
+ * not have the configuration of Spring Boot. They are always removed, and replaced by converters whose object
+ * mappers are configured as the JSON one, except that the dates are written as numbers, which are shorter than the
+ * ISO strings and are read back by the JSON form too.
+ * <p>
+ * The responses are compressed by Tomcat (see server.compression in application.properties), which adds
+ * Vary: Accept-Encoding to them and, by default, leaves out the responses with a strong ETag. The lists of partners
+ * have weak ETags, the same for every format, and are compressed. A partner has a strong ETag, different for every
+ * format (see PartnerController), and is not. With the binary forms, the responses also get Vary: Accept, so the
+ * caches do not answer a client with a format it has not asked for.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Configuration
+public class WireFormatConfiguration implements WebMvcConfigurer {
+
+	private final boolean enabled;
+
+	private final ObjectProvider<Jackson2ObjectMapperBuilder> builders;
+
+	/**
+	 * Constructor of the class WireFormatConfiguration.
+	 * @param enabled If false, the API only speaks JSON.
+	 * @param builders Builders of the object mappers configured by Spring Boot, a new one every time.
+	 */
+	@Autowired
+	public WireFormatConfiguration(@Value("${partner.binary-formats.enabled:false}") boolean enabled,
+			ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+		this.enabled = enabled;
+		this.builders = builders;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		if (!enabled)
+			return;
+		registry.addInterceptor(new HandlerInterceptor() {
+			@Override
+			public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+				response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+				return true;
+			}
+		});
+	}
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+				|| converter instanceof MappingJackson2SmileHttpMessageConverter);
+		if (!enabled)
+			return;
+		int json = 0;
+		while (json < converters.size() && !(converters.get(json) instanceof MappingJackson2HttpMessageConverter)) {
+			json++;
+		}
+		int after = Math.min(json + 1, converters.size());
+		converters.add(after, new MappingJackson2SmileHttpMessageConverter(builders.getObject()
+				.factory(new SmileFactory()).featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build()));
+		converters.add(after, new MappingJackson2CborHttpMessageConverter(builders.getObject()
+				.factory(new CBORFactory()).featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build()));
+	}
+}
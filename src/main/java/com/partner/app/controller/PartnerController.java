@@ -1,12 +1,26 @@
 package com.partner.app.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,32 +30,97 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.partner.app.exceptions.BadRequestError;
 import com.partner.app.exceptions.InternalErrorException;
 import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
+import com.partner.app.exceptions.ServiceUnavailableException;
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemOutcome.Outcome;
+import com.partner.app.model.BulkItemResult;
+import com.partner.app.model.ImportReport;
 import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChanges;
+import com.partner.app.model.PartnerPage;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.model.PartnerVersion;
+import com.partner.app.service.PartnerChangeFeed;
+import com.partner.app.service.PartnerImportService;
 import com.partner.app.service.PartnerService;
 
 /**
- * Controller of the API.
+ * Controller of the API. It is replaced by ReactivePartnerController with the Spring profile reactive.
+ * <p>
+ * The partners and the lists of partners are sent with an ETag header (the version and the last change of the
+ * partner, strong and different for every format, or a weak hash of the IDs and versions of the list) and the
+ * partners with a Last-Modified header too. A GET with If-None-Match or If-Modified-Since gets a 304 without a body
+ * when nothing has changed, and a PUT with If-Match only updates the partner if it still has that version,
+ * otherwise it gets a 412.
  * 
  * @author Alejandro Torreblanca
  *
  */
+@Profile("!reactive")
 @RequestMapping("api/partners")
 @RestController
 public class PartnerController {
 	
+	/**
+	 * Media type of newline delimited JSON.
+	 */
+	public static final String NDJSON = "application/x-ndjson";
+	
+	/**
+	 * Media type of comma separated values.
+	 */
+	public static final String CSV = "text/csv";
+	
+	/**
+	 * Time a read of the changes waits for the next one when it does not say, if max-wait is not shorter.
+	 */
+	private static final Duration DEFAULT_WAIT = Duration.ofSeconds(30);
+	
+	private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+	
 	public PartnerController() {
 
 	}
 	
 	@Autowired
 	public PartnerService partnerService;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private PartnerImportService partnerImportService;
+	
+	@Autowired
+	private PartnerChangeFeed partnerChangeFeed;
+	
+	@Value("${partner.changes.max-wait:60s}")
+	private Duration maxWait;
+
+	@Value("${partner.binary-formats.enabled:false}")
+	private boolean binaryFormats;
+
+	@Autowired
+	private ContentNegotiationManager contentNegotiationManager;
 
 	/**
 	 * Constructor of the class PartnerController
@@ -70,7 +149,8 @@ public class PartnerController {
                     .path("/{id}")
                     .buildAndExpand(partner.getId())
                     .toUri();
-			return ResponseEntity.created(location).body(partner);
+			return ResponseEntity.created(location).eTag(PartnerVersion.of(partner).getETag())
+					.lastModified(partner.getLastModified().getTime()).body(partner);
 			
 		} catch (InternalErrorException e) {
 			throw new ResponseStatusException(
@@ -86,17 +166,22 @@ public class PartnerController {
 	 * Response to a HTTP message with GET and url api/partners/{from}/{size}.
 	 * @param from Offset in the resultset to paginate to
 	 * @param size Window pagination size
-	 * @return List of partners
+	 * @param request HTTP request, with the conditional headers.
+	 * @return List of partners, or null if the client has it already.
 	 */
 	@GetMapping(path = "{from}/{size}")
-	public List<Partner> getAllPartners(@PathVariable("from") String from, @PathVariable("size") String size){
+	public List<Partner> getAllPartners(@PathVariable("from") String from, @PathVariable("size") String size,
+			WebRequest request){
 		try {
 			int f=Integer.parseInt(from);
 			int s=Integer.parseInt(size);
 			if(f<0 || s<0)
 				throw new ResponseStatusException(
 				          HttpStatus.BAD_REQUEST, "Numbers 'from' and 'size' must be integers greater than 0.", new Exception());
-			return partnerService.getAllPartners(f, s);
+			List<Partner> partners = partnerService.getAllPartners(f, s);
+			if (request.checkNotModified(PartnerVersion.getETag(partners)))
+				return null;
+			return partners;
 		} catch (InternalErrorException e) {
 			throw new ResponseStatusException(
 			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
@@ -106,27 +191,258 @@ public class PartnerController {
 		}
 	}
 	
+	/**
+	 * Gets {limit} partners after the position pointed by the cursor {after}, the cursor of the next page is
+	 * returned with the partners.
+	 * Response to a HTTP message with GET and url api/partners?after={after}&limit={limit}.
+	 * @param after Cursor returned with the previous page, absent for the first page.
+	 * @param limit Window pagination size
+	 * @param request HTTP request, with the conditional headers.
+	 * @return Page of partners, or null if the client has it already.
+	 */
+	@GetMapping(params = "limit")
+	public PartnerPage getPartnersPage(@RequestParam(value = "after", required = false) String after,
+			@RequestParam("limit") String limit, WebRequest request) {
+		try {
+			int l = Integer.parseInt(limit);
+			if(l<0)
+				throw new ResponseStatusException(
+				          HttpStatus.BAD_REQUEST, "Number 'limit' must be an integer greater than 0.", new Exception());
+			PartnerPage page = partnerService.getPartnersPage(after, l);
+			if (request.checkNotModified(PartnerVersion.getETag(page.getPartners())))
+				return null;
+			return page;
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		} catch (BadRequestError e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		} catch (NumberFormatException  e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, "Number 'limit' must be an integer.", e);
+		}
+	}
+	
+	/**
+	 * Searches the partners, every filter is optional.
+	 * Response to a HTTP message with GET and url api/partners/search?name={prefix}&ref={ref}&locale={locale}&
+	 * expiresAfter={date}&expiresBefore={date}&sort={sort}&from={from}&size={size}.
+	 * @param name Beginning of the company name, case sensitive.
+	 * @param ref Reference.
+	 * @param locale Locale, as en-GB or en_GB.
+	 * @param expiresAfter The partners expire after this date, as 2020-01-31.
+	 * @param expiresBefore The partners expire before this date, as 2020-01-31.
+	 * @param sort Order: id, name or expires, with a leading '-' for the descending order.
+	 * @param from Offset in the results to paginate to.
+	 * @param size Window pagination size.
+	 * @return List of partners.
+	 */
+	@GetMapping(path = "search")
+	public List<Partner> searchPartners(@RequestParam(value = "name", required = false) String name,
+			@RequestParam(value = "ref", required = false) String ref,
+			@RequestParam(value = "locale", required = false) String locale,
+			@RequestParam(value = "expiresAfter", required = false) String expiresAfter,
+			@RequestParam(value = "expiresBefore", required = false) String expiresBefore,
+			@RequestParam(value = "sort", defaultValue = "id") String sort,
+			@RequestParam(value = "from", defaultValue = "0") String from,
+			@RequestParam(value = "size", defaultValue = "10") String size) {
+		try {
+			int f=Integer.parseInt(from);
+			int s=Integer.parseInt(size);
+			if(f<0 || s<0)
+				throw new ResponseStatusException(
+				          HttpStatus.BAD_REQUEST, "Numbers 'from' and 'size' must be integers greater than 0.", new Exception());
+			boolean descending = sort.startsWith("-");
+			PartnerQuery.Sort order;
+			switch (descending ? sort.substring(1) : sort) {
+			case "id":
+				order = PartnerQuery.Sort.ID;
+				break;
+			case "name":
+				order = PartnerQuery.Sort.NAME;
+				break;
+			case "expires":
+				order = PartnerQuery.Sort.EXPIRES;
+				break;
+			default:
+				throw new ResponseStatusException(
+				          HttpStatus.BAD_REQUEST, "Order 'sort' must be id, name or expires.", new Exception());
+			}
+			PartnerQuery query = new PartnerQuery(name, ref,
+					locale == null ? null : Locale.forLanguageTag(locale.replace('_', '-')), date(expiresAfter),
+					date(expiresBefore), order, descending, f, s);
+			return partnerService.searchPartners(query);
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		} catch (NumberFormatException  e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, "Numbers 'from' and 'size' must be integers.", e);
+		} catch (DateTimeParseException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, "Dates must be written as 2020-01-31.", e);
+		}
+	}
+	
+	/**
+	 * Searches the partners whose company name or reference looks like a text, which may have typos, the most alike
+	 * first. It is answered by the index of the trigrams, without querying the database.
+	 * Response to a HTTP message with GET and url api/partners/_search?q={text}&size={size}.
+	 * @param q Text to look for.
+	 * @param size Maximum number of partners.
+	 * @return List of partners.
+	 */
+	@GetMapping(path = "_search")
+	public List<Partner> fuzzySearchPartners(@RequestParam(value = "q") String q,
+			@RequestParam(value = "size", defaultValue = "10") String size) {
+		try {
+			int s=Integer.parseInt(size);
+			if(s<0)
+				throw new ResponseStatusException(
+				          HttpStatus.BAD_REQUEST, "Number 'size' must be an integer greater than 0.", new Exception());
+			return partnerService.fuzzySearchPartners(q, s);
+		} catch (ServiceUnavailableException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.SERVICE_UNAVAILABLE, "The text index is disabled.", e);
+		} catch (NumberFormatException  e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, "Number 'size' must be an integer.", e);
+		}
+	}
+	
+	/**
+	 * Gets the changes to the partners made after a sequence number, in the order they have been committed, so a
+	 * copy of the partners can be kept up to date. If there are none, the response waits up to wait seconds for
+	 * the next change and then has no changes. A wait longer than partner.changes.max-wait is cut to it, and without
+	 * wait the response waits up to 30 seconds or max-wait if it is shorter. The next read starts from the sequence
+	 * number next of the response.
+	 * The stores which keep the partners in memory have no log of changes, with them the response is a 503.
+	 * Response to a HTTP message with GET and url api/partners/_changes?since={seq}&limit={limit}&wait={seconds}.
+	 * @param since Sequence number of the last change already read, 0 for the first change.
+	 * @param limit Maximum number of changes.
+	 * @param wait Maximum time to wait for a change, in seconds, 0 to answer at once.
+	 * @return Changes and the sequence number to read the next ones from.
+	 */
+	@GetMapping(path = "_changes")
+	public DeferredResult<PartnerChanges> getChanges(@RequestParam(value = "since", defaultValue = "0") String since,
+			@RequestParam(value = "limit", defaultValue = "100") String limit,
+			@RequestParam(value = "wait", required = false) String wait) {
+		try {
+			long s=Long.parseLong(since);
+			int l=Integer.parseInt(limit);
+			Duration w=wait == null ? DEFAULT_WAIT : Duration.ofSeconds(Long.parseLong(wait));
+			if(s<0 || l<=0 || w.isNegative())
+				throw new ResponseStatusException(
+				          HttpStatus.BAD_REQUEST, "Numbers 'since', 'limit' and 'wait' must be integers greater than 0.", new Exception());
+			if(w.compareTo(maxWait)>0)
+				w=maxWait;
+			if (!w.isZero())
+				return partnerChangeFeed.poll(s, l, w);
+			DeferredResult<PartnerChanges> result = new DeferredResult<>();
+			result.setResult(partnerChangeFeed.getChanges(s, l));
+			return result;
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		} catch (ServiceUnavailableException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.SERVICE_UNAVAILABLE, "The log of changes is not kept by this store.", e);
+		} catch (NumberFormatException  e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, "Numbers 'since', 'limit' and 'wait' must be integers.", e);
+		}
+	}
+	
+	private static Date date(String value) {
+		return value == null ? null : java.sql.Date.valueOf(LocalDate.parse(value));
+	}
+	
+	/**
+	 * Gets the format a partner is sent in, chosen from the Accept header in the order the converters are tried.
+	 * @return cbor or smile, or null for JSON.
+	 */
+	private String format(NativeWebRequest request) {
+		if (!binaryFormats)
+			return null;
+		List<MediaType> accepted;
+		try {
+			accepted = new ArrayList<>(contentNegotiationManager.resolveMediaTypes(request));
+		} catch (HttpMediaTypeNotAcceptableException e) {
+			return null;
+		}
+		MediaType.sortBySpecificityAndQuality(accepted);
+		for (MediaType type : accepted) {
+			if (type.isCompatibleWith(MediaType.APPLICATION_JSON))
+				return null;
+			if (type.isCompatibleWith(MediaType.APPLICATION_CBOR))
+				return "cbor";
+			if (type.isCompatibleWith(SMILE))
+				return "smile";
+		}
+		return null;
+	}
+	
+	/**
+	 * Writes all the partners as newline delimited JSON, one partner per line. Every partner is written as soon as
+	 * it is read from the database, so the size of the table does not change the memory used.
+	 * Response to a HTTP message with GET and url api/partners/_export.
+	 * @param response HTTP response where the partners are written.
+	 * @throws IOException Error writing the response.
+	 */
+	@GetMapping(path = "_export", produces = NDJSON)
+	public void exportPartners(HttpServletResponse response) throws IOException {
+		ObjectWriter writer = objectMapper.writerFor(Partner.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		response.setContentType(NDJSON);
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+			partnerService.exportPartners(partner -> {
+				try {
+					writer.writeValue(generator, partner);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		}
+	}
+	
 	/**
 	 * Gets all the partners.
 	 * Response to a HTTP message with GET and url api/partners.
+	 * @param request HTTP request, with the conditional headers.
 	 * @return List of partners.
 	 */
 	@GetMapping
-	public List<Partner> getAllPartnersDefault(){
-		return getAllPartners("0", "10");
+	public List<Partner> getAllPartnersDefault(WebRequest request){
+		return getAllPartners("0", "10", request);
 	}
 	
 	/**
-	 * Gets the partner with id {id}
+	 * Gets the partner with id {id}. A conditional request is answered with the version of the partner alone,
+	 * the partner is only read if it has changed.
 	 * Response to a HTTP message with GET and url api/partners/{id}.
 	 * @param id ID of the partner.
-	 * @return Partner with the specified ID.
+	 * @param request HTTP request, with the conditional headers.
+	 * @return Partner with the specified ID, or null if the client has it already.
 	 */
 	@GetMapping(path = "{id}")
-	public Partner getPartner(@PathVariable("id") long id) {
+	public ResponseEntity<Partner> getPartner(@PathVariable("id") long id, NativeWebRequest request) {
 		try {
+			if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+					|| request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+				PartnerVersion version = partnerService.getPartnerVersion(id);
+				if (request.checkNotModified(version.getETag(format(request)), version.getLastModified().getTime()))
+					return null;
+			}
 			Partner p= partnerService.getPartner(id);
-			return p;
+			return ResponseEntity.ok().eTag(PartnerVersion.of(p).getETag(format(request)))
+					.lastModified(p.getLastModified().getTime()).body(p);
 		} catch (PartnerNotFoundException e) {
 			String error="Partner with ID="+id+" not found in the data base.";
 			throw new ResponseStatusException(
@@ -144,7 +460,7 @@ public class PartnerController {
 	 * @param id ID of the partner.
 	 */
 	@DeleteMapping(path = "{id}")
-	public void deletePartner(@PathVariable("id") String id) {
+	public void deletePartner(@PathVariable("id") long id) {
 		try {
 			partnerService.deletePartner(id);
 		} catch (PartnerNotFoundException e) {
@@ -158,24 +474,142 @@ public class PartnerController {
 	}
 	
 	/**
-	 * Updates the information of a partner.
+	 * Updates the information of a partner. With an If-Match header, the partner is only updated if it has that
+	 * version.
 	 * Response to a HTTP message with PUT and url api/partners/{id}.
 	 * @param id ID of the partner.
+	 * @param ifMatch Entity tag of the version expected, or "*" for any.
 	 * @param partner New information of the partner.
+	 * @param request HTTP request, with the Accept header.
+	 * @return Partner updated, with its new version.
 	 */
 	@PutMapping(path = "{id}")
-	public Partner updatePartner(@PathVariable("id") long id, @Valid @NonNull @RequestBody Partner partner) {
+	public ResponseEntity<Partner> updatePartner(@PathVariable("id") long id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+			@Valid @NonNull @RequestBody Partner partner, NativeWebRequest request) {
 		try {
 			partner.setId(id);
+			if (ifMatch != null && !ifMatch.trim().equals("*")) {
+				// The tag is checked here, and its version again by the update, atomically.
+				PartnerVersion version = partnerService.getPartnerVersion(id);
+				if (!version.matches(ifMatch))
+					throw new PreconditionFailedException();
+				partner.setVersion(version.getVersion());
+			}
 			partnerService.updatePartner(partner);
-			return partner;
+			return ResponseEntity.ok().eTag(PartnerVersion.of(partner).getETag(format(request)))
+					.lastModified(partner.getLastModified().getTime()).body(partner);
 		} catch (PartnerNotFoundException e) {
 			String error="Partner with ID="+id+" not found in the data base.";
 			throw new ResponseStatusException(
 			          HttpStatus.NOT_FOUND, error, e);
+		} catch (PreconditionFailedException e) {
+			String error="Partner with ID="+id+" does not have the version "+ifMatch+".";
+			throw new ResponseStatusException(
+			          HttpStatus.PRECONDITION_FAILED, error, e);
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Adds several partners to the data base, the partners are in the body of the HTTP message.
+	 * Response to a HTTP message with POST and url api/partners/_bulk.
+	 * @param partners List of partners
+	 * @return Outcome of every partner, in the same order.
+	 */
+	@PostMapping(path = "_bulk", produces = "application/json")
+	public List<BulkItemResult> addPartners(@NonNull @RequestBody List<Partner> partners) {
+		try {
+			return results(partnerService.addPartners(partners), HttpStatus.CREATED);
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Adds the partners of a big body in newline delimited JSON or CSV (with a header line), the body is read
+	 * while the partners are added, without holding it in memory.
+	 * Response to a HTTP message with POST and url api/partners/_import.
+	 * @param request HTTP request with the partners in the body.
+	 * @return Counts, failed line numbers and throughput of the import.
+	 */
+	@PostMapping(path = "_import", consumes = { NDJSON, CSV }, produces = "application/json")
+	public ImportReport importPartners(HttpServletRequest request) {
+		try {
+			if (MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(CSV)))
+				return partnerImportService.importCsv(request.getInputStream());
+			return partnerImportService.importJson(request.getInputStream());
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		} catch (BadRequestError | IOException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Updates the information of several partners, the partners are in the body of the HTTP message.
+	 * Response to a HTTP message with PUT and url api/partners/_bulk.
+	 * @param partners List of partners
+	 * @return Outcome of every partner, in the same order.
+	 */
+	@PutMapping(path = "_bulk", produces = "application/json")
+	public List<BulkItemResult> updatePartners(@NonNull @RequestBody List<Partner> partners) {
+		try {
+			return results(partnerService.updatePartners(partners), HttpStatus.OK);
 		} catch (InternalErrorException e) {
 			throw new ResponseStatusException(
 			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
 		}
-	}	
+	}
+	
+	/**
+	 * Removes several partners, the IDs are in the body of the HTTP message.
+	 * Response to a HTTP message with DELETE and url api/partners/_bulk.
+	 * @param ids List of IDs
+	 * @return Outcome of every ID, in the same order.
+	 */
+	@DeleteMapping(path = "_bulk", produces = "application/json")
+	public List<BulkItemResult> deletePartners(@NonNull @RequestBody List<Long> ids) {
+		try {
+			return results(partnerService.deletePartners(ids), HttpStatus.OK);
+		} catch (InternalErrorException e) {
+			throw new ResponseStatusException(
+			          HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Maps the outcomes of the items of a bulk operation to their HTTP statuses, shared with
+	 * ReactivePartnerController.
+	 * @param outcomes Outcomes of the items given by the service.
+	 * @param done Status of the items whose operation is correct.
+	 * @return Results of the items, in the same order.
+	 */
+	static List<BulkItemResult> results(List<BulkItemOutcome> outcomes, HttpStatus done) {
+		List<BulkItemResult> results = new ArrayList<>(outcomes.size());
+		for (BulkItemOutcome outcome : outcomes) {
+			results.add(new BulkItemResult(outcome.getId(), status(outcome.getOutcome(), done).value(),
+					outcome.getError()));
+		}
+		return results;
+	}
+
+	private static HttpStatus status(Outcome outcome, HttpStatus done) {
+		switch (outcome) {
+		case DONE:
+			return done;
+		case INVALID:
+		case EXISTS:
+			return HttpStatus.BAD_REQUEST;
+		case NOT_FOUND:
+			return HttpStatus.NOT_FOUND;
+		default:
+			return HttpStatus.INTERNAL_SERVER_ERROR;
+		}
+	}
 }
@@ -0,0 +1,11 @@
+package com.partner.app.dao;
+
+/**
+ * Type of a change to the partners, as recorded by the stores which log their changes.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public enum ChangeType {
+	INSERT, UPDATE, DELETE
+}
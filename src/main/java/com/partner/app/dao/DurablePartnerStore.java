@@ -0,0 +1,203 @@
+package com.partner.app.dao;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import com.partner.app.dao.wal.PartnerSnapshots;
+import com.partner.app.dao.wal.WriteAheadLog;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+
+/**
+ * In-memory store of the partners which survives restarts, selected with the property partner.store=durable.
+ * Every change is appended to a write-ahead log before it is applied, and the writer waits for it to be on disk,
+ * once per change or per batch. A snapshot of all the partners is written in the background every
+ * partner.store.durable.snapshot-every changes and when the application stops, and the log segments it holds
+ * are deleted. At startup the latest snapshot is loaded and the rest of the log replayed.
+ * <p>
+ * The database is only read the first time, when the directory has neither snapshots nor log, to seed the store.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Primary
+@Repository("durableDao")
+@ConditionalOnProperty(name = "partner.store", havingValue = "durable")
+public class DurablePartnerStore extends InMemoryPartnerStore {
+
+	private static final Logger log = LoggerFactory.getLogger(DurablePartnerStore.class);
+
+	private final PartnerDao database;
+
+	private final WriteAheadLog wal;
+
+	private final PartnerSnapshots snapshots;
+
+	private final long snapshotEvery;
+
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+	private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "partner-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Position of the latest snapshot.
+	 */
+	private volatile long snapshotPosition = -1;
+
+	/**
+	 * Changes recorded since the last snapshot started, guarded by the write lock.
+	 */
+	private long changes;
+
+	/**
+	 * Constructor of the class DurablePartnerStore.
+	 * @param database JDBC implementation, used to seed the store the first time.
+	 * @param directory Directory of the log and the snapshots.
+	 * @param segmentSize Size of the log segment files.
+	 * @param fsync If false, the writers do not wait for the log to be on disk.
+	 * @param snapshotEvery Number of changes between two snapshots.
+	 */
+	@Autowired
+	public DurablePartnerStore(@Qualifier("fakeDao") PartnerDao database,
+			@Value("${partner.store.durable.directory:data/partners}") String directory,
+			@Value("${partner.store.durable.segment-size:64MB}") DataSize segmentSize,
+			@Value("${partner.store.durable.fsync:true}") boolean fsync,
+			@Value("${partner.store.durable.snapshot-every:1000000}") long snapshotEvery) {
+		super(database, null, false);
+		Path path = Paths.get(directory);
+		this.database = database;
+		this.wal = new WriteAheadLog(path, (int) segmentSize.toBytes(), fsync);
+		this.snapshots = new PartnerSnapshots(path);
+		this.snapshotEvery = snapshotEvery;
+	}
+
+	/**
+	 * Loads the latest snapshot and replays the log after it, or seeds the store from the database.
+	 * @throws InternalErrorException Error with the files or the database query.
+	 */
+	@Override
+	@PostConstruct
+	public void load() throws InternalErrorException {
+		long started = System.nanoTime();
+		try {
+			long position = snapshots.load(this::restore);
+			if (position < 0 && wal.segmentCount() == 0) {
+				database.streamAllPartners(this::restore);
+				position = 0;
+				snapshots.write(position, partners());
+			}
+			snapshotPosition = position;
+			long last = wal.open(position, (type, partner) -> {
+				apply(type, partner);
+				nextId.accumulateAndGet(partner.getId() + 1, Math::max);
+			});
+			log.info("Restored the partners up to change {} in {} ms", last,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		} catch (IOException e) {
+			throw new InternalErrorException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Refuses the changes and writes a last snapshot, so the next startup does not replay the log.
+	 */
+	@Override
+	@PreDestroy
+	public void shutdown() {
+		closeWrites();
+		snapshotter.shutdown();
+		try {
+			snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+			// The web server may still be running, but the changes are refused and none is running.
+			long position = wal.roll();
+			if (position > snapshotPosition)
+				snapshot(position);
+			wal.close();
+		} catch (IOException e) {
+			log.warn("Could not write the last partner snapshot", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		super.shutdown();
+	}
+
+	@Override
+	public long getNewID() {
+		return nextId.getAndIncrement();
+	}
+
+	@Override
+	protected long record(ChangeType type, Partner partner) throws InternalErrorException {
+		try {
+			if (changes >= snapshotEvery && snapshotting.compareAndSet(false, true)) {
+				// Every change logged so far has been applied, so the snapshot can start from here.
+				long position = wal.roll();
+				changes = 0;
+				snapshotter.execute(() -> {
+					try {
+						snapshot(position);
+					} catch (IOException | RuntimeException e) {
+						log.warn("Could not write a partner snapshot", e);
+					} finally {
+						snapshotting.set(false);
+					}
+				});
+			}
+			long position = wal.append(type, partner);
+			changes++;
+			nextId.accumulateAndGet(partner.getId() + 1, Math::max);
+			return position;
+		} catch (IOException e) {
+			throw new InternalErrorException(e.getMessage());
+		}
+	}
+
+	@Override
+	protected void flush(long position) throws InternalErrorException {
+		try {
+			wal.sync(position);
+		} catch (IOException e) {
+			throw new InternalErrorException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a snapshot from the position returned by a roll of the log. The partners are read while they change,
+	 * the changes after the position are replayed over the snapshot anyway.
+	 */
+	private void snapshot(long position) throws IOException {
+		snapshots.write(position, partners());
+		snapshotPosition = position;
+		wal.deleteSegmentsUpTo(position);
+	}
+
+	private void restore(Partner partner) {
+		apply(ChangeType.INSERT, partner);
+		nextId.accumulateAndGet(partner.getId() + 1, Math::max);
+	}
+}
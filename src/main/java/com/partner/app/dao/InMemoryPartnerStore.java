@@ -0,0 +1,600 @@
+package com.partner.app.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChange;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.model.PartnerVersion;
+
+/**
+ * Implements the interface PartnerDao keeping all the partners in memory. It is selected with the property
+ * partner.store=memory and replaces the JDBC implementation in the rest of the application.
+ * <p>
+ * The partners are loaded from the database at startup. Lookups by ID go to a primitive long-keyed hash map read
+ * optimistically (without taking any lock when no write is running), pages are read from a concurrent sorted map
+ * and the references and the expiration dates have their own indexes. Writes are serialized. With
+ * partner.store.memory.write-through=true every change is also applied to the database, in order, by a background
+ * thread. Subclasses can record the changes elsewhere instead (see DurablePartnerStore).
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Primary
+@Repository("memoryDao")
+@ConditionalOnProperty(name = "partner.store", havingValue = "memory")
+public class InMemoryPartnerStore implements PartnerDao {
+
+	private static final Logger log = LoggerFactory.getLogger(InMemoryPartnerStore.class);
+
+	private final PartnerDao database;
+
+	private final PartnerIdAllocator idAllocator;
+
+	private final boolean writeThrough;
+
+	private final StampedLock lock = new StampedLock();
+
+	private final LongPartnerMap byId = new LongPartnerMap();
+
+	private final ConcurrentSkipListMap<Long, Partner> sorted = new ConcurrentSkipListMap<>();
+
+	private final ConcurrentHashMap<String, Set<Long>> byRef = new ConcurrentHashMap<>();
+
+	private final ConcurrentSkipListSet<Partner> byExpiry = new ConcurrentSkipListSet<>(
+			Comparator.comparing(Partner::getExpires).thenComparingLong(Partner::getId));
+
+	/**
+	 * Set when the application stops, guarded by the write lock.
+	 */
+	private boolean closed;
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "partner-write-through");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor of the class InMemoryPartnerStore.
+	 * @param database JDBC implementation, used to load the partners and to write the changes through.
+	 * @param idAllocator Allocator of the IDs of new partners.
+	 * @param writeThrough If true, every change is also applied to the database.
+	 */
+	@Autowired
+	public InMemoryPartnerStore(@Qualifier("fakeDao") PartnerDao database, PartnerIdAllocator idAllocator,
+			@Value("${partner.store.memory.write-through:false}") boolean writeThrough) {
+		this.database = database;
+		this.idAllocator = idAllocator;
+		this.writeThrough = writeThrough;
+	}
+
+	/**
+	 * Loads all the partners from the database.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	@PostConstruct
+	public void load() throws InternalErrorException {
+		database.streamAllPartners(this::store);
+	}
+
+	/**
+	 * Waits for the pending changes to be written to the database.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		closeWrites();
+		writer.shutdown();
+	}
+
+	/**
+	 * Refuses the changes from now on, with an InternalErrorException. The web server is only stopped after the
+	 * beans are destroyed, so requests can still come while the application stops. A change which has already
+	 * taken the write lock is recorded before this returns.
+	 */
+	protected void closeWrites() {
+		long stamp = lock.writeLock();
+		try {
+			closed = true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public long getNewID() throws InternalErrorException {
+		return idAllocator.nextId();
+	}
+
+	@Override
+	public int insertPartner(Partner partner) throws InternalErrorException, BadRequestError {
+		reserve(partner.getId());
+		Partner inserted = copy(partner);
+		long position = insert(inserted);
+		if (position < 0)
+			throw new BadRequestError("Partner already exists.");
+		flush(position);
+		setVersion(partner, inserted);
+		return 1;
+	}
+
+	@Override
+	public List<Partner> selectAllPartners(int from, int size, Date unexpiredAt) throws InternalErrorException {
+		List<Partner> list = new ArrayList<>(Math.max(0, Math.min(size, 1024)));
+		Iterator<Partner> partners = unexpired(sorted.values(), unexpiredAt).iterator();
+		for (int i = 0; i < from && partners.hasNext(); i++) {
+			partners.next();
+		}
+		while (list.size() < size && partners.hasNext()) {
+			list.add(copy(partners.next()));
+		}
+		return list;
+	}
+
+	@Override
+	public void streamAllPartners(Consumer<Partner> consumer) throws InternalErrorException {
+		for (Partner partner : sorted.values()) {
+			consumer.accept(copy(partner));
+		}
+	}
+
+	@Override
+	public List<Partner> selectPartnersAfter(long afterId, int limit, Date unexpiredAt) throws InternalErrorException {
+		List<Partner> list = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		Iterator<Partner> partners = unexpired(sorted.tailMap(afterId, false).values(), unexpiredAt).iterator();
+		while (list.size() < limit && partners.hasNext()) {
+			list.add(copy(partners.next()));
+		}
+		return list;
+	}
+
+	@Override
+	public List<Partner> selectPartnersByRef(String ref) throws InternalErrorException {
+		List<Partner> list = withRef(ref);
+		list.replaceAll(InMemoryPartnerStore::copy);
+		return list;
+	}
+
+	/**
+	 * Filters the partners which have not expired at a time, as the database query does, if it is set.
+	 */
+	private static Iterable<Partner> unexpired(Iterable<Partner> partners, Date unexpiredAt) {
+		if (unexpiredAt == null)
+			return partners;
+		return () -> StreamSupport.stream(partners.spliterator(), false)
+				.filter(partner -> !partner.isExpiredAt(unexpiredAt)).iterator();
+	}
+
+	/**
+	 * Gets the stored partners with a reference, ordered by ID.
+	 */
+	private List<Partner> withRef(String ref) {
+		Set<Long> ids = byRef.get(ref);
+		if (ids == null)
+			return new ArrayList<>();
+		List<Partner> list = new ArrayList<>(ids.size());
+		for (long id : ids) {
+			Partner partner = sorted.get(id);
+			if (partner != null && ref.equals(partner.getRef()))
+				list.add(partner);
+		}
+		list.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+		return list;
+	}
+
+	/**
+	 * Filters the partners with the reference, if it is set, or all of them. They are only sorted if the order is
+	 * not the order of the IDs.
+	 */
+	@Override
+	public List<Partner> searchPartners(PartnerQuery query) throws InternalErrorException {
+		Iterable<Partner> candidates = query.getRef() != null ? withRef(query.getRef()) : sorted.values();
+		Stream<Partner> partners = StreamSupport.stream(candidates.spliterator(), false).filter(query::matches);
+		if (query.getSort() != PartnerQuery.Sort.ID || query.isDescending())
+			partners = partners.sorted(query.comparator());
+		return partners.skip(query.getFrom()).limit(query.getSize()).map(InMemoryPartnerStore::copy)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public Partner selectPartner(long id) throws PartnerNotFoundException, InternalErrorException {
+		return copy(stored(id));
+	}
+
+	@Override
+	public List<Partner> selectPartners(List<Long> ids) throws InternalErrorException {
+		List<Partner> list = new ArrayList<>(ids.size());
+		for (long id : new TreeSet<>(ids)) {
+			try {
+				list.add(copy(stored(id)));
+			} catch (PartnerNotFoundException e) {
+				// Left out.
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public PartnerVersion selectPartnerVersion(long id) throws PartnerNotFoundException, InternalErrorException {
+		return PartnerVersion.of(stored(id));
+	}
+
+	private Partner stored(long id) throws PartnerNotFoundException {
+		long stamp = lock.tryOptimisticRead();
+		Partner partner = byId.get(id);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				partner = byId.get(id);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (partner == null)
+			throw new PartnerNotFoundException();
+		return partner;
+	}
+
+	@Override
+	public int deletePartner(long id) throws PartnerNotFoundException, InternalErrorException {
+		long position = delete(id);
+		if (position < 0)
+			throw new PartnerNotFoundException();
+		flush(position);
+		return 1;
+	}
+
+	@Override
+	public int updatePartner(Partner partner) throws PartnerNotFoundException, PreconditionFailedException,
+			InternalErrorException {
+		Partner updated = copy(partner);
+		long position = update(updated, partner.getVersion());
+		if (position == -1)
+			throw new PartnerNotFoundException();
+		if (position == -2)
+			throw new PreconditionFailedException();
+		flush(position);
+		setVersion(partner, updated);
+		return 1;
+	}
+
+	@Override
+	public int[] insertPartners(List<Partner> partners) throws InternalErrorException {
+		reserve(partners.stream().mapToLong(Partner::getId).max().orElse(0));
+		int[] rows = new int[partners.size()];
+		long last = -1;
+		for (int i = 0; i < rows.length; i++) {
+			Partner inserted = copy(partners.get(i));
+			long position = insert(inserted);
+			rows[i] = position < 0 ? 0 : 1;
+			if (position >= 0)
+				setVersion(partners.get(i), inserted);
+			last = Math.max(last, position);
+		}
+		if (last >= 0)
+			flush(last);
+		return rows;
+	}
+
+	@Override
+	public int[] updatePartners(List<Partner> partners) throws InternalErrorException {
+		int[] rows = new int[partners.size()];
+		long last = -1;
+		for (int i = 0; i < rows.length; i++) {
+			Partner updated = copy(partners.get(i));
+			long position = update(updated, 0);
+			rows[i] = position < 0 ? 0 : 1;
+			if (position >= 0)
+				setVersion(partners.get(i), updated);
+			last = Math.max(last, position);
+		}
+		if (last >= 0)
+			flush(last);
+		return rows;
+	}
+
+	@Override
+	public int[] deletePartners(List<Long> ids) throws InternalErrorException {
+		int[] rows = new int[ids.size()];
+		long last = -1;
+		for (int i = 0; i < rows.length; i++) {
+			long position = delete(ids.get(i));
+			rows[i] = position < 0 ? 0 : 1;
+			last = Math.max(last, position);
+		}
+		if (last >= 0)
+			flush(last);
+		return rows;
+	}
+
+	@Override
+	public List<Partner> selectExpiredPartners(Date now, int limit) throws InternalErrorException {
+		List<Partner> list = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		Iterator<Partner> partners = byExpiry.iterator();
+		while (list.size() < limit && partners.hasNext()) {
+			Partner partner = partners.next();
+			if (!partner.isExpiredAt(now))
+				break;
+			list.add(copy(partner));
+		}
+		return list;
+	}
+
+	/**
+	 * The expired partners are removed as deletions, there is no archive in memory: with write-through they are
+	 * removed from the database without being archived.
+	 */
+	@Override
+	public int[] expirePartners(List<Long> ids, Date now, boolean archive) throws InternalErrorException {
+		int[] rows = new int[ids.size()];
+		long last = -1;
+		for (int i = 0; i < rows.length; i++) {
+			long position = expire(ids.get(i), now);
+			rows[i] = position < 0 ? 0 : 1;
+			last = Math.max(last, position);
+		}
+		if (last >= 0)
+			flush(last);
+		return rows;
+	}
+
+	/**
+	 * The database only gets the changes written through, later and in the background, so its log is not the log
+	 * of the changes to this store.
+	 */
+	@Override
+	public boolean hasChangeLog() {
+		return false;
+	}
+
+	@Override
+	public List<PartnerChange> selectChanges(long since, int limit) throws InternalErrorException {
+		return database.selectChanges(since, limit);
+	}
+
+	@Override
+	public int deleteChanges(Date before) throws InternalErrorException {
+		return database.deleteChanges(before);
+	}
+
+	/**
+	 * Records a change before it is applied to the partners in memory. It is called with the write lock held, so
+	 * the changes are recorded in the order they are applied. By default the change is written through to the
+	 * database if that is enabled.
+	 * @param type Type of the change.
+	 * @param partner Partner inserted or updated, or the partner removed.
+	 * @return Position of the change, handed to flush once the lock is released.
+	 * @throws InternalErrorException The change could not be recorded, it is not applied.
+	 */
+	protected long record(ChangeType type, Partner partner) throws InternalErrorException {
+		if (writeThrough)
+			writer.execute(() -> writeThrough(type, partner));
+		return 0;
+	}
+
+	/**
+	 * Waits for the changes recorded up to a position, called after every change or batch of changes without the
+	 * write lock. By default it does nothing.
+	 * @param position Position returned by record.
+	 * @throws InternalErrorException The changes could not be made durable.
+	 */
+	protected void flush(long position) throws InternalErrorException {
+	}
+
+	/**
+	 * Applies a change to the partners in memory without recording it, used to restore them at startup.
+	 * @param type Type of the change.
+	 * @param partner Partner inserted or updated, or the partner removed.
+	 */
+	protected void apply(ChangeType type, Partner partner) {
+		if (type == ChangeType.DELETE)
+			remove(partner.getId());
+		else
+			store(partner);
+	}
+
+	/**
+	 * Gets a live view of the partners in the order of their IDs, which does not block the writes.
+	 * @return Partners.
+	 */
+	protected Iterable<Partner> partners() {
+		return sorted.values();
+	}
+
+	private long insert(Partner partner) throws InternalErrorException {
+		long stamp = lock.writeLock();
+		try {
+			checkOpen();
+			if (byId.get(partner.getId()) != null)
+				return -1;
+			partner.setVersion(1);
+			partner.setLastModified(new Date());
+			long position = record(ChangeType.INSERT, partner);
+			store(partner);
+			return position;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Keeps the allocator from handing out an inserted ID. The durable store has no allocator, its IDs follow the
+	 * highest one stored.
+	 */
+	private void reserve(long id) throws InternalErrorException {
+		if (idAllocator != null)
+			idAllocator.reserve(id);
+	}
+
+	/**
+	 * Replaces a partner, if its version is the expected one or the expected version is 0.
+	 * @return Position of the change, -1 if there is no partner with the ID and -2 if it has another version.
+	 */
+	private long update(Partner partner, long expectedVersion) throws InternalErrorException {
+		long stamp = lock.writeLock();
+		try {
+			checkOpen();
+			Partner previous = byId.get(partner.getId());
+			if (previous == null)
+				return -1;
+			if (expectedVersion != 0 && previous.getVersion() != expectedVersion)
+				return -2;
+			partner.setVersion(previous.getVersion() + 1);
+			partner.setLastModified(new Date());
+			long position = record(ChangeType.UPDATE, partner);
+			store(partner);
+			return position;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private long delete(long id) throws InternalErrorException {
+		long stamp = lock.writeLock();
+		try {
+			checkOpen();
+			Partner previous = byId.get(id);
+			if (previous == null)
+				return -1;
+			long position = record(ChangeType.DELETE, previous);
+			remove(id);
+			return position;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes a partner if it has expired.
+	 * @return Position of the change, -1 if there is no expired partner with the ID.
+	 */
+	private long expire(long id, Date now) throws InternalErrorException {
+		long stamp = lock.writeLock();
+		try {
+			checkOpen();
+			Partner previous = byId.get(id);
+			if (previous == null || !previous.isExpiredAt(now))
+				return -1;
+			long position = record(ChangeType.DELETE, previous);
+			remove(id);
+			return position;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Fails if the changes are refused, the caller holds the write lock.
+	 */
+	private void checkOpen() throws InternalErrorException {
+		if (closed)
+			throw new InternalErrorException("The partner store is closed.");
+	}
+
+	/**
+	 * Adds or replaces a partner in the map and the indexes, the caller holds the write lock.
+	 */
+	private void store(Partner partner) {
+		Partner previous = byId.put(partner.getId(), partner);
+		sorted.put(partner.getId(), partner);
+		if (previous != null && previous.getRef() != null && !previous.getRef().equals(partner.getRef()))
+			removeRef(previous);
+		if (previous != null && previous.getExpires() != null)
+			byExpiry.remove(previous);
+		if (partner.getExpires() != null)
+			byExpiry.add(partner);
+		if (partner.getRef() != null)
+			byRef.computeIfAbsent(partner.getRef(), ref -> ConcurrentHashMap.newKeySet()).add(partner.getId());
+	}
+
+	/**
+	 * Removes a partner from the map and the indexes, the caller holds the write lock.
+	 */
+	private Partner remove(long id) {
+		Partner previous = byId.remove(id);
+		if (previous != null) {
+			sorted.remove(id);
+			if (previous.getRef() != null)
+				removeRef(previous);
+			if (previous.getExpires() != null)
+				byExpiry.remove(previous);
+		}
+		return previous;
+	}
+
+	private void removeRef(Partner partner) {
+		byRef.computeIfPresent(partner.getRef(), (ref, ids) -> {
+			ids.remove(partner.getId());
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+
+	private void writeThrough(ChangeType type, Partner partner) {
+		try {
+			switch (type) {
+			case INSERT:
+				database.insertPartner(copy(partner));
+				break;
+			case UPDATE:
+				// The database keeps its own versions, the change is applied whatever version it has there.
+				Partner unconditional = copy(partner);
+				unconditional.setVersion(0);
+				database.updatePartner(unconditional);
+				break;
+			case DELETE:
+				database.deletePartner(partner.getId());
+				break;
+			}
+		} catch (Exception e) {
+			log.warn("Could not write a partner change through to the database", e);
+		}
+	}
+
+	/**
+	 * The stored partners are never shared with the callers, which may change them later: they are copied when they
+	 * are written and when they are read.
+	 */
+	private static Partner copy(Partner partner) {
+		Partner copy = new Partner(partner.getId(), partner.getCompanyName(), partner.getRef(), partner.getLocale(),
+				partner.getExpires());
+		setVersion(copy, partner);
+		return copy;
+	}
+
+	private static void setVersion(Partner partner, Partner from) {
+		partner.setVersion(from.getVersion());
+		partner.setLastModified(from.getLastModified());
+	}
+}
@@ -0,0 +1,152 @@
+package com.partner.app.dao;
+
+import com.partner.app.model.Partner;
+
+/**
+ * Hash map from primitive long IDs to partners, with open addressing and linear probing, so a lookup does not box
+ * the ID nor follow a chain of entries. It must be written by one thread at a time. Readers running at the same
+ * time as a writer may get a wrong answer, but never loop forever nor fail, so they can read optimistically and
+ * validate afterwards (see InMemoryPartnerStore).
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+class LongPartnerMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Keys and values are replaced together when the map grows, so a reader always sees arrays of the same table.
+	 * A slot is empty when its value is null.
+	 */
+	private volatile Table table = new Table(MIN_CAPACITY);
+
+	private int size;
+
+	/**
+	 * Gets the partner with the specified ID.
+	 * @param id ID of the partner.
+	 * @return Partner, null if there is no partner with the ID.
+	 */
+	Partner get(long id) {
+		Table t = table;
+		int mask = t.keys.length - 1;
+		int i = slot(id, mask);
+		for (int probes = 0; probes <= mask; probes++) {
+			Partner value = t.values[i];
+			if (value == null)
+				return null;
+			if (t.keys[i] == id)
+				return value;
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds or replaces the partner with the specified ID.
+	 * @param id ID of the partner.
+	 * @param partner Partner.
+	 * @return Previous partner with the ID, null if there was none.
+	 */
+	Partner put(long id, Partner partner) {
+		if (2 * (size + 1) > table.keys.length)
+			resize(2 * table.keys.length);
+		Table t = table;
+		int mask = t.keys.length - 1;
+		int i = slot(id, mask);
+		while (t.values[i] != null) {
+			if (t.keys[i] == id) {
+				Partner previous = t.values[i];
+				t.values[i] = partner;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		t.keys[i] = id;
+		t.values[i] = partner;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes the partner with the specified ID.
+	 * @param id ID of the partner.
+	 * @return Removed partner, null if there was none.
+	 */
+	Partner remove(long id) {
+		Table t = table;
+		int mask = t.keys.length - 1;
+		int i = slot(id, mask);
+		while (t.values[i] != null) {
+			if (t.keys[i] == id) {
+				Partner previous = t.values[i];
+				shiftBack(t, i, mask);
+				size--;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the number of partners.
+	 * @return Number of partners.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Fills the hole left by a removal with the following entries of its probe sequence, so no lookup stops early.
+	 */
+	private static void shiftBack(Table t, int hole, int mask) {
+		int i = hole;
+		for (;;) {
+			i = (i + 1) & mask;
+			if (t.values[i] == null)
+				break;
+			int home = slot(t.keys[i], mask);
+			// The entry can move to the hole if the hole lies between its home slot and its current slot.
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				t.keys[hole] = t.keys[i];
+				t.values[hole] = t.values[i];
+				hole = i;
+			}
+		}
+		t.values[hole] = null;
+	}
+
+	private void resize(int capacity) {
+		Table old = table;
+		Table t = new Table(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < old.keys.length; j++) {
+			if (old.values[j] != null) {
+				int i = slot(old.keys[j], mask);
+				while (t.values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				t.keys[i] = old.keys[j];
+				t.values[i] = old.values[j];
+			}
+		}
+		table = t;
+	}
+
+	private static int slot(long id, int mask) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private static final class Table {
+		private final long[] keys;
+		private final Partner[] values;
+
+		private Table(int capacity) {
+			keys = new long[capacity];
+			values = new Partner[capacity];
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package com.partner.app.dao;
 
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.partner.app.exceptions.BadRequestError;
 import com.partner.app.exceptions.InternalErrorException;
 import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
 import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChange;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.model.PartnerVersion;
 
 /**
  * Interface for the functions used to interact with the database.
@@ -20,10 +26,11 @@ public interface PartnerDao {
 	 * @return New ID.
 	 * @throws InternalErrorException Error with the database query.
 	 */
-	int getNewID() throws InternalErrorException;
+	long getNewID() throws InternalErrorException;
 	
 	/**
-	 * Insert a partner in the database.
+	 * Insert a partner in the database, with version 1. The version and the time of the insertion are set in the
+	 * partner.
 	 * @param Partner Partner which is going to be added to the database.
 	 * @return Returns the number 1 if the insertion is correct.
 	 * @throws InternalErrorException Error with the database insertion.
@@ -35,10 +42,45 @@ public interface PartnerDao {
 	 * Gets all the partners from the database.
 	 * @param from Offset in the resultset to paginate to.
 	 * @param size Window pagination size.
+	 * @param unexpiredAt If not null, only the partners which have not expired at this time.
 	 * @return List of partners.
 	 * @throws InternalErrorException Error with the database query.
 	 */
-	List<Partner> selectAllPartners(int from, int size) throws InternalErrorException;
+	List<Partner> selectAllPartners(int from, int size, Date unexpiredAt) throws InternalErrorException;
+	
+	/**
+	 * Reads all the partners from the database with a forward-only cursor, handing every partner to the consumer as
+	 * soon as its row is read, so the partners are never held in memory at the same time.
+	 * @param consumer Consumer of the partners, called in the order of the IDs.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	void streamAllPartners(Consumer<Partner> consumer) throws InternalErrorException;
+	
+	/**
+	 * Gets the partners which follow a given ID, seeking on the ID instead of skipping rows.
+	 * @param afterId ID of the last partner already read.
+	 * @param limit Maximum number of partners.
+	 * @param unexpiredAt If not null, only the partners which have not expired at this time.
+	 * @return List of partners ordered by ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<Partner> selectPartnersAfter(long afterId, int limit, Date unexpiredAt) throws InternalErrorException;
+	
+	/**
+	 * Gets the partners with the selected reference.
+	 * @param ref Reference of the partners.
+	 * @return List of partners ordered by ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<Partner> selectPartnersByRef(String ref) throws InternalErrorException;
+	
+	/**
+	 * Gets the partners which pass the filters of a search, in its order.
+	 * @param query Filters, order and window of the search.
+	 * @return List of partners.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<Partner> searchPartners(PartnerQuery query) throws InternalErrorException;
 	
 	/**
 	 * Gets the partner with the selected ID.
@@ -48,6 +90,23 @@ public interface PartnerDao {
 	 * @throws InternalErrorException Error with the database query.
 	 */
 	Partner selectPartner(long id) throws PartnerNotFoundException, InternalErrorException ;
+
+	/**
+	 * Gets the partners with the selected IDs in one query, the IDs without partner are left out.
+	 * @param ids IDs of the partners.
+	 * @return List of partners ordered by ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<Partner> selectPartners(List<Long> ids) throws InternalErrorException;
+	
+	/**
+	 * Gets the version and the time of the last change of the partner with the selected ID, without the rest.
+	 * @param id ID of the partner.
+	 * @return Version of the partner.
+	 * @throws PartnerNotFoundException There is no partner with the ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	PartnerVersion selectPartnerVersion(long id) throws PartnerNotFoundException, InternalErrorException;
 	
 	/**
 	 * Removes a partner from the database.
@@ -56,15 +115,94 @@ public interface PartnerDao {
 	 * @throws PartnerNotFoundException There is no partner with the ID.
 	 * @throws InternalErrorException Error with the database update.
 	 */
-	int deletePartner(String id) throws PartnerNotFoundException, InternalErrorException;
+	int deletePartner(long id) throws PartnerNotFoundException, InternalErrorException;
 	
 	/**
-	 * Updates the information of a partner.
+	 * Updates the information of a partner and increments its version. If the version of the partner is not 0, the
+	 * partner is only updated if that is its current version. The new version and the time of the update are set in
+	 * the partner.
 	 * @param partner New data of the partner.
 	 * @return returns the number 1 if the update is correct.
 	 * @throws PartnerNotFoundException There is no partner with the ID.
+	 * @throws PreconditionFailedException The partner has another version.
 	 * @throws InternalErrorException Error with the database update.
 	 */
-	int updatePartner(Partner partner) throws PartnerNotFoundException, InternalErrorException;
+	int updatePartner(Partner partner) throws PartnerNotFoundException, PreconditionFailedException,
+			InternalErrorException;
+	
+	/**
+	 * Inserts several partners in the database, using batches of statements.
+	 * @param partners Partners which are going to be added to the database.
+	 * @return For every partner, 1 if it has been inserted, 0 if it already exists or Statement.EXECUTE_FAILED if
+	 * the insertion has failed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	int[] insertPartners(List<Partner> partners) throws InternalErrorException;
+	
+	/**
+	 * Updates the information of several partners, using batches of statements. The versions are incremented
+	 * whatever version the partners have, and the updated partners get the version they have been saved with.
+	 * @param partners New data of the partners.
+	 * @return For every partner, 1 if it has been updated, 0 if there is no partner with its ID or
+	 * Statement.EXECUTE_FAILED if the update has failed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	int[] updatePartners(List<Partner> partners) throws InternalErrorException;
+	
+	/**
+	 * Removes several partners from the database, using batches of statements.
+	 * @param ids IDs of the partners.
+	 * @return For every ID, 1 if the partner has been removed, 0 if there is no partner with the ID or
+	 * Statement.EXECUTE_FAILED if the elimination has failed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	int[] deletePartners(List<Long> ids) throws InternalErrorException;
+	
+	/**
+	 * Gets the partners which have expired at a given time, the earliest first, reading the expiration dates in
+	 * order instead of every partner.
+	 * @param now Time, the partners which expire at or before it have expired.
+	 * @param limit Maximum number of partners.
+	 * @return List of partners ordered by expiration date and ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<Partner> selectExpiredPartners(Date now, int limit) throws InternalErrorException;
+	
+	/**
+	 * Removes several partners which have expired at a given time, using batches of statements. A partner whose
+	 * expiration date has been moved past the time since it was read is kept.
+	 * @param ids IDs of the partners.
+	 * @param now Time, the partners which expire at or before it have expired.
+	 * @param archive If true, the partners are copied to the archive before they are removed.
+	 * @return For every ID, 1 if the partner has been removed, 0 if there is no expired partner with the ID or
+	 * Statement.EXECUTE_FAILED if the elimination has failed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	int[] expirePartners(List<Long> ids, Date now, boolean archive) throws InternalErrorException;
+	
+	/**
+	 * Tells if every change made through this implementation is recorded in the log of changes when it is made, so
+	 * the log can be read with selectChanges.
+	 * @return true if the log of changes is kept.
+	 */
+	boolean hasChangeLog();
+	
+	/**
+	 * Gets the changes to the partners recorded in the log of changes after a sequence number. Every insertion,
+	 * update and elimination is recorded in the same transaction as the change itself.
+	 * @param since Sequence number of the last change already read, 0 for the first change.
+	 * @param limit Maximum number of changes.
+	 * @return List of changes ordered by sequence number.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	List<PartnerChange> selectChanges(long since, int limit) throws InternalErrorException;
+	
+	/**
+	 * Removes the changes recorded before a given time from the log of changes.
+	 * @param before Time of the oldest change which is kept.
+	 * @return Number of changes removed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	int deleteChanges(Date before) throws InternalErrorException;
 	
 }
@@ -1,93 +1,320 @@
 	package com.partner.app.dao;
 
-import java.util.LinkedList;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.partner.app.exceptions.BadRequestError;
 import com.partner.app.exceptions.InternalErrorException;
 import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
 import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChange;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.model.PartnerVersion;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Implements the interface PartnerDao, defines all the functions which interact with the database.
+ * <p>
+ * Every change to the partners is recorded in the table PARTNER_CHANGE in the same transaction. Its sequence number
+ * is taken from the row of PARTNER_CHANGE_SEQ, locked with SELECT ... FOR UPDATE as the last step of the
+ * transaction, so the numbers are given in the order the transactions commit, on this node or any other one
+ * sharing the database, and a reader of the log never skips a change committed later with a lower number. Only
+ * the recording of the changes is serialized, the statements before it run concurrently.
  * @author Alejandro Torreblanca
  *
  */
 @Repository("fakeDao")
 public class PartnerDataAccessService implements PartnerDao {
 
+	private static final Logger log = LoggerFactory.getLogger(PartnerDataAccessService.class);
+
 	@Autowired
 	private JdbcTemplate jdbcTemplate;
 
+	@Autowired
+	private PartnerIdAllocator idAllocator;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Value("${partner.bulk.chunk-size:500}")
+	private int chunkSize;
+
+	@Value("${partner.export.fetch-size:1000}")
+	private int fetchSize;
+
+	private static final String INSERT_QUERY = "INSERT INTO PARTNER (id, companyName, ref, locale, expires, version, lastModified) VALUES (?, ?, ?, ?, ?, 1, ?)";
+
+	private static final String UPDATE_QUERY = "UPDATE PARTNER SET companyName=?, ref=?, locale=?, expires=?, version=version+1, lastModified=? WHERE id = ?";
+
+	private static final String VERSION_QUERY = "SELECT version, lastModified FROM PARTNER WHERE ID = ?";
+
+	private static final String LOCK_VERSION_QUERY = "SELECT version FROM PARTNER WHERE ID = ? FOR UPDATE";
+
+	private static final String VERSIONS_QUERY = "SELECT id, version FROM PARTNER WHERE ID IN (%s)";
+
+	private static final String DELETE_QUERY = "DELETE FROM PARTNER WHERE ID = ?";
+
+	/**
+	 * Condition of the partners which have not expired at a time, the opposite of Partner.isExpiredAt.
+	 */
+	private static final String UNEXPIRED = "(expires IS NULL OR expires > ?)";
+
+	private static final String EXPIRED_QUERY = "SELECT * FROM PARTNER WHERE expires <= ? ORDER BY expires, id LIMIT ?";
+
+	private static final String ARCHIVE_QUERY = "INSERT INTO PARTNER_ARCHIVE (id, companyName, ref, locale, expires, version, lastModified, archivedAt) SELECT id, companyName, ref, locale, expires, version, lastModified, ? FROM PARTNER WHERE ID = ? AND expires <= ?";
+
+	private static final String DELETE_EXPIRED_QUERY = "DELETE FROM PARTNER WHERE ID = ? AND expires <= ?";
+
+	private static final String UNARCHIVE_QUERY = "DELETE FROM PARTNER_ARCHIVE WHERE ID = ? AND archivedAt = ?";
+
+	private static final String LOCK_SEQ_QUERY = "SELECT seq FROM PARTNER_CHANGE_SEQ WHERE id = 1 FOR UPDATE";
+
+	private static final String UPDATE_SEQ_QUERY = "UPDATE PARTNER_CHANGE_SEQ SET seq = ? WHERE id = 1";
+
+	private static final String CHANGE_QUERY = "INSERT INTO PARTNER_CHANGE (seq, type, id, companyName, ref, locale, expires, version, lastModified) SELECT ?, ?, id, companyName, ref, locale, expires, version, lastModified FROM PARTNER WHERE ID = ?";
+
+	private static final String DELETE_CHANGE_QUERY = "INSERT INTO PARTNER_CHANGE (seq, type, id, lastModified) VALUES (?, 'DELETE', ?, ?)";
+
+	private static final String CHANGES_QUERY = "SELECT * FROM PARTNER_CHANGE WHERE seq > ? ORDER BY seq LIMIT ?";
+
+	private static final String DELETE_CHANGES_QUERY = "DELETE FROM PARTNER_CHANGE WHERE lastModified < ?";
+
+	private final PartnerRowMapper rowMapper = new PartnerRowMapper();
+
 	@Override
 	public int insertPartner(Partner partner) throws InternalErrorException, BadRequestError {
-		String query = "SELECT * FROM PARTNER WHERE ID = ?";
+		idAllocator.reserve(partner.getId());
+		Timestamp now = new Timestamp(System.currentTimeMillis());
 		try {
-			jdbcTemplate.queryForObject(query, new Object[] { partner.getId() }, new PartnerRowMapper());
+			int row = transactionTemplate.execute(status -> {
+				int inserted = jdbcTemplate.update(INSERT_QUERY, partner.getId(), partner.getCompanyName(),
+						partner.getRef(), partner.getLocale().toLanguageTag(), partner.getExpires(), now);
+				recordChanges(ChangeType.INSERT, Collections.singletonList(partner.getId()), now);
+				return inserted;
+			});
+			partner.setVersion(1);
+			partner.setLastModified(new Date(now.getTime()));
+			return row;
+		} catch (DuplicateKeyException e) {
 			throw new BadRequestError("Partner already exists.");
-		} catch (EmptyResultDataAccessException e1) {
-			try {
-				jdbcTemplate.update("INSERT INTO PARTNER VALUES (?, ?, ?, ?, ?)", partner.getId(), partner.getCompanyName(),
-						partner.getRef(), partner.getLocale().toLanguageTag(), partner.getExpires());
-				return 1;
-			} catch (DataAccessException e2) {
-				throw new InternalErrorException(e2.getMessage());
-			}
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
 		}
 	}
 
 	@Override
-	public List<Partner> selectAllPartners(int from, int size) throws InternalErrorException {
-		String query = "SELECT * FROM PARTNER";
+	public List<Partner> selectAllPartners(int from, int size, Date unexpiredAt) throws InternalErrorException {
+		String query = "SELECT * FROM PARTNER" + (unexpiredAt == null ? "" : " WHERE " + UNEXPIRED)
+				+ " ORDER BY ID LIMIT ? OFFSET ?";
+		Object[] args = unexpiredAt == null ? new Object[] { size, from }
+				: new Object[] { new Timestamp(unexpiredAt.getTime()), size, from };
+		QueryTiming timing = new QueryTiming();
 		try {
-			List<Partner> list = jdbcTemplate.query(query, new PartnerRowMapper());
-			List<Partner> aux = new LinkedList<Partner>();
-			for (int i = from; i<list.size() && i < from+size ; i++) {
-				aux.add(list.get(i));
-			}
-			return aux;
+			return jdbcTemplate.query(query, args, new PartnerListExtractor(size, timing));
 		} catch (DataAccessException e) {
 			throw new InternalErrorException(e.getMessage());
 
+		} finally {
+			timing.record(registry, "selectAllPartners");
 		}
 	}
 	
 	@Override
-	public int getNewID() throws InternalErrorException {
-		String query = "SELECT MAX(ID) FROM PARTNER";
+	public void streamAllPartners(Consumer<Partner> consumer) throws InternalErrorException {
+		String query = "SELECT * FROM PARTNER ORDER BY ID";
+		QueryTiming timing = new QueryTiming();
 		try {
-			int i = jdbcTemplate.queryForObject(query, Integer.class);
-			return i + 1;
+			jdbcTemplate.query(con -> {
+				PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(fetchSize);
+				return ps;
+			}, (RowCallbackHandler) rs -> {
+				Partner partner = timing.mapRow(rs, rs.getRow());
+				timing.exclude(() -> consumer.accept(partner));
+			});
 		} catch (DataAccessException e) {
 			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "streamAllPartners");
 		}
 	}
+	
+	@Override
+	public List<Partner> selectPartnersAfter(long afterId, int limit, Date unexpiredAt) throws InternalErrorException {
+		String query = "SELECT * FROM PARTNER WHERE ID > ?" + (unexpiredAt == null ? "" : " AND " + UNEXPIRED)
+				+ " ORDER BY ID LIMIT ?";
+		Object[] args = unexpiredAt == null ? new Object[] { afterId, limit }
+				: new Object[] { afterId, new Timestamp(unexpiredAt.getTime()), limit };
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.query(query, args, new PartnerListExtractor(limit, timing));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectPartnersAfter");
+		}
+	}
+	
+	@Override
+	public List<Partner> selectPartnersByRef(String ref) throws InternalErrorException {
+		String query = "SELECT * FROM PARTNER WHERE REF = ? ORDER BY ID";
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.query(query, new Object[] { ref }, new PartnerListExtractor(16, timing));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectPartnersByRef");
+		}
+	}
+	
+	/**
+	 * Builds the query from the filters which are set, every filter has an index: the name prefix is a LIKE
+	 * without wildcards but the last one, which reads a range of the index of the names.
+	 */
+	@Override
+	public List<Partner> searchPartners(PartnerQuery query) throws InternalErrorException {
+		StringBuilder sql = new StringBuilder("SELECT * FROM PARTNER WHERE 1=1");
+		List<Object> args = new ArrayList<>();
+		if (query.getNamePrefix() != null) {
+			sql.append(" AND companyName LIKE ? ESCAPE '\\'");
+			args.add(query.getNamePrefix().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+		}
+		if (query.getRef() != null) {
+			sql.append(" AND ref = ?");
+			args.add(query.getRef());
+		}
+		if (query.getLocale() != null) {
+			sql.append(" AND locale IN (?, ?)");
+			for (String value : PartnerQuery.storedLocaleValues(query.getLocale())) {
+				args.add(value);
+			}
+		}
+		if (query.getExpiresAfter() != null) {
+			sql.append(" AND expires > ?");
+			args.add(query.getExpiresAfter());
+		}
+		if (query.getExpiresBefore() != null) {
+			sql.append(" AND expires < ?");
+			args.add(query.getExpiresBefore());
+		}
+		if (query.getUnexpiredAt() != null) {
+			sql.append(" AND ").append(UNEXPIRED);
+			args.add(new Timestamp(query.getUnexpiredAt().getTime()));
+		}
+		sql.append(" ORDER BY ").append(query.getSort().getColumn()).append(query.isDescending() ? " DESC" : "");
+		if (query.getSort() != PartnerQuery.Sort.ID)
+			sql.append(", id");
+		sql.append(" LIMIT ? OFFSET ?");
+		args.add(query.getSize());
+		args.add(query.getFrom());
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.query(sql.toString(), args.toArray(),
+					new PartnerListExtractor(query.getSize(), timing));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "searchPartners");
+		}
+	}
+	
+	@Override
+	public long getNewID() throws InternalErrorException {
+		return idAllocator.nextId();
+	}
 
 	@Override
 	public Partner selectPartner(long id) throws PartnerNotFoundException, InternalErrorException {
 		String query = "SELECT * FROM PARTNER WHERE ID = ?";
+		QueryTiming timing = new QueryTiming();
 		try {
-			Partner p = jdbcTemplate.queryForObject(query, new Object[] { id }, new PartnerRowMapper());
+			Partner p = jdbcTemplate.queryForObject(query, new Object[] { id }, timing);
 			return p;
 		} catch (EmptyResultDataAccessException e) {
 			throw new PartnerNotFoundException();
 		} catch (DataAccessException e) {
 			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectPartner");
 		}
 
 	}
 
 	@Override
-	public int deletePartner(String id) throws PartnerNotFoundException, InternalErrorException {
-		String query = "DELETE FROM PARTNER WHERE ID = ?";
+	public List<Partner> selectPartners(List<Long> ids) throws InternalErrorException {
+		if (ids.isEmpty())
+			return new ArrayList<>();
+		String query = "SELECT * FROM PARTNER WHERE ID IN (" + String.join(", ", Collections.nCopies(ids.size(), "?"))
+				+ ") ORDER BY ID";
+		QueryTiming timing = new QueryTiming();
 		try {
-			int row = jdbcTemplate.update(query, id);
+			return jdbcTemplate.query(query, ids.toArray(), new PartnerListExtractor(ids.size(), timing));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectPartners");
+		}
+	}
+
+	@Override
+	public PartnerVersion selectPartnerVersion(long id) throws PartnerNotFoundException, InternalErrorException {
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.queryForObject(VERSION_QUERY, new Object[] { id }, timing.of(
+					(rs, rowNum) -> new PartnerVersion(rs.getLong(1), new Date(rs.getTimestamp(2).getTime()))));
+		} catch (EmptyResultDataAccessException e) {
+			throw new PartnerNotFoundException();
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectPartnerVersion");
+		}
+	}
+
+	@Override
+	public int deletePartner(long id) throws PartnerNotFoundException, InternalErrorException {
+		try {
+			Timestamp now = new Timestamp(System.currentTimeMillis());
+			int row = transactionTemplate.execute(status -> {
+				int deleted = jdbcTemplate.update(DELETE_QUERY, id);
+				if (deleted > 0)
+					recordChanges(ChangeType.DELETE, Collections.singletonList(id), now);
+				return deleted;
+			});
 			if(row==0)
 				throw new PartnerNotFoundException();
 			return row;
@@ -98,18 +325,300 @@ public class PartnerDataAccessService implements PartnerDao {
 	}
 
 	@Override
-	public int updatePartner(Partner partner) throws PartnerNotFoundException, InternalErrorException {
-		String query = "UPDATE PARTNER SET companyName=?, ref=?, locale=?, expires=? WHERE id = ?";
+	public int updatePartner(Partner partner) throws PartnerNotFoundException, PreconditionFailedException,
+			InternalErrorException {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
 		try {
-			int row = jdbcTemplate.update(query, partner.getCompanyName(), partner.getRef(),
-					partner.getLocale().toLanguageTag(), partner.getExpires(), partner.getId());
-			if(row==0)
+			// The row is locked while it is checked and updated, so the version read is the one updated.
+			long version = transactionTemplate.execute(status -> {
+				List<Long> versions = jdbcTemplate.queryForList(LOCK_VERSION_QUERY, Long.class, partner.getId());
+				if (versions.isEmpty())
+					return -1L;
+				if (partner.getVersion() != 0 && partner.getVersion() != versions.get(0))
+					return -2L;
+				jdbcTemplate.update(UPDATE_QUERY, partner.getCompanyName(), partner.getRef(),
+						partner.getLocale().toLanguageTag(), partner.getExpires(), now, partner.getId());
+				recordChanges(ChangeType.UPDATE, Collections.singletonList(partner.getId()), now);
+				return versions.get(0) + 1;
+			});
+			if (version == -1)
 				throw new PartnerNotFoundException();
-			return row;
+			if (version == -2)
+				throw new PreconditionFailedException();
+			partner.setVersion(version);
+			partner.setLastModified(new Date(now.getTime()));
+			return 1;
 		} catch (DataAccessException e) {
 			throw new InternalErrorException(e.getMessage());
 		}
 		
 	}
 
+	@Override
+	public int[] insertPartners(List<Partner> partners) throws InternalErrorException {
+		idAllocator.reserve(partners.stream().mapToLong(Partner::getId).max().orElse(0));
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		for (Partner partner : partners) {
+			partner.setVersion(1);
+			partner.setLastModified(new Date(now.getTime()));
+		}
+		return batchUpdate(INSERT_QUERY, partners, ChangeType.INSERT, Partner::getId, now, written -> {},
+				(ps, partner) -> {
+					ps.setLong(1, partner.getId());
+					ps.setString(2, partner.getCompanyName());
+					ps.setString(3, partner.getRef());
+					ps.setString(4, partner.getLocale().toLanguageTag());
+					ps.setObject(5, partner.getExpires());
+					ps.setTimestamp(6, now);
+				});
+	}
+
+	/**
+	 * The updated partners get the version they have been saved with, read in the transaction of their update.
+	 */
+	@Override
+	public int[] updatePartners(List<Partner> partners) throws InternalErrorException {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		Consumer<List<Partner>> written = updated -> {
+			Map<Long, Long> versions = new HashMap<>();
+			String ids = String.join(", ", Collections.nCopies(updated.size(), "?"));
+			jdbcTemplate.query(String.format(VERSIONS_QUERY, ids), updated.stream().map(Partner::getId).toArray(),
+					(RowCallbackHandler) rs -> versions.put(rs.getLong(1), rs.getLong(2)));
+			for (Partner partner : updated) {
+				partner.setVersion(versions.get(partner.getId()));
+				partner.setLastModified(new Date(now.getTime()));
+			}
+		};
+		return batchUpdate(UPDATE_QUERY, partners, ChangeType.UPDATE, Partner::getId, now, written, (ps, partner) -> {
+			ps.setString(1, partner.getCompanyName());
+			ps.setString(2, partner.getRef());
+			ps.setString(3, partner.getLocale().toLanguageTag());
+			ps.setObject(4, partner.getExpires());
+			ps.setTimestamp(5, now);
+			ps.setLong(6, partner.getId());
+		});
+	}
+
+	@Override
+	public int[] deletePartners(List<Long> ids) throws InternalErrorException {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		return batchUpdate(DELETE_QUERY, ids, ChangeType.DELETE, Long::longValue, now, written -> {},
+				(ps, id) -> ps.setLong(1, id));
+	}
+
+	@Override
+	public List<Partner> selectExpiredPartners(Date now, int limit) throws InternalErrorException {
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.query(EXPIRED_QUERY, new Object[] { new Timestamp(now.getTime()), limit },
+					new PartnerListExtractor(limit, timing));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectExpiredPartners");
+		}
+	}
+
+	/**
+	 * Without the archive, the partners are removed like in deletePartners. With it, every chunk is copied and
+	 * removed in one transaction, and the copies of the partners which have not been removed, because they have
+	 * been extended in the meantime, are removed from the archive.
+	 */
+	@Override
+	public int[] expirePartners(List<Long> ids, Date now, boolean archive) throws InternalErrorException {
+		Timestamp time = new Timestamp(now.getTime());
+		ParameterizedPreparedStatementSetter<Long> expired = (ps, id) -> {
+			ps.setLong(1, id);
+			ps.setTimestamp(2, time);
+		};
+		Timestamp archivedAt = new Timestamp(System.currentTimeMillis());
+		if (!archive)
+			return batchUpdate(DELETE_EXPIRED_QUERY, ids, ChangeType.DELETE, Long::longValue, archivedAt, written -> {},
+					expired);
+		int[] rows = new int[ids.size()];
+		for (int from = 0; from < ids.size(); from += chunkSize) {
+			List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+			try {
+				int[][] counts = transactionTemplate.execute(status -> {
+					jdbcTemplate.batchUpdate(ARCHIVE_QUERY, chunk, chunk.size(), (ps, id) -> {
+						ps.setTimestamp(1, archivedAt);
+						ps.setLong(2, id);
+						ps.setTimestamp(3, time);
+					});
+					int[][] deleted = jdbcTemplate.batchUpdate(DELETE_EXPIRED_QUERY, chunk, chunk.size(), expired);
+					List<Long> kept = new ArrayList<>();
+					List<Long> removed = new ArrayList<>();
+					for (int i = 0; i < chunk.size(); i++) {
+						(deleted[0][i] == 0 ? kept : removed).add(chunk.get(i));
+					}
+					if (!kept.isEmpty()) {
+						jdbcTemplate.batchUpdate(UNARCHIVE_QUERY, kept, kept.size(), (ps, id) -> {
+							ps.setLong(1, id);
+							ps.setTimestamp(2, archivedAt);
+						});
+					}
+					recordChanges(ChangeType.DELETE, removed, archivedAt);
+					return deleted;
+				});
+				for (int i = 0; i < chunk.size(); i++) {
+					int count = counts[0][i];
+					rows[from + i] = count == Statement.SUCCESS_NO_INFO ? 1 : count;
+				}
+			} catch (DataAccessException e) {
+				throw new InternalErrorException(e.getMessage());
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Executes a statement for every item, in chunks of chunkSize items sent as one JDBC batch and committed as one
+	 * transaction with their changes. If a chunk fails, it is rolled back and its items are executed one by one in
+	 * another transaction, with a savepoint before every item, so only the items which are wrong fail. If that
+	 * transaction fails too, the items of the chunk fail and the next chunks are still executed: the chunks already
+	 * committed are reported, so the caller can apply their side effects.
+	 * @param query Statement.
+	 * @param items Items whose values are set in the statement.
+	 * @param type Type of the changes made by the statement.
+	 * @param id Gets the ID of the partner of an item.
+	 * @param now Time of the changes.
+	 * @param written Called in the transaction with the items whose rows have been changed.
+	 * @param setter Sets the values of an item in the statement.
+	 * @return Number of rows affected by the statement of every item, 0 for duplicated keys and
+	 * Statement.EXECUTE_FAILED for other errors.
+	 */
+	private <T> int[] batchUpdate(String query, List<T> items, ChangeType type, ToLongFunction<T> id, Timestamp now,
+			Consumer<List<T>> written, ParameterizedPreparedStatementSetter<T> setter) {
+		int[] rows = new int[items.size()];
+		for (int from = 0; from < items.size(); from += chunkSize) {
+			List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+			try {
+				int[][] counts = transactionTemplate.execute(status -> {
+					int[][] changed = jdbcTemplate.batchUpdate(query, chunk, chunk.size(), setter);
+					List<T> done = new ArrayList<>(chunk.size());
+					List<Long> ids = new ArrayList<>(chunk.size());
+					for (int i = 0; i < chunk.size(); i++) {
+						if (changed[0][i] != 0) {
+							done.add(chunk.get(i));
+							ids.add(id.applyAsLong(chunk.get(i)));
+						}
+					}
+					recordChanges(type, ids, now);
+					if (!done.isEmpty())
+						written.accept(done);
+					return changed;
+				});
+				for (int i = 0; i < chunk.size(); i++) {
+					int count = counts[0][i];
+					rows[from + i] = count == Statement.SUCCESS_NO_INFO ? 1 : count;
+				}
+			} catch (DataAccessException e) {
+				try {
+					int[] counts = updateEach(query, chunk, type, id, now, written, setter);
+					System.arraycopy(counts, 0, rows, from, counts.length);
+				} catch (DataAccessException retry) {
+					log.warn("Could not execute a chunk of {} items", chunk.size(), retry);
+					Arrays.fill(rows, from, from + chunk.size(), Statement.EXECUTE_FAILED);
+				}
+			}
+		}
+		return rows;
+	}
+
+	private <T> int[] updateEach(String query, List<T> chunk, ChangeType type, ToLongFunction<T> id, Timestamp now,
+			Consumer<List<T>> written, ParameterizedPreparedStatementSetter<T> setter) {
+		return transactionTemplate.execute(status -> {
+			int[] rows = new int[chunk.size()];
+			List<T> done = new ArrayList<>(chunk.size());
+			List<Long> ids = new ArrayList<>(chunk.size());
+			for (int i = 0; i < chunk.size(); i++) {
+				T item = chunk.get(i);
+				// Set on the connection of the transaction, the JPA transaction manager has no savepoints.
+				Savepoint savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+				try {
+					rows[i] = jdbcTemplate.update(query, ps -> setter.setValues(ps, item));
+				} catch (DuplicateKeyException e) {
+					rows[i] = 0;
+				} catch (DataAccessException e) {
+					rows[i] = Statement.EXECUTE_FAILED;
+				}
+				boolean failed = rows[i] <= 0;
+				jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+					if (failed)
+						connection.rollback(savepoint);
+					connection.releaseSavepoint(savepoint);
+					return null;
+				});
+				if (rows[i] > 0) {
+					done.add(item);
+					ids.add(id.applyAsLong(item));
+				}
+			}
+			recordChanges(type, ids, now);
+			if (!done.isEmpty())
+				written.accept(done);
+			return rows;
+		});
+	}
+
+	@Override
+	public boolean hasChangeLog() {
+		return true;
+	}
+
+	@Override
+	public List<PartnerChange> selectChanges(long since, int limit) throws InternalErrorException {
+		QueryTiming timing = new QueryTiming();
+		try {
+			return jdbcTemplate.query(CHANGES_QUERY, new Object[] { since, limit }, timing.of((rs, rowNum) -> {
+				ChangeType type = ChangeType.valueOf(rs.getString("type"));
+				Partner partner = type == ChangeType.DELETE ? null : rowMapper.mapRow(rs, rowNum);
+				return new PartnerChange(rs.getLong("seq"), type, rs.getLong("id"), partner,
+						new Date(rs.getTimestamp("lastModified").getTime()));
+			}));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		} finally {
+			timing.record(registry, "selectChanges");
+		}
+	}
+
+	@Override
+	public int deleteChanges(Date before) throws InternalErrorException {
+		try {
+			return jdbcTemplate.update(DELETE_CHANGES_QUERY, new Timestamp(before.getTime()));
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Records the changes to some partners in the log of changes, as the last step of the transaction which makes
+	 * them: the row of the sequence numbers stays locked until the commit (see the description of the class). The
+	 * partners inserted and updated are copied from their rows.
+	 */
+	private void recordChanges(ChangeType type, List<Long> ids, Timestamp now) {
+		if (ids.isEmpty())
+			return;
+		long first = jdbcTemplate.queryForObject(LOCK_SEQ_QUERY, Long.class) + 1;
+		List<Long> seqs = new ArrayList<>(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			seqs.add(first + i);
+		}
+		if (type == ChangeType.DELETE) {
+			jdbcTemplate.batchUpdate(DELETE_CHANGE_QUERY, seqs, seqs.size(), (ps, seq) -> {
+				ps.setLong(1, seq);
+				ps.setLong(2, ids.get((int) (seq - first)));
+				ps.setTimestamp(3, now);
+			});
+		} else {
+			jdbcTemplate.batchUpdate(CHANGE_QUERY, seqs, seqs.size(), (ps, seq) -> {
+				ps.setLong(1, seq);
+				ps.setString(2, type.name());
+				ps.setLong(3, ids.get((int) (seq - first)));
+			});
+		}
+		jdbcTemplate.update(UPDATE_SEQ_QUERY, first + ids.size() - 1);
+	}
+
 }
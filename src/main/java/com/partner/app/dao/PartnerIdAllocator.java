@@ -0,0 +1,27 @@
+package com.partner.app.dao;
+
+import com.partner.app.exceptions.InternalErrorException;
+
+/**
+ * Interface for the allocation of the IDs of new partners.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+public interface PartnerIdAllocator {
+
+	/**
+	 * Gets a new ID for a partner, it is never returned again, even to other threads.
+	 * @return New ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	long nextId() throws InternalErrorException;
+
+	/**
+	 * Reserves an ID chosen by a client, so it is never returned by nextId.
+	 * @param id ID of a partner which is going to be inserted.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	void reserve(long id) throws InternalErrorException;
+
+}
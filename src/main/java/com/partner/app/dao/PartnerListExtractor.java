@@ -0,0 +1,59 @@
+package com.partner.app.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.partner.app.model.Partner;
+
+/**
+ * This class is used in the class PartnerDataAccessService to read a window of partners into an array-backed list
+ * sized to the page, instead of letting the list grow from the default capacity.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerListExtractor implements ResultSetExtractor<List<Partner>> {
+
+	/**
+	 * Upper bound of the capacity reserved in advance, so a huge page size does not allocate memory for rows which
+	 * do not exist.
+	 */
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	private final int expectedSize;
+
+	private final RowMapper<Partner> rowMapper;
+
+	/**
+	 * Constructor of the class PartnerListExtractor.
+	 * @param expectedSize Maximum number of rows returned by the query.
+	 */
+	public PartnerListExtractor(int expectedSize) {
+		this(expectedSize, new PartnerRowMapper());
+	}
+
+	/**
+	 * Constructor of the class PartnerListExtractor.
+	 * @param expectedSize Maximum number of rows returned by the query.
+	 * @param rowMapper Mapper of the rows.
+	 */
+	public PartnerListExtractor(int expectedSize, RowMapper<Partner> rowMapper) {
+		this.expectedSize = expectedSize;
+		this.rowMapper = rowMapper;
+	}
+
+	@Override
+	public List<Partner> extractData(ResultSet rs) throws SQLException {
+		List<Partner> list = new ArrayList<Partner>(Math.max(0, Math.min(expectedSize, MAX_INITIAL_CAPACITY)));
+		int rowNum = 0;
+		while (rs.next()) {
+			list.add(rowMapper.mapRow(rs, rowNum++));
+		}
+		return list;
+	}
+}
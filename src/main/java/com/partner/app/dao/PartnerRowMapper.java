@@ -2,6 +2,7 @@ package com.partner.app.dao;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.Locale;
 
 import org.springframework.jdbc.core.RowMapper;
@@ -18,6 +19,8 @@ public class PartnerRowMapper implements RowMapper<Partner> {
     @Override
     public Partner mapRow(ResultSet rs, int rowNum) throws SQLException {
     	Partner partner = new Partner(rs.getLong("id"), rs.getString("companyName"), rs.getString("ref"), new Locale(rs.getString("locale")), rs.getDate("expires"));
+    	partner.setVersion(rs.getLong("version"));
+    	partner.setLastModified(new Date(rs.getTimestamp("lastModified").getTime()));
  
         return partner;
     }
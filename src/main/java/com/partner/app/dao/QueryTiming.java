@@ -0,0 +1,83 @@
+package com.partner.app.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.partner.app.model.Partner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * This class is used in the class PartnerDataAccessService to map the rows of a query while measuring the time
+ * spent in the mapping apart from the rest of the query, which is the time spent in the database and the driver.
+ * A new instance is used for every query.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+class QueryTiming implements RowMapper<Partner> {
+
+	private final PartnerRowMapper rowMapper = new PartnerRowMapper();
+
+	private final long start = System.nanoTime();
+
+	private long mapping;
+
+	private long excluded;
+
+	private int rows;
+
+	@Override
+	public Partner mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return mapRow(rowMapper, rs, rowNum);
+	}
+
+	/**
+	 * Measures a mapper of other rows than the partners, such as the versions or the changes, as the mapping of
+	 * the query.
+	 * @param mapper Mapper of the rows.
+	 * @return Mapper which measures the given one.
+	 */
+	<T> RowMapper<T> of(RowMapper<T> mapper) {
+		return (rs, rowNum) -> mapRow(mapper, rs, rowNum);
+	}
+
+	private <T> T mapRow(RowMapper<T> mapper, ResultSet rs, int rowNum) throws SQLException {
+		long begin = System.nanoTime();
+		try {
+			return mapper.mapRow(rs, rowNum);
+		} finally {
+			mapping += System.nanoTime() - begin;
+			rows++;
+		}
+	}
+
+	/**
+	 * Runs an action which is not part of the query, such as the consumer of the partners of a stream.
+	 * @param action Action.
+	 */
+	void exclude(Runnable action) {
+		long begin = System.nanoTime();
+		try {
+			action.run();
+		} finally {
+			excluded += System.nanoTime() - begin;
+		}
+	}
+
+	/**
+	 * Records the time spent in the database, the time spent in the mapping and the rows returned by the query.
+	 * @param registry Registry of the metrics.
+	 * @param query Name of the query.
+	 */
+	void record(MeterRegistry registry, String query) {
+		long total = System.nanoTime() - start;
+		registry.timer("partner.dao.query.sql", "query", query).record(total - mapping - excluded,
+				TimeUnit.NANOSECONDS);
+		registry.timer("partner.dao.query.mapping", "query", query).record(mapping, TimeUnit.NANOSECONDS);
+		registry.summary("partner.dao.query.rows", "query", query).record(rows);
+	}
+}
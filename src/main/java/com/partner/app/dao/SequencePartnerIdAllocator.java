@@ -0,0 +1,106 @@
+package com.partner.app.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.partner.app.exceptions.InternalErrorException;
+
+/**
+ * Implements the interface PartnerIdAllocator with the database sequence PARTNER_ID_SEQ.
+ * Every value of the sequence reserves a block of as many IDs as the increment of the sequence, and the IDs of
+ * the block are handed out from memory, so the database is only queried once per block.
+ * <p>
+ * The IDs chosen by the clients are skipped: the block of this node does not hand them out, and the sequence is
+ * restarted after an ID which it has not reached yet. An ID in a block reserved by another node before the insert
+ * can still be handed out by that node.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component
+public class SequencePartnerIdAllocator implements PartnerIdAllocator {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final long blockSize;
+
+	private volatile Block block = new Block(0, 0);
+
+	/**
+	 * The sequence has not returned the values from here on, as far as this node knows.
+	 */
+	private volatile long unreserved;
+
+	/**
+	 * Constructor of the class SequencePartnerIdAllocator.
+	 * @param jdbcTemplate Template used to query the sequence.
+	 */
+	@Autowired
+	public SequencePartnerIdAllocator(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.blockSize = jdbcTemplate.queryForObject(
+				"SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PARTNER_ID_SEQ'", Long.class);
+	}
+
+	@Override
+	public long nextId() throws InternalErrorException {
+		for (;;) {
+			Block current = block;
+			long id = current.next.getAndIncrement();
+			if (id < current.end)
+				return id;
+			synchronized (this) {
+				if (block == current)
+					block = reserveBlock();
+			}
+		}
+	}
+
+	@Override
+	public void reserve(long id) throws InternalErrorException {
+		Block current = block;
+		current.next.updateAndGet(next -> id >= next && id < current.end ? id + 1 : next);
+		if (id < unreserved)
+			return;
+		synchronized (this) {
+			try {
+				long next = jdbcTemplate.queryForObject("SELECT CURRENT_VALUE + INCREMENT FROM "
+						+ "INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PARTNER_ID_SEQ'", Long.class);
+				if (id >= next) {
+					jdbcTemplate.update("ALTER SEQUENCE PARTNER_ID_SEQ RESTART WITH " + (id + 1));
+					next = id + 1;
+				}
+				unreserved = Math.max(unreserved, next);
+			} catch (DataAccessException e) {
+				throw new InternalErrorException(e.getMessage());
+			}
+		}
+	}
+
+	private Block reserveBlock() throws InternalErrorException {
+		try {
+			long start = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR PARTNER_ID_SEQ", Long.class);
+			unreserved = Math.max(unreserved, start + blockSize);
+			return new Block(start, start + blockSize);
+		} catch (DataAccessException e) {
+			throw new InternalErrorException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Range of IDs reserved in the database, from start (inclusive) to end (exclusive).
+	 */
+	private static final class Block {
+		private final AtomicLong next;
+		private final long end;
+
+		private Block(long start, long end) {
+			this.next = new AtomicLong(start);
+			this.end = end;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.partner.app.dao.wal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+
+import com.partner.app.model.Partner;
+
+/**
+ * Compact binary form of a partner, shared by the write-ahead log and the snapshots. A partner always has the same
+ * fields in the same order, so a reader knows where it ends.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+final class PartnerCodec {
+
+	/**
+	 * Version of the format, written in the header of the snapshots and in every record of the write-ahead log. The
+	 * files of any other version are refused.
+	 */
+	static final int FORMAT = 4;
+
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private PartnerCodec() {
+	}
+
+	static void write(DataOutput out, Partner partner) throws IOException {
+		out.writeLong(partner.getId());
+		writeString(out, partner.getCompanyName());
+		writeString(out, partner.getRef());
+		Locale locale = partner.getLocale();
+		out.writeBoolean(locale != null);
+		if (locale != null) {
+			out.writeUTF(locale.getLanguage());
+			out.writeUTF(locale.getCountry());
+			out.writeUTF(locale.getVariant());
+		}
+		out.writeLong(partner.getExpires() == null ? NO_DATE : partner.getExpires().getTime());
+		out.writeLong(partner.getVersion());
+		out.writeLong(partner.getLastModified() == null ? NO_DATE : partner.getLastModified().getTime());
+	}
+
+	static Partner read(DataInput in) throws IOException {
+		long id = in.readLong();
+		String companyName = readString(in);
+		String ref = readString(in);
+		Locale locale = in.readBoolean() ? new Locale(in.readUTF(), in.readUTF(), in.readUTF()) : null;
+		long expires = in.readLong();
+		long version = in.readLong();
+		long lastModified = in.readLong();
+		Partner partner = new Partner(id, companyName, ref, locale, expires == NO_DATE ? null : new Date(expires));
+		partner.setVersion(version);
+		partner.setLastModified(lastModified == NO_DATE ? null : new Date(lastModified));
+		return partner;
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,145 @@
+package com.partner.app.dao.wal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.partner.app.model.Partner;
+
+/**
+ * Snapshots of all the partners in a compact binary file, named after the position of the last change of the
+ * write-ahead log they hold. A snapshot is written to a temporary file and renamed when it is complete, so the
+ * latest snapshot in the directory is always whole.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerSnapshots {
+
+	private static final int MAGIC = 0x50534e50;
+
+	private static final String PREFIX = "snapshot-";
+
+	private static final String SUFFIX = ".snap";
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final Path directory;
+
+	/**
+	 * Constructor of the class PartnerSnapshots.
+	 * @param directory Directory of the snapshot files.
+	 */
+	public PartnerSnapshots(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Reads the latest snapshot.
+	 * @param consumer Consumer of the partners.
+	 * @return Position of the last change held by the snapshot, -1 if there is no snapshot.
+	 * @throws IOException Error reading the file, or the snapshot is corrupted.
+	 */
+	public long load(Consumer<Partner> consumer) throws IOException {
+		Files.createDirectories(directory);
+		List<Path> snapshots = snapshots();
+		if (snapshots.isEmpty())
+			return -1;
+		Path path = snapshots.get(snapshots.size() - 1);
+		CRC32C crc = new CRC32C();
+		try (DataInputStream in = new DataInputStream(
+				new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE), crc))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Unknown snapshot format in " + path);
+			if (in.readInt() != PartnerCodec.FORMAT)
+				throw new IOException("Unknown snapshot format in " + path);
+			long position = in.readLong();
+			long count = 0;
+			while (in.readBoolean()) {
+				consumer.accept(PartnerCodec.read(in));
+				count++;
+			}
+			boolean complete = in.readLong() == count;
+			long checksum = crc.getValue();
+			if (!complete || in.readLong() != checksum)
+				throw new IOException("Corrupted snapshot " + path);
+			return position;
+		}
+	}
+
+	/**
+	 * Writes a snapshot and deletes the older ones.
+	 * @param position Position of the last change held by the partners.
+	 * @param partners Partners, in any order.
+	 * @throws IOException Error writing the file.
+	 */
+	public void write(long position, Iterable<Partner> partners) throws IOException {
+		Files.createDirectories(directory);
+		Path temporary = directory.resolve(name(position) + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, BUFFER_SIZE),
+					new CRC32C());
+			DataOutputStream out = new DataOutputStream(checked);
+			out.writeInt(MAGIC);
+			out.writeInt(PartnerCodec.FORMAT);
+			out.writeLong(position);
+			long count = 0;
+			for (Partner partner : partners) {
+				out.writeBoolean(true);
+				PartnerCodec.write(out, partner);
+				count++;
+			}
+			out.writeBoolean(false);
+			out.writeLong(count);
+			out.writeLong(checked.getChecksum().getValue());
+			out.flush();
+			file.getChannel().force(true);
+		}
+		Path path = directory.resolve(name(position));
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		syncDirectory();
+		for (Path older : snapshots()) {
+			if (!older.equals(path))
+				Files.delete(older);
+		}
+	}
+
+	private List<Path> snapshots() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+			}).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Makes the rename durable. Not every platform can open a directory, there the rename is left to the system.
+	 */
+	private void syncDirectory() {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// Ignored, see above.
+		}
+	}
+
+	private static String name(long position) {
+		return String.format("%s%020d%s", PREFIX, position, SUFFIX);
+	}
+}
@@ -0,0 +1,328 @@
+package com.partner.app.dao.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import com.partner.app.dao.ChangeType;
+import com.partner.app.model.Partner;
+
+/**
+ * Append-only log of the changes to the partners, written to memory-mapped segment files before the changes are
+ * applied. Every record gets the next position and is protected by a checksum. A segment is named after the
+ * position of its first record and a new one is started when it is full or when a snapshot is taken, so the
+ * segments covered by a snapshot can be deleted.
+ * <p>
+ * Appending only copies the record to the mapped file. The writers wait for their records to reach the disk with
+ * sync, and a single force of the file makes durable all the records appended until then, so concurrent writers
+ * and batches share it (group commit).
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class WriteAheadLog implements Closeable {
+
+	private static final String SUFFIX = ".wal";
+
+	/**
+	 * Length of the body and its checksum.
+	 */
+	private static final int HEADER = 8;
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final boolean fsync;
+
+	private final AtomicLong durable = new AtomicLong(-1);
+
+	private final Object syncLock = new Object();
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+	private final DataOutputStream out = new DataOutputStream(bytes);
+
+	private final CRC32C crc = new CRC32C();
+
+	private Segment current;
+
+	private long lastPosition;
+
+	/**
+	 * Constructor of the class WriteAheadLog.
+	 * @param directory Directory of the segment files.
+	 * @param segmentSize Size of a new segment file in bytes.
+	 * @param fsync If false, sync does not wait for the disk and the records reach it when the system writes
+	 *        them back.
+	 */
+	public WriteAheadLog(Path directory, int segmentSize, boolean fsync) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.fsync = fsync;
+	}
+
+	/**
+	 * Replays the records after a position, in order, and opens the log for appending after the last one. A torn
+	 * record at the end of the last segment, left by a crash, is discarded.
+	 * @param after Position of the last change already applied, -1 to replay the whole log.
+	 * @param consumer Consumer of the changes.
+	 * @return Position of the last record.
+	 * @throws IOException Error reading the segments, or a segment other than the last one is corrupted.
+	 */
+	public synchronized long open(long after, BiConsumer<ChangeType, Partner> consumer) throws IOException {
+		Files.createDirectories(directory);
+		List<Path> paths = segments();
+		long last = after;
+		for (int i = 0; i < paths.size(); i++) {
+			boolean tail = i == paths.size() - 1;
+			Segment segment = Segment.open(paths.get(i), tail ? segmentSize : 0);
+			Replay replay = segment.replay(after, last, consumer, crc);
+			last = replay.last;
+			if (tail) {
+				current = segment;
+				current.offset = replay.end;
+				if (!replay.clean)
+					current.clear();
+			} else {
+				segment.close(false);
+				if (!replay.clean)
+					throw new IOException("Corrupted write-ahead log segment " + paths.get(i));
+			}
+		}
+		if (current == null)
+			current = Segment.open(directory.resolve(name(last + 1)), segmentSize);
+		lastPosition = last;
+		durable.set(last);
+		return last;
+	}
+
+	/**
+	 * Appends a change to the log.
+	 * @param type Type of the change.
+	 * @param partner Partner inserted or updated, or the partner removed.
+	 * @return Position of the record.
+	 * @throws IOException Error writing the record.
+	 */
+	public synchronized long append(ChangeType type, Partner partner) throws IOException {
+		bytes.reset();
+		out.writeLong(lastPosition + 1);
+		out.writeByte(type.ordinal());
+		out.writeByte(PartnerCodec.FORMAT);
+		PartnerCodec.write(out, partner);
+		byte[] body = bytes.toByteArray();
+		if (HEADER + body.length > segmentSize)
+			throw new IOException("Record larger than a write-ahead log segment");
+		if (current.offset + HEADER + body.length > current.buffer.capacity())
+			roll();
+		crc.reset();
+		crc.update(body);
+		MappedByteBuffer buffer = current.buffer;
+		int offset = current.offset;
+		buffer.putInt(offset + 4, (int) crc.getValue());
+		buffer.position(offset + HEADER);
+		buffer.put(body);
+		// The length goes last, a reader never takes a record for complete before its body is there.
+		buffer.putInt(offset, body.length);
+		current.offset = offset + HEADER + body.length;
+		return ++lastPosition;
+	}
+
+	/**
+	 * Waits for the records up to a position to be on disk. Only one thread forces the file at a time, the
+	 * threads waiting for it usually find their records forced when they get their turn.
+	 * @param position Position of the last record which has to be durable.
+	 * @throws IOException Error forcing the file.
+	 */
+	public void sync(long position) throws IOException {
+		if (!fsync || position <= durable.get())
+			return;
+		synchronized (syncLock) {
+			if (position <= durable.get())
+				return;
+			Segment segment;
+			long last;
+			synchronized (this) {
+				segment = current;
+				last = lastPosition;
+			}
+			segment.buffer.force();
+			durable.accumulateAndGet(last, Math::max);
+		}
+	}
+
+	/**
+	 * Starts a new segment, the following records go to it.
+	 * @return Position of the last record in the previous segments.
+	 * @throws IOException Error creating the segment.
+	 */
+	public synchronized long roll() throws IOException {
+		if (current.offset == 0)
+			return lastPosition;
+		current.close(fsync);
+		if (fsync)
+			durable.accumulateAndGet(lastPosition, Math::max);
+		current = Segment.open(directory.resolve(name(lastPosition + 1)), segmentSize);
+		return lastPosition;
+	}
+
+	/**
+	 * Deletes the segments which only have records up to a position returned by roll, once a snapshot holds them.
+	 * @param position Position returned by roll.
+	 * @throws IOException Error deleting the files.
+	 */
+	public synchronized void deleteSegmentsUpTo(long position) throws IOException {
+		for (Path path : segments()) {
+			if (first(path) <= position && !path.equals(current.path))
+				Files.delete(path);
+		}
+	}
+
+	/**
+	 * Gets the number of segment files.
+	 * @return Number of segments.
+	 * @throws IOException Error listing the directory.
+	 */
+	public int segmentCount() throws IOException {
+		return segments().size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (current != null)
+			current.close(fsync);
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static String name(long first) {
+		return String.format("%020d%s", first, SUFFIX);
+	}
+
+	private static long first(Path path) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Result of replaying a segment.
+	 */
+	private static final class Replay {
+		private final long last;
+		private final int end;
+		private final boolean clean;
+
+		private Replay(long last, int end, boolean clean) {
+			this.last = last;
+			this.end = end;
+			this.clean = clean;
+		}
+	}
+
+	/**
+	 * Segment file mapped in memory.
+	 */
+	private static final class Segment {
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private int offset;
+
+		private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+			this.path = path;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Maps a segment file, creating it or growing it to a minimum size.
+		 */
+		private static Segment open(Path path, int minSize) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			try {
+				long size = Math.max(channel.size(), minSize);
+				return new Segment(path, channel, channel.map(MapMode.READ_WRITE, 0, size));
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Reads the records in order. It stops cleanly at an empty length, and uncleanly at a torn record or at a
+		 * record out of sequence, which can be left after a torn record. A gap in the positions is an error.
+		 */
+		private Replay replay(long after, long last, BiConsumer<ChangeType, Partner> consumer, CRC32C crc)
+				throws IOException {
+			int end = 0;
+			for (;;) {
+				if (end + HEADER > buffer.capacity())
+					return new Replay(last, end, true);
+				int length = buffer.getInt(end);
+				if (length == 0)
+					return new Replay(last, end, true);
+				if (length < 0 || end + HEADER + length > buffer.capacity())
+					return new Replay(last, end, false);
+				byte[] body = new byte[length];
+				buffer.position(end + HEADER);
+				buffer.get(body);
+				crc.reset();
+				crc.update(body);
+				if ((int) crc.getValue() != buffer.getInt(end + 4))
+					return new Replay(last, end, false);
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+				long position = in.readLong();
+				if (position > after) {
+					if (position > last + 1)
+						throw new IOException("Missing write-ahead log records before position " + position);
+					if (position <= last)
+						return new Replay(last, end, false);
+					int type = in.readByte();
+					if (type < 0 || type >= ChangeType.values().length)
+						return new Replay(last, end, false);
+					if (in.readByte() != PartnerCodec.FORMAT)
+						throw new IOException("Unknown format of the write-ahead log record at position " + position);
+					consumer.accept(ChangeType.values()[type], PartnerCodec.read(in));
+					last = position;
+				}
+				end += HEADER + length;
+			}
+		}
+
+		/**
+		 * Zeroes the rest of the segment after a torn record, so nothing left there is read back as a record.
+		 */
+		private void clear() {
+			for (int i = offset; i < buffer.capacity(); i++) {
+				buffer.put(i, (byte) 0);
+			}
+		}
+
+		private void close(boolean force) throws IOException {
+			if (force)
+				buffer.force();
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.partner.app.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Fills the connection pool at startup, when partner.datasource.prewarm is true, so the first requests do not wait
+ * for connections to be opened. The connections are borrowed all at once and given back, which makes Hikari open
+ * minimum-idle of them before the web server starts. Hikari would otherwise open them in the background.
+ * <p>
+ * It is also the health indicator connectionPool, which is down if the pool could not be filled and shows the
+ * active, idle, total and pending connections. The same numbers are published by Spring Boot as the metrics
+ * hikaricp.connections.*, with the time to acquire a connection in hikaricp.connections.acquire.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Component("connectionPool")
+public class ConnectionPoolWarmer implements HealthIndicator {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionPoolWarmer.class);
+
+	private final HikariDataSource dataSource;
+
+	private final boolean prewarm;
+
+	private volatile String failure;
+
+	/**
+	 * Constructor of the class ConnectionPoolWarmer.
+	 * @param dataSource Data source, only a Hikari pool is warmed.
+	 * @param prewarm If false, the pool is filled by Hikari in the background.
+	 */
+	@Autowired
+	public ConnectionPoolWarmer(DataSource dataSource, @Value("${partner.datasource.prewarm:true}") boolean prewarm) {
+		this.dataSource = dataSource instanceof HikariDataSource ? (HikariDataSource) dataSource : null;
+		this.prewarm = prewarm;
+	}
+
+	/**
+	 * Borrows minimum-idle connections at the same time and gives them back to the pool.
+	 */
+	@PostConstruct
+	public void warm() {
+		if (!prewarm || dataSource == null)
+			return;
+		long started = System.nanoTime();
+		int size = Math.min(dataSource.getMinimumIdle(), dataSource.getMaximumPoolSize());
+		List<Connection> connections = new ArrayList<>(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				connections.add(dataSource.getConnection());
+			}
+			log.info("Opened {} connections of {} in {} ms", size, dataSource.getPoolName(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		} catch (SQLException e) {
+			failure = e.getMessage();
+			log.warn("Could not fill the connection pool", e);
+		} finally {
+			for (Connection connection : connections) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					// Evicted by the pool.
+				}
+			}
+		}
+	}
+
+	@Override
+	public Health health() {
+		if (dataSource == null)
+			return Health.unknown().build();
+		Health.Builder health = failure == null ? Health.up() : Health.down().withDetail("error", failure);
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		if (pool != null) {
+			health.withDetail("active", pool.getActiveConnections()).withDetail("idle", pool.getIdleConnections())
+					.withDetail("total", pool.getTotalConnections())
+					.withDetail("pending", pool.getThreadsAwaitingConnection());
+		}
+		return health.withDetail("maximum", dataSource.getMaximumPoolSize()).build();
+	}
+}
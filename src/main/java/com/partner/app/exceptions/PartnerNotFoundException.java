@@ -2,6 +2,7 @@ package com.partner.app.exceptions;
 
 /**
  * Extends Exception, represents the HTTP error 404 for Not Found.
+ * It is part of the normal flow of the lookups, so it does not fill in its stack trace.
  * @author Alejandro Torreblanca
  *
  */
@@ -10,5 +11,6 @@ public class PartnerNotFoundException extends Exception {
 	private static final long serialVersionUID = -5426894855299567056L;
 	
 	public PartnerNotFoundException() {
+		super(null, null, false, false);
 	}
 }
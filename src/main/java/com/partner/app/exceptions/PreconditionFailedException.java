@@ -0,0 +1,16 @@
+package com.partner.app.exceptions;
+
+/**
+ * Extends Exception, represents the HTTP error 412 for Precondition Failed: the partner has been changed since
+ * the version the client expected.
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PreconditionFailedException extends Exception {
+
+	private static final long serialVersionUID = 3260837271805457381L;
+
+	public PreconditionFailedException() {
+		super(null, null, false, false);
+	}
+}
@@ -0,0 +1,16 @@
+package com.partner.app.exceptions;
+
+/**
+ * Extends Exception, represents the HTTP error 503 for Service Unavailable: the feature asked for is disabled in
+ * this instance.
+ * @author Alejandro Torreblanca
+ *
+ */
+public class ServiceUnavailableException extends Exception {
+
+	private static final long serialVersionUID = -4170923518233470921L;
+
+	public ServiceUnavailableException() {
+		super(null, null, false, false);
+	}
+}
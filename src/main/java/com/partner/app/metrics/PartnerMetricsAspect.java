@@ -0,0 +1,71 @@
+package com.partner.app.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every endpoint of PartnerController, every method of PartnerService and every method of the PartnerDao in
+ * use, in the timers partner.controller, partner.service and partner.dao tagged with the class, the method and the
+ * exception thrown, if any. The exceptions are also counted by type in partner.exceptions, tagged with the layer.
+ * <p>
+ * The time of the queries of PartnerDataAccessService is further split into the database and the mapping of the
+ * rows, see the metrics partner.dao.query.*.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Aspect
+@Component
+public class PartnerMetricsAspect {
+
+	private static final String NONE = "none";
+
+	private final MeterRegistry registry;
+
+	/**
+	 * Constructor of the class PartnerMetricsAspect.
+	 * @param registry Registry of the metrics.
+	 */
+	@Autowired
+	public PartnerMetricsAspect(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Around("execution(public * com.partner.app.controller.PartnerController.*(..))")
+	public Object timeController(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("controller", joinPoint);
+	}
+
+	@Around("execution(public * com.partner.app.service.PartnerService.*(..))")
+	public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("service", joinPoint);
+	}
+
+	@Around("execution(public * com.partner.app.dao.PartnerDao.*(..))")
+	public Object timeDao(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("dao", joinPoint);
+	}
+
+	private Object time(String layer, ProceedingJoinPoint joinPoint) throws Throwable {
+		Timer.Sample sample = Timer.start(registry);
+		String exception = NONE;
+		try {
+			return joinPoint.proceed();
+		} catch (Throwable e) {
+			exception = e.getClass().getSimpleName();
+			registry.counter("partner.exceptions", "layer", layer, "exception", exception).increment();
+			throw e;
+		} finally {
+			sample.stop(registry.timer("partner." + layer,
+					"class", joinPoint.getTarget().getClass().getSimpleName(),
+					"method", joinPoint.getSignature().getName(),
+					"exception", exception));
+		}
+	}
+}
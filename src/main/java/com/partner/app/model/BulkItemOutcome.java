@@ -0,0 +1,67 @@
+package com.partner.app.model;
+
+/**
+ * This class represents the outcome of one item of a bulk operation in the service, which the controllers send as a
+ * BulkItemResult with the HTTP status of the outcome.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class BulkItemOutcome {
+
+	/**
+	 * Outcomes of an item.
+	 */
+	public enum Outcome {
+		/** The partner has been added, updated or removed. */
+		DONE,
+		/** The partner is not valid. */
+		INVALID,
+		/** A partner with the same ID already exists. */
+		EXISTS,
+		/** There is no partner with the ID. */
+		NOT_FOUND,
+		/** Error with the database. */
+		FAILED
+	}
+
+	private final long id;
+	private final Outcome outcome;
+	private final String error;
+
+	/**
+	 * Constructor of the class BulkItemOutcome.
+	 * @param id ID of the partner.
+	 * @param outcome Outcome of the operation on this item.
+	 * @param error Description of the error, null if the operation is correct.
+	 */
+	public BulkItemOutcome(long id, Outcome outcome, String error) {
+		this.id = id;
+		this.outcome = outcome;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the id of the partner.
+	 * @return partner's id.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the outcome of the operation on this item.
+	 * @return outcome.
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Gets the description of the error.
+	 * @return error, null if the operation is correct.
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,57 @@
+package com.partner.app.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class represents the outcome of one item of a bulk operation.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+@JsonInclude(Include.NON_NULL)
+public class BulkItemResult {
+	private final long id;
+	private final int status;
+	private final String error;
+
+	/**
+	 * Constructor of the class BulkItemResult.
+	 * @param id ID of the partner.
+	 * @param status HTTP status code of the operation on this item.
+	 * @param error Description of the error, null if the operation is correct.
+	 */
+	public BulkItemResult(@JsonProperty("id") long id, @JsonProperty("status") int status,
+			@JsonProperty("error") String error) {
+		super();
+		this.id = id;
+		this.status = status;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the id of the partner.
+	 * @return partner's id.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the HTTP status code of the operation on this item.
+	 * @return status code.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the description of the error.
+	 * @return error, null if the operation is correct.
+	 */
+	public String getError() {
+		return error;
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.partner.app.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class represents the outcome of an import of partners.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+public class ImportReport {
+	private final long received;
+	private final long imported;
+	private final long failed;
+	private final List<Long> failedLines;
+	private final boolean aborted;
+	private final long abortLine;
+	private final long elapsedMillis;
+
+	/**
+	 * Constructor of the class ImportReport.
+	 * @param received Number of partners read from the body.
+	 * @param imported Number of partners added to the database.
+	 * @param failed Number of partners which could not be read, were not valid or could not be added.
+	 * @param failedLines Line numbers of the failed partners, up to a maximum.
+	 * @param aborted Whether the body broke off before its end.
+	 * @param abortLine Line number where the body broke off, -1 if it is not known or the import was not aborted.
+	 * @param elapsedMillis Duration of the import in milliseconds.
+	 */
+	public ImportReport(@JsonProperty("received") long received, @JsonProperty("imported") long imported,
+			@JsonProperty("failed") long failed, @JsonProperty("failedLines") List<Long> failedLines,
+			@JsonProperty("aborted") boolean aborted, @JsonProperty("abortLine") long abortLine,
+			@JsonProperty("elapsedMillis") long elapsedMillis) {
+		super();
+		this.received = received;
+		this.imported = imported;
+		this.failed = failed;
+		this.failedLines = failedLines;
+		this.aborted = aborted;
+		this.abortLine = abortLine;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Gets the number of partners read from the body.
+	 * @return number of partners.
+	 */
+	public long getReceived() {
+		return received;
+	}
+
+	/**
+	 * Gets the number of partners added to the database.
+	 * @return number of partners.
+	 */
+	public long getImported() {
+		return imported;
+	}
+
+	/**
+	 * Gets the number of partners which failed.
+	 * @return number of partners.
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Gets the line numbers of the failed partners, up to a maximum.
+	 * @return line numbers.
+	 */
+	public List<Long> getFailedLines() {
+		return failedLines;
+	}
+
+	/**
+	 * Tells if the body broke off before its end, the partners after that line were not imported.
+	 * @return true if the import was aborted.
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Gets the line number where the body broke off.
+	 * @return line number, -1 if it is not known or the import was not aborted.
+	 */
+	public long getAbortLine() {
+		return abortLine;
+	}
+
+	/**
+	 * Gets the duration of the import.
+	 * @return duration in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Gets the throughput of the import.
+	 * @return partners added per second.
+	 */
+	public double getPartnersPerSecond() {
+		return imported * 1000.0 / Math.max(elapsedMillis, 1);
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.Locale;
 
 import javax.validation.constraints.NotBlank;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -21,6 +22,10 @@ public class Partner {
 	private String ref;
 	private Locale locale;
 	private Date expires;
+	@JsonIgnore
+	private long version;
+	@JsonIgnore
+	private Date lastModified;
 	
 	/**
 	 * Constructor of the class Partner.
@@ -101,4 +106,45 @@ public class Partner {
 		return expires;
 	}
 
+	/**
+	 * Tells if the partner has expired at a given time.
+	 * @param now Time.
+	 * @return true if the partner has an expires time which is not after the given one.
+	 */
+	public boolean isExpiredAt(Date now) {
+		return expires != null && !expires.after(now);
+	}
+
+	/**
+	 * Gets the version of the partner, incremented by every update. It is sent in the ETag header, not in the JSON.
+	 * @return partner's version, 0 if it has not been stored yet.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of the partner. Before an update, it is the version the update expects, 0 for any.
+	 * @param version New version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Gets the time of the last change of the partner. It is sent in the Last-Modified header, not in the JSON.
+	 * @return partner's last change, null if it has not been stored yet.
+	 */
+	public Date getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Sets the time of the last change of the partner.
+	 * @param lastModified New time of the last change
+	 */
+	public void setLastModified(Date lastModified) {
+		this.lastModified = lastModified;
+	}
+
 }
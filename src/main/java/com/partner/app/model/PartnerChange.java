@@ -0,0 +1,58 @@
+package com.partner.app.model;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.partner.app.dao.ChangeType;
+
+/**
+ * This class represents a change to a partner in the log of changes, with its sequence number in the log.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerChange {
+	private final long seq;
+	private final ChangeType type;
+	private final long id;
+	private final Partner partner;
+	private final Date time;
+
+	/**
+	 * Constructor of the class PartnerChange.
+	 * @param seq Sequence number, the changes are numbered in the order they have been committed.
+	 * @param type Type of the change.
+	 * @param id ID of the partner.
+	 * @param partner Partner after the change, null for a deletion.
+	 * @param time Time of the change.
+	 */
+	public PartnerChange(@JsonProperty("seq") long seq, @JsonProperty("type") ChangeType type,
+			@JsonProperty("id") long id, @JsonProperty("partner") Partner partner, @JsonProperty("time") Date time) {
+		super();
+		this.seq = seq;
+		this.type = type;
+		this.id = id;
+		this.partner = partner;
+		this.time = time;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Partner getPartner() {
+		return partner;
+	}
+
+	public Date getTime() {
+		return time;
+	}
+}
@@ -0,0 +1,44 @@
+package com.partner.app.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * This class represents the changes returned by a read of the log of changes, with the sequence number to read
+ * the next ones from.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerChanges {
+	private final List<PartnerChange> changes;
+	private final long next;
+
+	/**
+	 * Constructor of the class PartnerChanges.
+	 * @param changes Changes, in the order of their sequence numbers.
+	 * @param next Sequence number of the last change, to be sent as since in the next read.
+	 */
+	public PartnerChanges(@JsonProperty("changes") List<PartnerChange> changes, @JsonProperty("next") long next) {
+		super();
+		this.changes = changes;
+		this.next = next;
+	}
+
+	/**
+	 * Gets the changes.
+	 * @return List of changes, empty if there are none.
+	 */
+	public List<PartnerChange> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Gets the sequence number to read the next changes from.
+	 * @return Sequence number of the last change, or the one the read started from if there are none.
+	 */
+	public long getNext() {
+		return next;
+	}
+}
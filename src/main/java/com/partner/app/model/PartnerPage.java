@@ -0,0 +1,74 @@
+package com.partner.app.model;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.partner.app.exceptions.BadRequestError;
+
+/**
+ * This class represents a page of partners returned by the cursor-based listing, with the opaque cursor which
+ * has to be sent to get the next page.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerPage {
+	private final List<Partner> partners;
+	private final String next;
+
+	/**
+	 * Constructor of the class PartnerPage.
+	 * @param partners Partners of the page.
+	 * @param next Cursor of the next page, null if this is the last page.
+	 */
+	public PartnerPage(@JsonProperty("partners") List<Partner> partners, @JsonProperty("next") String next) {
+		super();
+		this.partners = partners;
+		this.next = next;
+	}
+
+	/**
+	 * Gets the partners of the page.
+	 * @return List of partners.
+	 */
+	public List<Partner> getPartners() {
+		return partners;
+	}
+
+	/**
+	 * Gets the cursor of the next page.
+	 * @return Cursor of the next page, null if this is the last page.
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	/**
+	 * Builds the opaque cursor which points after the partner with the specified ID.
+	 * @param id ID of the last partner of a page.
+	 * @return Cursor.
+	 */
+	public static String encodeCursor(long id) {
+		byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	/**
+	 * Gets the ID of the partner which a cursor points after.
+	 * @param cursor Cursor returned in a previous page.
+	 * @return ID of the last partner of the previous page.
+	 * @throws BadRequestError The cursor is not valid.
+	 */
+	public static long decodeCursor(String cursor) throws BadRequestError {
+		try {
+			byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+			if (bytes.length != Long.BYTES)
+				throw new BadRequestError("Invalid cursor.");
+			return ByteBuffer.wrap(bytes).getLong();
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestError("Invalid cursor.");
+		}
+	}
+}
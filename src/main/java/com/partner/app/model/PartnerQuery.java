@@ -0,0 +1,196 @@
+package com.partner.app.model;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * This class represents a search of partners: the filters, which are all optional, the order and the window of
+ * the results.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerQuery {
+
+	/**
+	 * Orders of the results, the partners with the same value are ordered by ID.
+	 */
+	public enum Sort {
+		ID("id", Comparator.comparingLong(Partner::getId)),
+		NAME("companyName", Comparator.comparing(Partner::getCompanyName,
+				Comparator.nullsFirst(Comparator.naturalOrder()))),
+		EXPIRES("expires", Comparator.comparing(Partner::getExpires,
+				Comparator.nullsFirst(Comparator.naturalOrder())));
+
+		private final String column;
+		private final Comparator<Partner> comparator;
+
+		Sort(String column, Comparator<Partner> comparator) {
+			this.column = column;
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Gets the column of the table PARTNER.
+		 * @return Column.
+		 */
+		public String getColumn() {
+			return column;
+		}
+	}
+
+	private final String namePrefix;
+	private final String ref;
+	private final Locale locale;
+	private final Date expiresAfter;
+	private final Date expiresBefore;
+	private final Sort sort;
+	private final boolean descending;
+	private final int from;
+	private final int size;
+	private final Date unexpiredAt;
+
+	/**
+	 * Constructor of the class PartnerQuery.
+	 * @param namePrefix Beginning of the company name, case sensitive, or null.
+	 * @param ref Reference, or null.
+	 * @param locale Locale, or null.
+	 * @param expiresAfter The partners expire after this date, or null.
+	 * @param expiresBefore The partners expire before this date, or null.
+	 * @param sort Order of the results.
+	 * @param descending If true, the order is reversed.
+	 * @param from Offset in the results to paginate to.
+	 * @param size Window pagination size.
+	 */
+	public PartnerQuery(String namePrefix, String ref, Locale locale, Date expiresAfter, Date expiresBefore,
+			Sort sort, boolean descending, int from, int size) {
+		super();
+		this.namePrefix = namePrefix;
+		this.ref = ref;
+		this.locale = locale;
+		this.expiresAfter = expiresAfter;
+		this.expiresBefore = expiresBefore;
+		this.sort = sort;
+		this.descending = descending;
+		this.from = from;
+		this.size = size;
+		this.unexpiredAt = null;
+	}
+
+	private PartnerQuery(PartnerQuery query, Date unexpiredAt) {
+		this.namePrefix = query.namePrefix;
+		this.ref = query.ref;
+		this.locale = query.locale;
+		this.expiresAfter = query.expiresAfter;
+		this.expiresBefore = query.expiresBefore;
+		this.sort = query.sort;
+		this.descending = query.descending;
+		this.from = query.from;
+		this.size = query.size;
+		this.unexpiredAt = unexpiredAt;
+	}
+
+	/**
+	 * Gets the same search, only for the partners which have not expired at a time.
+	 * @param unexpiredAt Time, or null for all the partners.
+	 * @return Search.
+	 */
+	public PartnerQuery unexpiredAt(Date unexpiredAt) {
+		return new PartnerQuery(this, unexpiredAt);
+	}
+
+	/**
+	 * Tells if a partner passes the filters, as the database query does.
+	 * @param partner Partner.
+	 * @return true if the partner is a result.
+	 */
+	public boolean matches(Partner partner) {
+		if (namePrefix != null
+				&& (partner.getCompanyName() == null || !partner.getCompanyName().startsWith(namePrefix)))
+			return false;
+		if (ref != null && !ref.equals(partner.getRef()))
+			return false;
+		if (locale != null && (partner.getLocale() == null || !localeValue(partner.getLocale())
+				.equalsIgnoreCase(localeValue(locale))))
+			return false;
+		if (expiresAfter != null && (partner.getExpires() == null || !partner.getExpires().after(expiresAfter)))
+			return false;
+		if (unexpiredAt != null && partner.isExpiredAt(unexpiredAt))
+			return false;
+		return expiresBefore == null || (partner.getExpires() != null && partner.getExpires().before(expiresBefore));
+	}
+
+	/**
+	 * Gets the order of the results, as the database query does.
+	 * @return Comparator of the partners.
+	 */
+	public Comparator<Partner> comparator() {
+		Comparator<Partner> comparator = descending ? sort.comparator.reversed() : sort.comparator;
+		return comparator.thenComparingLong(Partner::getId);
+	}
+
+	/**
+	 * Tells if only the beginning of the name is filtered and the results are in the order of the names, which
+	 * is how the names are looked up while they are typed.
+	 * @return true for a lookup of names.
+	 */
+	public boolean isNameLookup() {
+		return namePrefix != null && ref == null && locale == null && expiresAfter == null && expiresBefore == null
+				&& sort == Sort.NAME && !descending;
+	}
+
+	/**
+	 * Gets the values a locale is stored with: the language tag, written by the API, and the name with an
+	 * underscore, written by the first migrations.
+	 * @param locale Locale.
+	 * @return Language tag and name of the locale.
+	 */
+	public static String[] storedLocaleValues(Locale locale) {
+		return new String[] { locale.toLanguageTag(), locale.toString() };
+	}
+
+	private static String localeValue(Locale locale) {
+		return locale.toString().replace('-', '_');
+	}
+
+	public String getNamePrefix() {
+		return namePrefix;
+	}
+
+	public String getRef() {
+		return ref;
+	}
+
+	public Locale getLocale() {
+		return locale;
+	}
+
+	public Date getExpiresAfter() {
+		return expiresAfter;
+	}
+
+	public Date getExpiresBefore() {
+		return expiresBefore;
+	}
+
+	public Sort getSort() {
+		return sort;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	public int getFrom() {
+		return from;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public Date getUnexpiredAt() {
+		return unexpiredAt;
+	}
+}
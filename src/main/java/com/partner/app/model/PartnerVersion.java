@@ -0,0 +1,107 @@
+package com.partner.app.model;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class represents the version and the time of the last change of a partner, which are enough to answer a
+ * conditional request without reading the whole partner.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public class PartnerVersion {
+	private final long version;
+	private final Date lastModified;
+
+	/**
+	 * Constructor of the class PartnerVersion.
+	 * @param version Version of the partner.
+	 * @param lastModified Time of the last change of the partner.
+	 */
+	public PartnerVersion(long version, Date lastModified) {
+		super();
+		this.version = version;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Gets the version and the time of the last change of a partner.
+	 * @param partner Partner.
+	 * @return Version of the partner.
+	 */
+	public static PartnerVersion of(Partner partner) {
+		return new PartnerVersion(partner.getVersion(), partner.getLastModified());
+	}
+
+	/**
+	 * Gets the version of the partner.
+	 * @return partner's version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the time of the last change of the partner.
+	 * @return partner's last change.
+	 */
+	public Date getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Gets the entity tag of the partner sent as JSON, in the ETag header.
+	 * @return Strong entity tag, quoted.
+	 */
+	public String getETag() {
+		return getETag((String) null);
+	}
+
+	/**
+	 * Gets the entity tag of the partner, sent in the ETag header. The tag is strong, so it is different for every
+	 * format the partner is sent in. It is made of the version and the time of the last change, as a partner
+	 * removed and added again starts over from the first version.
+	 * @param format Binary format the partner is sent in, as cbor or smile, or null for JSON.
+	 * @return Strong entity tag, quoted.
+	 */
+	public String getETag(String format) {
+		return "\"" + getTag() + (format == null ? "" : "+" + format) + "\"";
+	}
+
+	private String getTag() {
+		return version + "-" + Long.toString(lastModified.getTime(), Character.MAX_RADIX);
+	}
+
+	/**
+	 * Gets the entity tag of a list of partners, which changes when a partner of the list changes, is added or
+	 * removed. It is computed from the IDs, the versions and the times of the last change, before the partners are
+	 * serialized, so a partner removed and added again changes it too. The tag is weak,
+	 * the same for every format and encoding of the list, so Tomcat still compresses the lists.
+	 * @param partners Partners.
+	 * @return Weak entity tag, quoted.
+	 */
+	public static String getETag(List<Partner> partners) {
+		long hash = 1125899906842597L;
+		for (Partner partner : partners) {
+			hash = 31 * hash + partner.getId();
+			hash = 31 * hash + partner.getVersion();
+			hash = 31 * hash + partner.getLastModified().getTime();
+		}
+		return "W/\"" + partners.size() + "-" + Long.toHexString(hash) + "\"";
+	}
+
+	/**
+	 * Tells if the entity tag of an If-Match header, in any format, is the one of this version. Weak tags and lists
+	 * of tags never match.
+	 * @param header Value of the header, other than "*".
+	 * @return true if the header has the tag of this version.
+	 */
+	public boolean matches(String header) {
+		String tag = header.trim();
+		if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"')
+			return false;
+		int end = tag.indexOf('+');
+		return tag.substring(1, end < 0 ? tag.length() - 1 : end).equals(getTag());
+	}
+}
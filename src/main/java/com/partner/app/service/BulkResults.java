@@ -0,0 +1,74 @@
+package com.partner.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemOutcome.Outcome;
+import com.partner.app.model.Partner;
+
+/**
+ * Outcomes of the items of the bulk operations, shared by PartnerService and ReactivePartnerService.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+final class BulkResults {
+
+	private BulkResults() {
+	}
+
+	/**
+	 * Validates the partners of a bulk operation, the result of the invalid ones is set as INVALID. The locale is
+	 * checked here too, the statements of the stores need it.
+	 * @param validator Validator of the partners.
+	 * @param partners Partners received.
+	 * @param results Results of the operation.
+	 * @return Partners which are valid.
+	 */
+	static List<Partner> validate(Validator validator, List<Partner> partners, BulkItemOutcome[] results) {
+		List<Partner> valid = new ArrayList<>(partners.size());
+		for (int i = 0; i < partners.size(); i++) {
+			Partner partner = partners.get(i);
+			Set<ConstraintViolation<Partner>> violations = validator.validate(partner);
+			List<String> errors = violations.stream().map(v -> v.getPropertyPath() + " " + v.getMessage())
+					.collect(Collectors.toList());
+			if (partner.getLocale() == null)
+				errors.add("locale must not be null");
+			if (errors.isEmpty()) {
+				valid.add(partner);
+			} else {
+				results[i] = new BulkItemOutcome(partner.getId(), Outcome.INVALID, String.join(", ", errors));
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Sets the results of the valid partners, which are the ones without result yet.
+	 */
+	static void fill(List<Partner> valid, int[] rows, BulkItemOutcome[] results, Outcome missed) {
+		int j = 0;
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				results[i] = result(valid.get(j).getId(), rows[j], missed);
+				j++;
+			}
+		}
+	}
+
+	static BulkItemOutcome result(long id, int rows, Outcome missed) {
+		if (rows > 0)
+			return new BulkItemOutcome(id, Outcome.DONE, null);
+		if (rows == 0 && missed == Outcome.NOT_FOUND)
+			return new BulkItemOutcome(id, missed, "Partner with ID=" + id + " not found in the data base.");
+		if (rows == 0)
+			return new BulkItemOutcome(id, missed, "Partner already exists.");
+		return new BulkItemOutcome(id, Outcome.FAILED, "Error with the database.");
+	}
+}
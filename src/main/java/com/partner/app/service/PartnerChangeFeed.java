@@ -0,0 +1,188 @@
+package com.partner.app.service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.ServiceUnavailableException;
+import com.partner.app.model.PartnerChange;
+import com.partner.app.model.PartnerChanges;
+
+/**
+ * Feed of the changes to the partners, read from the log of changes of the database so the consumers can keep
+ * their own copy of the partners up to date instead of reading them all again.
+ * <p>
+ * A consumer reads the changes after the last sequence number it has seen. When there are none, the request waits
+ * until the next change or until its time is over, without holding a thread: PartnerService calls changed after
+ * every change, and the waiting requests read the log again on a single background thread. The changes older than
+ * partner.changes.retention are removed from the log every hour, a consumer which stops for longer has to read
+ * all the partners again.
+ * <p>
+ * The stores which keep the partners in memory do not keep the log, the feed is disabled with them.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Service
+public class PartnerChangeFeed {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerChangeFeed.class);
+
+	private final PartnerDao partnerDao;
+
+	private final Duration retention;
+
+	private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+	private final AtomicBoolean delivering = new AtomicBoolean();
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "partner-changes");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor of the class PartnerChangeFeed.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param retention Age of the changes which are removed from the log, 0 to keep them all.
+	 */
+	@Autowired
+	public PartnerChangeFeed(PartnerDao partnerDao, @Value("${partner.changes.retention:7d}") Duration retention) {
+		this.partnerDao = partnerDao;
+		this.retention = retention;
+	}
+
+	/**
+	 * Schedules the removal of the old changes, if there is a retention.
+	 */
+	@PostConstruct
+	public void start() {
+		if (!retention.isZero())
+			executor.scheduleWithFixedDelay(this::prune, 1, 60, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Tells if the feed is enabled, which it is with the stores which keep the log of changes.
+	 * @return true if the changes can be read.
+	 */
+	public boolean isEnabled() {
+		return partnerDao.hasChangeLog();
+	}
+
+	/**
+	 * Gets the changes after a sequence number, without waiting.
+	 * @param since Sequence number of the last change already read, 0 for the first change.
+	 * @param limit Maximum number of changes.
+	 * @return Changes and the sequence number to read the next ones from.
+	 * @throws InternalErrorException Error with the database query.
+	 * @throws ServiceUnavailableException The feed is disabled.
+	 */
+	public PartnerChanges getChanges(long since, int limit) throws InternalErrorException,
+			ServiceUnavailableException {
+		if (!isEnabled())
+			throw new ServiceUnavailableException();
+		return read(since, limit);
+	}
+
+	private PartnerChanges read(long since, int limit) throws InternalErrorException {
+		List<PartnerChange> changes = partnerDao.selectChanges(since, limit);
+		return new PartnerChanges(changes, changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq());
+	}
+
+	/**
+	 * Gets the changes after a sequence number, waiting for the next change if there are none.
+	 * @param since Sequence number of the last change already read, 0 for the first change.
+	 * @param limit Maximum number of changes.
+	 * @param wait Maximum time to wait, after which the result has no changes.
+	 * @return Result set with the changes, once there are some or the time is over.
+	 * @throws ServiceUnavailableException The feed is disabled.
+	 */
+	public DeferredResult<PartnerChanges> poll(long since, int limit, Duration wait)
+			throws ServiceUnavailableException {
+		if (!isEnabled())
+			throw new ServiceUnavailableException();
+		DeferredResult<PartnerChanges> result = new DeferredResult<>(wait.toMillis(),
+				() -> new PartnerChanges(Collections.emptyList(), since));
+		Waiter waiter = new Waiter(since, limit, result);
+		// Registered before reading, so a change committed in between wakes it up.
+		waiters.add(waiter);
+		result.onCompletion(() -> waiters.remove(waiter));
+		deliver(waiter);
+		return result;
+	}
+
+	/**
+	 * Wakes up the requests waiting for changes, called after every change to the partners.
+	 */
+	public void changed() {
+		if (!waiters.isEmpty() && delivering.compareAndSet(false, true))
+			executor.execute(() -> {
+				delivering.set(false);
+				for (Waiter waiter : waiters) {
+					deliver(waiter);
+				}
+			});
+	}
+
+	/**
+	 * Sets the result of a waiting request if there are changes for it.
+	 */
+	private void deliver(Waiter waiter) {
+		if (waiter.result.isSetOrExpired())
+			return;
+		try {
+			PartnerChanges changes = read(waiter.since, waiter.limit);
+			if (!changes.getChanges().isEmpty())
+				waiter.result.setResult(changes);
+		} catch (InternalErrorException e) {
+			waiter.result.setErrorResult(e);
+		}
+	}
+
+	private void prune() {
+		try {
+			int removed = partnerDao.deleteChanges(new Date(System.currentTimeMillis() - retention.toMillis()));
+			if (removed > 0)
+				log.info("Removed {} changes older than {} from the log", removed, retention);
+		} catch (InternalErrorException | RuntimeException e) {
+			log.warn("Could not remove the old changes from the log", e);
+		}
+	}
+
+	private static final class Waiter {
+		private final long since;
+		private final int limit;
+		private final DeferredResult<PartnerChanges> result;
+
+		private Waiter(long since, int limit, DeferredResult<PartnerChanges> result) {
+			this.since = since;
+			this.limit = limit;
+			this.result = result;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.partner.app.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Removes the partners which have expired, in the background. It is enabled with partner.expiry.enabled=true and
+ * runs every partner.expiry.interval.
+ * <p>
+ * A tick reads the expired partners in batches of partner.expiry.batch-size, the earliest first, through the index
+ * of the expiration dates, and removes every batch at once, copying the partners to the table PARTNER_ARCHIVE first
+ * if partner.expiry.archive is true. It stops when there are no more expired partners or after
+ * partner.expiry.max-tick-time, so a large backlog is removed over several ticks without holding the database for
+ * long. The partners removed are counted in partner.expiry.partners and the ticks timed in partner.expiry.ticks,
+ * whose tag backlog tells if the tick removed every expired partner.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Service
+public class PartnerExpiryService {
+
+	private static final Logger log = LoggerFactory.getLogger(PartnerExpiryService.class);
+
+	private final PartnerService partnerService;
+
+	private final boolean enabled;
+
+	private final Duration interval;
+
+	private final int batchSize;
+
+	private final Duration maxTickTime;
+
+	private final boolean archive;
+
+	private final Counter expired;
+
+	private final Timer drained;
+
+	private final Timer remaining;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "partner-expiry");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor of the class PartnerExpiryService.
+	 * @param partnerService Service used to read and remove the partners.
+	 * @param enabled If false, the ticks are not scheduled.
+	 * @param interval Time between the end of a tick and the start of the next one.
+	 * @param batchSize Number of partners removed at once.
+	 * @param maxTickTime Time after which a tick stops starting new batches.
+	 * @param archive If true, the partners are copied to the archive before they are removed.
+	 * @param registry Registry of the metrics.
+	 */
+	@Autowired
+	public PartnerExpiryService(PartnerService partnerService,
+			@Value("${partner.expiry.enabled:false}") boolean enabled,
+			@Value("${partner.expiry.interval:1m}") Duration interval,
+			@Value("${partner.expiry.batch-size:500}") int batchSize,
+			@Value("${partner.expiry.max-tick-time:500ms}") Duration maxTickTime,
+			@Value("${partner.expiry.archive:true}") boolean archive, MeterRegistry registry) {
+		this.partnerService = partnerService;
+		this.enabled = enabled;
+		this.interval = interval;
+		this.batchSize = batchSize;
+		this.maxTickTime = maxTickTime;
+		this.archive = archive;
+		this.expired = registry.counter("partner.expiry.partners", "action", archive ? "archived" : "deleted");
+		this.drained = registry.timer("partner.expiry.ticks", "backlog", "drained");
+		this.remaining = registry.timer("partner.expiry.ticks", "backlog", "remaining");
+	}
+
+	/**
+	 * Schedules the ticks, if the expiry is enabled.
+	 */
+	@PostConstruct
+	public void start() {
+		if (enabled)
+			scheduler.scheduleWithFixedDelay(this::tick, interval.toMillis(), interval.toMillis(),
+					TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Removes the partners which have expired, batch by batch, until there are no more or the time of a tick is
+	 * over. The batch running when the time is over is finished.
+	 * @return Number of partners removed.
+	 */
+	public int tick() {
+		long started = System.nanoTime();
+		long deadline = started + maxTickTime.toNanos();
+		Date now = new Date();
+		int removed = 0;
+		boolean done = false;
+		try {
+			while (true) {
+				List<Partner> partners = partnerService.getExpiredPartners(now, batchSize);
+				if (!partners.isEmpty()) {
+					int batch = partnerService.expirePartners(
+							partners.stream().map(Partner::getId).collect(Collectors.toList()), now, archive);
+					expired.increment(batch);
+					removed += batch;
+				}
+				if (partners.size() < batchSize) {
+					done = true;
+					break;
+				}
+				if (System.nanoTime() - deadline >= 0)
+					break;
+			}
+		} catch (InternalErrorException | RuntimeException e) {
+			log.warn("Could not remove the expired partners", e);
+		}
+		long elapsed = System.nanoTime() - started;
+		(done ? drained : remaining).record(elapsed, TimeUnit.NANOSECONDS);
+		if (removed > 0)
+			log.info("Removed {} expired partners in {} ms{}", removed, TimeUnit.NANOSECONDS.toMillis(elapsed),
+					done ? "" : ", more are left for the next tick");
+		return removed;
+	}
+}
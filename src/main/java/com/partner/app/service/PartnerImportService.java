@@ -0,0 +1,215 @@
+package com.partner.app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemOutcome.Outcome;
+import com.partner.app.model.ImportReport;
+import com.partner.app.model.Partner;
+
+/**
+ * Imports partners from newline delimited JSON or CSV. The body is parsed one partner at a time and the partners
+ * are added in chunks, so only one chunk is held in memory, and the body is read only as fast as the database
+ * takes the chunks. The chunks are added with PartnerService, or with the adder given by the caller. If the body
+ * breaks off, the import stops there and its report tells so, as the chunks added until then are kept.
+ * 
+ * @author Alejandro Torreblanca
+ *
+ */
+@Service
+public class PartnerImportService {
+
+	/**
+	 * Maximum number of failed line numbers kept in the report.
+	 */
+	private static final int MAX_FAILED_LINES = 1000;
+
+	private final PartnerService partnerService;
+
+	private final ObjectReader jsonReader;
+
+	private final ObjectReader csvReader;
+
+	@Value("${partner.bulk.chunk-size:500}")
+	private int chunkSize;
+
+	/**
+	 * Constructor of the class PartnerImportService.
+	 * @param partnerService Service used to add the partners.
+	 * @param objectMapper Mapper of the JSON partners.
+	 */
+	@Autowired
+	public PartnerImportService(PartnerService partnerService, ObjectMapper objectMapper) {
+		super();
+		this.partnerService = partnerService;
+		this.jsonReader = objectMapper.readerFor(Partner.class);
+		this.csvReader = new CsvMapper().readerFor(Partner.class).with(CsvSchema.emptySchema().withHeader());
+	}
+
+	/**
+	 * Imports the partners of a body in newline delimited JSON, one partner per line.
+	 * @param body Body of the request.
+	 * @return Report of the import.
+	 * @throws InternalErrorException Error with the database.
+	 * @throws BadRequestError The body is not well formed, or broke off before any partner was added.
+	 */
+	public ImportReport importJson(InputStream body) throws InternalErrorException, BadRequestError {
+		return importJson(body, partnerService::addPartners);
+	}
+
+	/**
+	 * Imports the partners of a body in newline delimited JSON, one partner per line.
+	 * @param body Body of the request.
+	 * @param adder Adder of the chunks.
+	 * @return Report of the import.
+	 * @throws InternalErrorException Error with the database.
+	 * @throws BadRequestError The body is not well formed, or broke off before any partner was added.
+	 */
+	public ImportReport importJson(InputStream body, ChunkAdder adder) throws InternalErrorException, BadRequestError {
+		return importPartners(jsonReader, body, 0, adder);
+	}
+
+	/**
+	 * Imports the partners of a body in CSV, the first line is the header with the names of the fields.
+	 * @param body Body of the request.
+	 * @return Report of the import.
+	 * @throws InternalErrorException Error with the database.
+	 * @throws BadRequestError The body is not well formed, or broke off before any partner was added.
+	 */
+	public ImportReport importCsv(InputStream body) throws InternalErrorException, BadRequestError {
+		return importCsv(body, partnerService::addPartners);
+	}
+
+	/**
+	 * Imports the partners of a body in CSV, the first line is the header with the names of the fields.
+	 * @param body Body of the request.
+	 * @param adder Adder of the chunks.
+	 * @return Report of the import.
+	 * @throws InternalErrorException Error with the database.
+	 * @throws BadRequestError The body is not well formed, or broke off before any partner was added.
+	 */
+	public ImportReport importCsv(InputStream body, ChunkAdder adder) throws InternalErrorException, BadRequestError {
+		// The CSV parser counts rows from 0.
+		return importPartners(csvReader, body, 1, adder);
+	}
+
+	private ImportReport importPartners(ObjectReader reader, InputStream body, int lineOffset, ChunkAdder adder)
+			throws InternalErrorException, BadRequestError {
+		long start = System.nanoTime();
+		Progress progress = new Progress();
+		List<Partner> chunk = new ArrayList<>(chunkSize);
+		List<Long> chunkLines = new ArrayList<>(chunkSize);
+		try (MappingIterator<Partner> partners = reader.readValues(body)) {
+			for (;;) {
+				long line;
+				try {
+					if (!partners.hasNextValue())
+						break;
+					line = partners.getParser().getTokenLocation().getLineNr() + lineOffset;
+				} catch (JsonProcessingException e) {
+					// The syntax is broken, the rest of the body cannot be trusted.
+					progress.fail(e.getLocation() == null ? -1 : e.getLocation().getLineNr() + lineOffset);
+					break;
+				} catch (IOException e) {
+					progress.abort(partners.getParser().getCurrentLocation().getLineNr() + lineOffset, e);
+					break;
+				}
+				progress.received++;
+				try {
+					chunk.add(partners.nextValue());
+					chunkLines.add(line);
+				} catch (JsonProcessingException e) {
+					progress.fail(line);
+					continue;
+				} catch (IOException e) {
+					progress.abort(line, e);
+					break;
+				}
+				if (chunk.size() == chunkSize) {
+					addChunk(adder, chunk, chunkLines, progress);
+				}
+			}
+		} catch (IOException e) {
+			if (progress.abortCause == null)
+				progress.abort(-1, e);
+		}
+		// The partners read whole before the body broke off are added too.
+		addChunk(adder, chunk, chunkLines, progress);
+		if (progress.abortCause != null && progress.imported == 0)
+			throw new BadRequestError(progress.abortCause.getMessage());
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		return new ImportReport(progress.received, progress.imported, progress.failed, progress.failedLines,
+				progress.abortCause != null, progress.abortLine, elapsedMillis);
+	}
+
+	private static void addChunk(ChunkAdder adder, List<Partner> chunk, List<Long> chunkLines, Progress progress)
+			throws InternalErrorException {
+		if (chunk.isEmpty())
+			return;
+		List<BulkItemOutcome> results = adder.addPartners(chunk);
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i).getOutcome() == Outcome.DONE)
+				progress.imported++;
+			else
+				progress.fail(chunkLines.get(i));
+		}
+		chunk.clear();
+		chunkLines.clear();
+	}
+
+	/**
+	 * Adder of the chunks of an import.
+	 */
+	@FunctionalInterface
+	public interface ChunkAdder {
+
+		/**
+		 * Adds a chunk of partners, as PartnerService.addPartners does.
+		 * @param partners Partners of the chunk.
+		 * @return Outcome of every partner, in the same order.
+		 * @throws InternalErrorException Error with the database.
+		 */
+		List<BulkItemOutcome> addPartners(List<Partner> partners) throws InternalErrorException;
+	}
+
+	/**
+	 * Counters of an import.
+	 */
+	private static final class Progress {
+		private long received;
+		private long imported;
+		private long failed;
+		private final List<Long> failedLines = new ArrayList<>();
+		private IOException abortCause;
+		private long abortLine = -1;
+
+		private void fail(long line) {
+			failed++;
+			if (failedLines.size() < MAX_FAILED_LINES)
+				failedLines.add(line);
+		}
+
+		/**
+		 * Stops the import when the body cannot be read any more, for instance when the client is gone.
+		 */
+		private void abort(long line, IOException cause) {
+			abortLine = line;
+			abortCause = cause;
+		}
+	}
+}
@@ -1,16 +1,35 @@
 package com.partner.app.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
+
+import javax.validation.Validator;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.partner.app.cache.PartnerCache;
+import com.partner.app.cache.PartnerIdFilter;
+import com.partner.app.cache.PartnerInvalidations;
+import com.partner.app.cache.PartnerNameIndex;
+import com.partner.app.cache.PartnerTextIndex;
 import com.partner.app.dao.PartnerDao;
 import com.partner.app.exceptions.BadRequestError;
 import com.partner.app.exceptions.InternalErrorException;
 import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
+import com.partner.app.exceptions.ServiceUnavailableException;
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemOutcome.Outcome;
 import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.model.PartnerVersion;
 
 /**
  * Service layer of the API.
@@ -23,14 +42,51 @@ public class PartnerService {
 	
 	private final PartnerDao partnerDao;
 	
+	private final Validator validator;
+	
+	private final PartnerCache partnerCache;
+	
+	private final PartnerIdFilter partnerIdFilter;
+	
+	private final PartnerNameIndex partnerNameIndex;
+	
+	private final PartnerTextIndex partnerTextIndex;
+	
+	private final PartnerChangeFeed partnerChangeFeed;
+	
+	private final PartnerInvalidations partnerInvalidations;
+	
+	private final boolean hideExpired;
+	
 	/**
 	 * Constructor of the class PartnerService.
 	 * @param partnerDao Interface to interact with the database.
+	 * @param validator Validator of the partners received in bulk operations.
+	 * @param partnerCache Cache of the partners read by ID.
+	 * @param partnerIdFilter Filter of the IDs which do not exist.
+	 * @param partnerNameIndex Index of the partners by name.
+	 * @param partnerTextIndex Index of the trigrams of the names and references.
+	 * @param partnerChangeFeed Feed of the changes, told about every change.
+	 * @param partnerInvalidations Sender of the IDs changed to the other nodes.
+	 * @param hideExpired If true, the partners which have expired are not returned by any read, even before they
+	 * are removed.
 	 */
 	@Autowired
-	public PartnerService(@Qualifier("fakeDao") PartnerDao partnerDao) {
+	public PartnerService(PartnerDao partnerDao, Validator validator, PartnerCache partnerCache,
+			PartnerIdFilter partnerIdFilter, PartnerNameIndex partnerNameIndex,
+			PartnerTextIndex partnerTextIndex, PartnerChangeFeed partnerChangeFeed,
+			PartnerInvalidations partnerInvalidations,
+			@Value("${partner.expiry.hide-expired:false}") boolean hideExpired) {
 		super();
 		this.partnerDao = partnerDao;
+		this.validator = validator;
+		this.partnerCache = partnerCache;
+		this.partnerIdFilter = partnerIdFilter;
+		this.partnerNameIndex = partnerNameIndex;
+		this.partnerTextIndex = partnerTextIndex;
+		this.partnerChangeFeed = partnerChangeFeed;
+		this.partnerInvalidations = partnerInvalidations;
+		this.hideExpired = hideExpired;
 	}
 	
 	/**
@@ -38,7 +94,7 @@ public class PartnerService {
 	 * @return New ID.
 	 * @throws InternalErrorException Error with the database query.
 	 */
-	public int getNewID() throws InternalErrorException {
+	public long getNewID() throws InternalErrorException {
 		return partnerDao.getNewID();
 	}
 
@@ -50,7 +106,14 @@ public class PartnerService {
 	 * @throws BadRequestError The partner already exists.
 	 */
 	public int addPartner(Partner partner) throws InternalErrorException, BadRequestError {
-		return partnerDao.insertPartner(partner);
+		partnerIdFilter.adding(partner.getId());
+		int row = partnerDao.insertPartner(partner);
+		partnerIdFilter.added(partner.getId());
+		partnerCache.put(partner);
+		partnerNameIndex.put(partner);
+		partnerTextIndex.put(partner);
+		changed(Collections.singletonList(partner.getId()));
+		return row;
 	}
 	
 	/**
@@ -61,7 +124,68 @@ public class PartnerService {
 	 * @throws InternalErrorException Error with the database query.
 	 */
 	public List<Partner> getAllPartners(int from, int size) throws InternalErrorException{
-		return partnerDao.selectAllPartners(from,size);
+		return partnerDao.selectAllPartners(from, size, unexpiredAt());
+	}
+	
+	/**
+	 * Reads all the partners, handing them one by one to the consumer.
+	 * @param consumer Consumer of the partners, called in the order of the IDs.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public void exportPartners(Consumer<Partner> consumer) throws InternalErrorException {
+		Date now = unexpiredAt();
+		if (now == null) {
+			partnerDao.streamAllPartners(consumer);
+			return;
+		}
+		partnerDao.streamAllPartners(partner -> {
+			if (!partner.isExpiredAt(now))
+				consumer.accept(partner);
+		});
+	}
+	
+	/**
+	 * Gets a page of partners using a cursor, the cost of a page does not depend on its position.
+	 * @param cursor Cursor returned with the previous page, null for the first page.
+	 * @param limit Maximum number of partners in the page.
+	 * @return Page of partners with the cursor of the next one.
+	 * @throws InternalErrorException Error with the database query.
+	 * @throws BadRequestError The cursor is not valid.
+	 */
+	public PartnerPage getPartnersPage(String cursor, int limit) throws InternalErrorException, BadRequestError {
+		long after = cursor == null ? Long.MIN_VALUE : PartnerPage.decodeCursor(cursor);
+		List<Partner> partners = partnerDao.selectPartnersAfter(after, limit, unexpiredAt());
+		String next = null;
+		if (limit > 0 && partners.size() == limit)
+			next = PartnerPage.encodeCursor(partners.get(partners.size() - 1).getId());
+		return new PartnerPage(partners, next);
+	}
+	
+	/**
+	 * Searches the partners. The lookups of names by their beginning are answered by the index of the names if it
+	 * is enabled, the rest by the database.
+	 * @param query Filters, order and window of the search.
+	 * @return List of partners.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public List<Partner> searchPartners(PartnerQuery query) throws InternalErrorException {
+		if (partnerNameIndex.isEnabled() && query.isNameLookup())
+			return partnerNameIndex.lookup(query.getNamePrefix(), query.getFrom(), query.getSize(), unexpiredAt());
+		return partnerDao.searchPartners(query.unexpiredAt(unexpiredAt()));
+	}
+	
+	/**
+	 * Searches the partners whose name or reference looks like a text, which may have typos, in the index of the
+	 * trigrams.
+	 * @param text Text to look for.
+	 * @param size Maximum number of partners.
+	 * @return List of partners, the most alike first.
+	 * @throws ServiceUnavailableException The index is disabled.
+	 */
+	public List<Partner> fuzzySearchPartners(String text, int size) throws ServiceUnavailableException {
+		if (!partnerTextIndex.isEnabled())
+			throw new ServiceUnavailableException();
+		return partnerTextIndex.search(text, size, unexpiredAt());
 	}
 	
 	/**
@@ -72,7 +196,42 @@ public class PartnerService {
 	 * @throws InternalErrorException Error with the database query.
 	 */
 	public Partner getPartner(long id) throws PartnerNotFoundException, InternalErrorException {
-		return partnerDao.selectPartner(id);
+		if (!partnerIdFilter.mightContain(id))
+			throw new PartnerNotFoundException();
+		Partner partner;
+		try {
+			partner = partnerCache.get(id, partnerDao::selectPartner);
+		} catch (PartnerNotFoundException e) {
+			partnerIdFilter.falsePositive();
+			throw e;
+		}
+		if (hideExpired && partner.isExpiredAt(new Date()))
+			throw new PartnerNotFoundException();
+		return partner;
+	}
+	
+	/**
+	 * Gets the version of the partner with the selected ID, from the cache if it is there and without reading the
+	 * rest of the partner otherwise.
+	 * @param id ID of the partner.
+	 * @return Version of the partner.
+	 * @throws PartnerNotFoundException There is no partner with the ID.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public PartnerVersion getPartnerVersion(long id) throws PartnerNotFoundException, InternalErrorException {
+		if (hideExpired)
+			return PartnerVersion.of(getPartner(id));
+		if (!partnerIdFilter.mightContain(id))
+			throw new PartnerNotFoundException();
+		Partner cached = partnerCache.getIfPresent(id);
+		if (cached != null)
+			return PartnerVersion.of(cached);
+		try {
+			return partnerDao.selectPartnerVersion(id);
+		} catch (PartnerNotFoundException e) {
+			partnerIdFilter.falsePositive();
+			throw e;
+		}
 	}
 	
 	/**
@@ -82,18 +241,179 @@ public class PartnerService {
 	 * @throws PartnerNotFoundException There is no partner with the ID.
 	 * @throws InternalErrorException Error with the database update.
 	 */
-	public int deletePartner(String id) throws PartnerNotFoundException, InternalErrorException {
-		return partnerDao.deletePartner(id);
+	public int deletePartner(long id) throws PartnerNotFoundException, InternalErrorException {
+		try {
+			int row = partnerDao.deletePartner(id);
+			partnerIdFilter.deleted(id);
+			partnerNameIndex.remove(id);
+			partnerTextIndex.remove(id);
+			changed(Collections.singletonList(id));
+			return row;
+		} finally {
+			partnerCache.invalidate(id);
+		}
 	}
 	
 	/**
 	 * Updates the information of a partner.
-	 * @param partner New data of the partner.
+	 * @param partner New data of the partner, with the version it is expected to have or 0 for any. It gets the new
+	 * version.
 	 * @return returns the number 1 if the update is correct.
 	 * @throws PartnerNotFoundException There is no partner with the ID.
+	 * @throws PreconditionFailedException The partner has another version.
 	 * @throws InternalErrorException Error with the database update.
 	 */
-	public int updatePartner(Partner partner) throws PartnerNotFoundException, InternalErrorException {
-		return partnerDao.updatePartner( partner);
+	public int updatePartner(Partner partner) throws PartnerNotFoundException, PreconditionFailedException,
+			InternalErrorException {
+		try {
+			int row = partnerDao.updatePartner( partner);
+			partnerCache.put(partner);
+			partnerNameIndex.put(partner);
+			partnerTextIndex.put(partner);
+			changed(Collections.singletonList(partner.getId()));
+			return row;
+		} catch (PartnerNotFoundException | PreconditionFailedException | InternalErrorException e) {
+			partnerCache.invalidate(partner.getId());
+			throw e;
+		}
+	}
+	
+	/**
+	 * Adds several partners to the database, partners without ID get a new one.
+	 * @param partners Partners which are going to be added.
+	 * @return Outcome of every partner, in the same order.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	public List<BulkItemOutcome> addPartners(List<Partner> partners) throws InternalErrorException {
+		BulkItemOutcome[] results = new BulkItemOutcome[partners.size()];
+		List<Partner> valid = BulkResults.validate(validator, partners, results);
+		for (Partner partner : valid) {
+			if (partner.getId() == 0)
+				partner.setId(getNewID());
+			partnerIdFilter.adding(partner.getId());
+		}
+		int[] rows = partnerDao.insertPartners(valid);
+		invalidate(valid);
+		List<Long> changed = new ArrayList<>(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i] > 0) {
+				changed.add(valid.get(i).getId());
+				partnerIdFilter.added(valid.get(i).getId());
+				partnerNameIndex.put(valid.get(i));
+				partnerTextIndex.put(valid.get(i));
+			}
+		}
+		changed(changed);
+		BulkResults.fill(valid, rows, results, Outcome.EXISTS);
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * Updates the information of several partners.
+	 * @param partners New data of the partners.
+	 * @return Outcome of every partner, in the same order.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	public List<BulkItemOutcome> updatePartners(List<Partner> partners) throws InternalErrorException {
+		BulkItemOutcome[] results = new BulkItemOutcome[partners.size()];
+		List<Partner> valid = BulkResults.validate(validator, partners, results);
+		int[] rows = partnerDao.updatePartners(valid);
+		invalidate(valid);
+		List<Long> changed = new ArrayList<>(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i] > 0) {
+				changed.add(valid.get(i).getId());
+				partnerNameIndex.put(valid.get(i));
+				partnerTextIndex.put(valid.get(i));
+			}
+		}
+		changed(changed);
+		BulkResults.fill(valid, rows, results, Outcome.NOT_FOUND);
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * Removes several partners from the database.
+	 * @param ids IDs of the partners.
+	 * @return Outcome of every ID, in the same order.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	public List<BulkItemOutcome> deletePartners(List<Long> ids) throws InternalErrorException {
+		int[] rows = partnerDao.deletePartners(ids);
+		List<Long> changed = new ArrayList<>(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			partnerCache.invalidate(ids.get(i));
+			if (rows[i] > 0) {
+				changed.add(ids.get(i));
+				partnerIdFilter.deleted(ids.get(i));
+				partnerNameIndex.remove(ids.get(i));
+				partnerTextIndex.remove(ids.get(i));
+			}
+		}
+		changed(changed);
+		List<BulkItemOutcome> results = new ArrayList<>(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			results.add(BulkResults.result(ids.get(i), rows[i], Outcome.NOT_FOUND));
+		}
+		return results;
+	}
+	
+	/**
+	 * Gets the partners which have expired, the earliest first.
+	 * @param now Time, the partners which expire at or before it have expired.
+	 * @param limit Maximum number of partners.
+	 * @return List of partners.
+	 * @throws InternalErrorException Error with the database query.
+	 */
+	public List<Partner> getExpiredPartners(Date now, int limit) throws InternalErrorException {
+		return partnerDao.selectExpiredPartners(now, limit);
+	}
+	
+	/**
+	 * Removes partners which have expired, archiving them first if asked, and forgets them in the cache and the
+	 * indexes.
+	 * @param ids IDs of the partners.
+	 * @param now Time, the partners which expire at or before it have expired.
+	 * @param archive If true, the partners are copied to the archive before they are removed.
+	 * @return Number of partners removed.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	public int expirePartners(List<Long> ids, Date now, boolean archive) throws InternalErrorException {
+		int[] rows = partnerDao.expirePartners(ids, now, archive);
+		int removed = 0;
+		List<Long> changed = new ArrayList<>(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			partnerCache.invalidate(ids.get(i));
+			if (rows[i] > 0) {
+				changed.add(ids.get(i));
+				partnerIdFilter.deleted(ids.get(i));
+				partnerNameIndex.remove(ids.get(i));
+				partnerTextIndex.remove(ids.get(i));
+				removed++;
+			}
+		}
+		changed(changed);
+		return removed;
+	}
+	
+	/**
+	 * Tells the feed and the other nodes about partners which have changed.
+	 */
+	private void changed(List<Long> ids) {
+		partnerChangeFeed.changed();
+		partnerInvalidations.publish(ids);
+	}
+	
+	private void invalidate(List<Partner> partners) {
+		for (Partner partner : partners) {
+			partnerCache.invalidate(partner.getId());
+		}
+	}
+	
+	/**
+	 * Gets the time the partners read must not have expired at, null if the expired partners are returned.
+	 */
+	private Date unexpiredAt() {
+		return hideExpired ? new Date() : null;
 	}
 }
@@ -0,0 +1,3 @@
+create table partner(id BIGINT NOT NULL PRIMARY KEY, companyName varchar(30), ref varchar(30), locale varchar(30), expires DATE);
+create index partner_ref_idx on partner(ref);
+create index partner_company_name_idx on partner(companyName);
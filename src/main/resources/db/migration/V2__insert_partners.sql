@@ -0,0 +1,3 @@
+insert into partner(id,companyName,ref,locale,expires) values(1,'Partner1','xxxxx1','en_GB',TO_DATE('2017-10-03T12:03:46+00:00','YYYY-MM-DDThh:mm:ssTZD'));
+insert into partner(id,companyName,ref,locale,expires) values(2,'Partner2','xxxxx2','en_GB',TO_DATE('2019-10-03T12:03:46+00:00','YYYY-MM-DDThh:mm:ssTZD'));
+insert into partner(id,companyName,ref,locale,expires) values(3,'Partner3','xxxxx3','es_ES',TO_DATE('2018-10-03T12:03:46+00:00','YYYY-MM-DDThh:mm:ssTZD'));
@@ -0,0 +1 @@
+create sequence partner_id_seq start with 100 increment by 50;
@@ -0,0 +1,2 @@
+alter table partner add column version BIGINT DEFAULT 1 NOT NULL;
+alter table partner add column lastModified TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
@@ -0,0 +1,2 @@
+create index partner_locale_idx on partner(locale);
+create index partner_expires_idx on partner(expires);
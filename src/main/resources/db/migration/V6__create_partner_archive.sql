@@ -0,0 +1,2 @@
+create table partner_archive(id BIGINT NOT NULL, companyName varchar(30), ref varchar(30), locale varchar(30), expires DATE, version BIGINT NOT NULL, lastModified TIMESTAMP NOT NULL, archivedAt TIMESTAMP NOT NULL);
+create index partner_archive_id_idx on partner_archive(id);
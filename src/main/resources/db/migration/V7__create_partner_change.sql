@@ -0,0 +1,2 @@
+create table partner_change(seq BIGINT AUTO_INCREMENT PRIMARY KEY, type varchar(10) NOT NULL, id BIGINT NOT NULL, companyName varchar(30), ref varchar(30), locale varchar(30), expires DATE, version BIGINT, lastModified TIMESTAMP NOT NULL);
+create index partner_change_last_modified_idx on partner_change(lastModified);
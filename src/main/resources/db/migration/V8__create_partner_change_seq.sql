@@ -0,0 +1,2 @@
+create table partner_change_seq(id INT NOT NULL PRIMARY KEY, seq BIGINT NOT NULL);
+insert into partner_change_seq(id, seq) select 1, coalesce(max(seq), 0) from partner_change;
@@ -0,0 +1,59 @@
+package com.partner.app.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+
+/**
+ * Infrastructure of the reactive variant of the API, selected with the Spring profile reactive: the server is
+ * Netty, whose few event-loop threads serve every connection, and the partners are read and written through
+ * R2DBC over the same H2 database as JDBC, which is still used by Flyway.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+	private static final String JDBC_H2 = "jdbc:h2:";
+
+	/**
+	 * Netty server. Tomcat is also in the classpath and would be chosen first otherwise.
+	 * @return Factory of the server.
+	 */
+	@Bean
+	public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+		return new NettyReactiveWebServerFactory();
+	}
+
+	/**
+	 * Pool of R2DBC connections to the database of spring.datasource.url.
+	 * @param url JDBC URL of the H2 database.
+	 * @param username User of the database.
+	 * @param password Password of the user.
+	 * @param maxSize Maximum number of connections.
+	 * @return Pool of connections.
+	 */
+	@Bean(destroyMethod = "dispose")
+	public ConnectionPool connectionFactory(@Value("${spring.datasource.url}") String url,
+			@Value("${spring.datasource.username:sa}") String username,
+			@Value("${spring.datasource.password:}") String password,
+			@Value("${partner.reactive.pool.max-size:10}") int maxSize) {
+		if (!url.startsWith(JDBC_H2))
+			throw new IllegalStateException("The reactive profile needs an H2 database, not " + url);
+		H2ConnectionConfiguration configuration = H2ConnectionConfiguration.builder()
+				.url(url.substring(JDBC_H2.length())).username(username).password(password).build();
+		return new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(configuration))
+				.initialSize(maxSize).maxSize(maxSize).maxIdleTime(Duration.ofMinutes(30)).build());
+	}
+}
@@ -0,0 +1,315 @@
+package com.partner.app.controller;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemResult;
+import com.partner.app.model.ImportReport;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+import com.partner.app.service.PartnerImportService;
+import com.partner.app.service.ReactivePartnerService;
+
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive controller of the API, selected with the Spring profile reactive instead of PartnerController. It serves
+ * the partners by ID, the pages, the bulk operations, _import and _export with the URLs, statuses and JSON of
+ * PartnerController, but not the searches, _changes, the ETags and conditional requests nor
+ * partner.expiry.hide-expired. No request holds a thread while it waits for the database or the client, and the
+ * partners of the listings are written as they are read, as fast as the client takes them.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Profile("reactive")
+@RequestMapping("api/partners")
+@RestController
+public class ReactivePartnerController {
+
+	private static final int IMPORT_BUFFER_SIZE = 64 * 1024;
+
+	private final ReactivePartnerService partnerService;
+
+	private final PartnerImportService partnerImportService;
+
+	private final ObjectWriter writer;
+
+	/**
+	 * Constructor of the class ReactivePartnerController.
+	 * @param partnerService Reactive service layer.
+	 * @param partnerImportService Parser of the imports, which is blocking.
+	 * @param objectMapper Mapper of the partners exported.
+	 */
+	@Autowired
+	public ReactivePartnerController(ReactivePartnerService partnerService,
+			PartnerImportService partnerImportService, ObjectMapper objectMapper) {
+		this.partnerService = partnerService;
+		this.partnerImportService = partnerImportService;
+		this.writer = objectMapper.writerFor(Partner.class);
+	}
+
+	/**
+	 * Adds a partner to the data base, the information of the partner is in the body of the HTTP message.
+	 * Response to a HTTP message with POST and url api/partners.
+	 * @param partner Partner
+	 * @param request HTTP request, used to build the location of the partner.
+	 * @return HTTP message reply.
+	 */
+	@PostMapping(produces = "application/json")
+	public Mono<ResponseEntity<Partner>> addPartner(@Valid @NonNull @RequestBody Partner partner,
+			ServerHttpRequest request) {
+		return partnerService.addPartner(partner).map(added -> ResponseEntity
+				.created(UriComponentsBuilder.fromHttpRequest(request).path("/{id}").buildAndExpand(added.getId())
+						.toUri())
+				.body(added)).onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Gets {size} partners starting with {from}.
+	 * Response to a HTTP message with GET and url api/partners/{from}/{size}.
+	 * @param from Offset in the resultset to paginate to
+	 * @param size Window pagination size
+	 * @return Partners
+	 */
+	@GetMapping(path = "{from}/{size}")
+	public Flux<Partner> getAllPartners(@PathVariable("from") String from, @PathVariable("size") String size) {
+		int f;
+		int s;
+		try {
+			f = Integer.parseInt(from);
+			s = Integer.parseInt(size);
+		} catch (NumberFormatException e) {
+			return Flux.error(new ResponseStatusException(
+					HttpStatus.BAD_REQUEST, "Numbers 'from' and 'size' must be integers.", e));
+		}
+		if (f < 0 || s < 0)
+			return Flux.error(new ResponseStatusException(
+					HttpStatus.BAD_REQUEST, "Numbers 'from' and 'size' must be integers greater than 0.", new Exception()));
+		return partnerService.getAllPartners(f, s).onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Gets {limit} partners after the position pointed by the cursor {after}, the cursor of the next page is
+	 * returned with the partners.
+	 * Response to a HTTP message with GET and url api/partners?after={after}&limit={limit}.
+	 * @param after Cursor returned with the previous page, absent for the first page.
+	 * @param limit Window pagination size
+	 * @return Page of partners
+	 */
+	@GetMapping(params = "limit")
+	public Mono<PartnerPage> getPartnersPage(@RequestParam(value = "after", required = false) String after,
+			@RequestParam("limit") String limit) {
+		int l;
+		try {
+			l = Integer.parseInt(limit);
+		} catch (NumberFormatException e) {
+			return Mono.error(new ResponseStatusException(
+					HttpStatus.BAD_REQUEST, "Number 'limit' must be an integer.", e));
+		}
+		if (l < 0)
+			return Mono.error(new ResponseStatusException(
+					HttpStatus.BAD_REQUEST, "Number 'limit' must be an integer greater than 0.", new Exception()));
+		return partnerService.getPartnersPage(after, l).onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Writes all the partners as newline delimited JSON, one partner per line, as fast as the client reads them.
+	 * Response to a HTTP message with GET and url api/partners/_export.
+	 * @return Lines of the partners.
+	 */
+	@GetMapping(path = "_export", produces = PartnerController.NDJSON)
+	public Flux<String> exportPartners() {
+		return partnerService.exportPartners().map(partner -> {
+			try {
+				return writer.writeValueAsString(partner) + '\n';
+			} catch (JsonProcessingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Gets the first partners.
+	 * Response to a HTTP message with GET and url api/partners.
+	 * @return Partners.
+	 */
+	@GetMapping
+	public Flux<Partner> getAllPartnersDefault() {
+		return getAllPartners("0", "10");
+	}
+
+	/**
+	 * Gets the partner with id {id}
+	 * Response to a HTTP message with GET and url api/partners/{id}.
+	 * @param id ID of the partner.
+	 * @return Partner with the specified ID.
+	 */
+	@GetMapping(path = "{id}")
+	public Mono<Partner> getPartner(@PathVariable("id") long id) {
+		return partnerService.getPartner(id).onErrorMap(e -> status(e, id));
+	}
+
+	/**
+	 * Removes the partner with the specified ID.
+	 * Response to a HTTP message with DELETE and url api/partners/{id}.
+	 * @param id ID of the partner.
+	 * @return Completion.
+	 */
+	@DeleteMapping(path = "{id}")
+	public Mono<Void> deletePartner(@PathVariable("id") long id) {
+		return partnerService.deletePartner(id).onErrorMap(e -> status(e, id));
+	}
+
+	/**
+	 * Updates the information of a partner.
+	 * Response to a HTTP message with PUT and url api/partners/{id}.
+	 * @param id ID of the partner.
+	 * @param partner New information of the partner.
+	 * @return Partner updated.
+	 */
+	@PutMapping(path = "{id}")
+	public Mono<Partner> updatePartner(@PathVariable("id") long id, @Valid @NonNull @RequestBody Partner partner) {
+		partner.setId(id);
+		return partnerService.updatePartner(partner).onErrorMap(e -> status(e, id));
+	}
+
+	/**
+	 * Adds several partners to the data base, the partners are in the body of the HTTP message.
+	 * Response to a HTTP message with POST and url api/partners/_bulk.
+	 * @param partners List of partners
+	 * @return Outcome of every partner, in the same order.
+	 */
+	@PostMapping(path = "_bulk", produces = "application/json")
+	public Mono<List<BulkItemResult>> addPartners(@NonNull @RequestBody List<Partner> partners) {
+		return partnerService.addPartners(partners).map(outcomes -> PartnerController.results(outcomes, HttpStatus.CREATED))
+				.onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Adds the partners of a big body in newline delimited JSON or CSV (with a header line). The parser is
+	 * blocking, so it runs on a worker thread which reads the body through a pipe as it arrives, and adds every
+	 * chunk with the reactive service.
+	 * Response to a HTTP message with POST and url api/partners/_import.
+	 * @param request HTTP request with the partners in the body.
+	 * @return Counts, failed line numbers and throughput of the import.
+	 */
+	@PostMapping(path = "_import", consumes = { PartnerController.NDJSON, PartnerController.CSV },
+			produces = "application/json")
+	public Mono<ImportReport> importPartners(ServerHttpRequest request) {
+		boolean csv = request.getHeaders().getContentType()
+				.isCompatibleWith(MediaType.parseMediaType(PartnerController.CSV));
+		return Mono.fromCallable(() -> {
+			PipedOutputStream out = new PipedOutputStream();
+			try (PipedInputStream in = new PipedInputStream(out, IMPORT_BUFFER_SIZE)) {
+				Disposable copy = DataBufferUtils.write(request.getBody().publishOn(Schedulers.boundedElastic()), out)
+						.doFinally(signal -> close(out)).subscribe(DataBufferUtils.releaseConsumer());
+				try {
+					return csv ? partnerImportService.importCsv(in, this::addChunk)
+							: partnerImportService.importJson(in, this::addChunk);
+				} finally {
+					copy.dispose();
+				}
+			}
+		}).subscribeOn(Schedulers.boundedElastic()).onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Updates the information of several partners, the partners are in the body of the HTTP message.
+	 * Response to a HTTP message with PUT and url api/partners/_bulk.
+	 * @param partners List of partners
+	 * @return Outcome of every partner, in the same order.
+	 */
+	@PutMapping(path = "_bulk", produces = "application/json")
+	public Mono<List<BulkItemResult>> updatePartners(@NonNull @RequestBody List<Partner> partners) {
+		return partnerService.updatePartners(partners).map(outcomes -> PartnerController.results(outcomes, HttpStatus.OK))
+				.onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Removes several partners, the IDs are in the body of the HTTP message.
+	 * Response to a HTTP message with DELETE and url api/partners/_bulk.
+	 * @param ids List of IDs
+	 * @return Outcome of every ID, in the same order.
+	 */
+	@DeleteMapping(path = "_bulk", produces = "application/json")
+	public Mono<List<BulkItemResult>> deletePartners(@NonNull @RequestBody List<Long> ids) {
+		return partnerService.deletePartners(ids).map(outcomes -> PartnerController.results(outcomes, HttpStatus.OK))
+				.onErrorMap(e -> status(e, null));
+	}
+
+	/**
+	 * Adds a chunk of an import, on the worker thread of the import.
+	 */
+	private List<BulkItemOutcome> addChunk(List<Partner> chunk) throws InternalErrorException {
+		try {
+			return partnerService.addPartners(chunk).block();
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			if (cause instanceof InternalErrorException)
+				throw (InternalErrorException) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps the exceptions of the service to the statuses returned by PartnerController.
+	 * @param e Exception signalled by the service.
+	 * @param id ID of the partner of the request, if any.
+	 * @return Exception with the status of the response.
+	 */
+	private static Throwable status(Throwable e, Long id) {
+		if (e instanceof PartnerNotFoundException)
+			return new ResponseStatusException(
+					HttpStatus.NOT_FOUND, "Partner with ID=" + id + " not found in the data base.", e);
+		if (e instanceof BadRequestError || e instanceof IOException)
+			return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		if (e instanceof InternalErrorException)
+			return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+		return e;
+	}
+
+	private static void close(PipedOutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// The import has stopped reading.
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.partner.app.dao;
+
+import java.util.List;
+
+import com.partner.app.model.Partner;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of PartnerDao, used by the reactive variant of the API. The errors are signalled with the
+ * same exceptions as PartnerDao: InternalErrorException, BadRequestError and PartnerNotFoundException.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+public interface ReactivePartnerDao {
+
+	/**
+	 * Gets a new ID for a partner.
+	 * @return New ID, or InternalErrorException.
+	 */
+	Mono<Long> getNewID();
+
+	/**
+	 * Insert a partner in the database.
+	 * @param partner Partner which is going to be added to the database.
+	 * @return The number 1, BadRequestError if the partner already exists, or InternalErrorException.
+	 */
+	Mono<Integer> insertPartner(Partner partner);
+
+	/**
+	 * Gets the partners of a window of the database.
+	 * @param from Offset in the resultset to paginate to.
+	 * @param size Window pagination size.
+	 * @return Partners ordered by ID, or InternalErrorException.
+	 */
+	Flux<Partner> selectAllPartners(int from, int size);
+
+	/**
+	 * Reads all the partners from the database, as fast as they are requested by the subscriber.
+	 * @return Partners ordered by ID, or InternalErrorException.
+	 */
+	Flux<Partner> streamAllPartners();
+
+	/**
+	 * Gets the partners which follow a given ID, seeking on the ID instead of skipping rows.
+	 * @param afterId ID of the last partner already read.
+	 * @param limit Maximum number of partners.
+	 * @return Partners ordered by ID, or InternalErrorException.
+	 */
+	Flux<Partner> selectPartnersAfter(long afterId, int limit);
+
+	/**
+	 * Gets the partner with the selected ID.
+	 * @param id ID of the partner.
+	 * @return Partner with the selected ID, PartnerNotFoundException if there is none, or InternalErrorException.
+	 */
+	Mono<Partner> selectPartner(long id);
+
+	/**
+	 * Removes a partner from the database.
+	 * @param id ID of the partner.
+	 * @return The number 1, PartnerNotFoundException if there is no partner with the ID, or InternalErrorException.
+	 */
+	Mono<Integer> deletePartner(long id);
+
+	/**
+	 * Updates the information of a partner.
+	 * @param partner New data of the partner.
+	 * @return The number 1, PartnerNotFoundException if there is no partner with the ID, or InternalErrorException.
+	 */
+	Mono<Integer> updatePartner(Partner partner);
+
+	/**
+	 * Inserts several partners in the database.
+	 * @param partners Partners which are going to be added to the database.
+	 * @return For every partner, 1 if it has been inserted, 0 if it already exists or Statement.EXECUTE_FAILED if
+	 * the insertion has failed.
+	 */
+	Mono<int[]> insertPartners(List<Partner> partners);
+
+	/**
+	 * Updates the information of several partners.
+	 * @param partners New data of the partners.
+	 * @return For every partner, 1 if it has been updated, 0 if there is no partner with its ID or
+	 * Statement.EXECUTE_FAILED if the update has failed.
+	 */
+	Mono<int[]> updatePartners(List<Partner> partners);
+
+	/**
+	 * Removes several partners from the database.
+	 * @param ids IDs of the partners.
+	 * @return For every ID, 1 if the partner has been removed, 0 if there is no partner with the ID or
+	 * Statement.EXECUTE_FAILED if the elimination has failed.
+	 */
+	Mono<int[]> deletePartners(List<Long> ids);
+}
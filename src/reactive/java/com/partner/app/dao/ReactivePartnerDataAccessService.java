@@ -0,0 +1,270 @@
+package com.partner.app.dao;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.model.Partner;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Implements the interface ReactivePartnerDao with R2DBC, with the same statements as PartnerDataAccessService.
+ * The rows are emitted as they are requested, so a slow client slows down the query instead of filling the memory.
+ * Every write bumps the version of the partner and records its change in PARTNER_CHANGE in the same transaction,
+ * as PartnerDataAccessService does, and the IDs come from the same PartnerIdAllocator. The bulk operations run
+ * their statements one after the other on one connection, each in its own transaction.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Profile("reactive")
+@Repository
+public class ReactivePartnerDataAccessService implements ReactivePartnerDao {
+
+	private static final String INSERT_QUERY = "INSERT INTO PARTNER (id, companyName, ref, locale, expires, version, lastModified) VALUES ($1, $2, $3, $4, $5, 1, $6)";
+
+	private static final String UPDATE_QUERY = "UPDATE PARTNER SET companyName=$1, ref=$2, locale=$3, expires=$4, version=version+1, lastModified=$5 WHERE id = $6";
+
+	private static final String DELETE_QUERY = "DELETE FROM PARTNER WHERE ID = $1";
+
+	private static final String LOCK_SEQ_QUERY = "SELECT seq FROM PARTNER_CHANGE_SEQ WHERE id = 1 FOR UPDATE";
+
+	private static final String UPDATE_SEQ_QUERY = "UPDATE PARTNER_CHANGE_SEQ SET seq = $1 WHERE id = 1";
+
+	private static final String CHANGE_QUERY = "INSERT INTO PARTNER_CHANGE (seq, type, id, companyName, ref, locale, expires, version, lastModified) SELECT $1, $2, id, companyName, ref, locale, expires, version, lastModified FROM PARTNER WHERE ID = $3";
+
+	private static final String DELETE_CHANGE_QUERY = "INSERT INTO PARTNER_CHANGE (seq, type, id, lastModified) VALUES ($1, 'DELETE', $2, $3)";
+
+	private final ConnectionFactory connectionFactory;
+
+	private final PartnerIdAllocator idAllocator;
+
+	/**
+	 * Constructor of the class ReactivePartnerDataAccessService.
+	 * @param connectionFactory Factory of the R2DBC connections.
+	 * @param idAllocator Allocator of the IDs, shared with the JDBC implementation. It only queries the database
+	 * once per block of IDs, on a worker thread.
+	 */
+	@Autowired
+	public ReactivePartnerDataAccessService(ConnectionFactory connectionFactory, PartnerIdAllocator idAllocator) {
+		this.connectionFactory = connectionFactory;
+		this.idAllocator = idAllocator;
+	}
+
+	@Override
+	public Mono<Long> getNewID() {
+		return Mono.fromCallable(idAllocator::nextId).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	@Override
+	public Mono<Integer> insertPartner(Partner partner) {
+		LocalDateTime now = LocalDateTime.now();
+		return reserve(partner.getId()).then(update(connection -> write(connection, INSERT_QUERY,
+				statement -> bindInsert(statement, partner, now), ChangeType.INSERT, partner.getId(), now)))
+				.onErrorMap(R2dbcDataIntegrityViolationException.class, e -> new BadRequestError("Partner already exists."))
+				.onErrorMap(R2dbcException.class, e -> new InternalErrorException(e.getMessage()))
+				.doOnNext(rows -> {
+					partner.setVersion(1);
+					partner.setLastModified(date(now));
+				});
+	}
+
+	@Override
+	public Flux<Partner> selectAllPartners(int from, int size) {
+		return query("SELECT * FROM PARTNER ORDER BY ID LIMIT $1 OFFSET $2",
+				statement -> statement.bind(0, size).bind(1, from), this::mapRow);
+	}
+
+	@Override
+	public Flux<Partner> streamAllPartners() {
+		return query("SELECT * FROM PARTNER ORDER BY ID", statement -> statement, this::mapRow);
+	}
+
+	@Override
+	public Flux<Partner> selectPartnersAfter(long afterId, int limit) {
+		return query("SELECT * FROM PARTNER WHERE ID > $1 ORDER BY ID LIMIT $2",
+				statement -> statement.bind(0, afterId).bind(1, limit), this::mapRow);
+	}
+
+	@Override
+	public Mono<Partner> selectPartner(long id) {
+		return query("SELECT * FROM PARTNER WHERE ID = $1", statement -> statement.bind(0, id), this::mapRow).next()
+				.switchIfEmpty(Mono.error(PartnerNotFoundException::new));
+	}
+
+	@Override
+	public Mono<Integer> deletePartner(long id) {
+		LocalDateTime now = LocalDateTime.now();
+		return found(update(connection -> write(connection, DELETE_QUERY, statement -> statement.bind(0, id),
+				ChangeType.DELETE, id, now)));
+	}
+
+	@Override
+	public Mono<Integer> updatePartner(Partner partner) {
+		LocalDateTime now = LocalDateTime.now();
+		return found(update(connection -> write(connection, UPDATE_QUERY,
+				statement -> bindUpdate(statement, partner, now), ChangeType.UPDATE, partner.getId(), now)));
+	}
+
+	@Override
+	public Mono<int[]> insertPartners(List<Partner> partners) {
+		LocalDateTime now = LocalDateTime.now();
+		return reserve(partners.stream().mapToLong(Partner::getId).max().orElse(0))
+				.then(updateEach(INSERT_QUERY, partners, ChangeType.INSERT, Partner::getId, now,
+						(statement, partner) -> bindInsert(statement, partner, now)));
+	}
+
+	@Override
+	public Mono<int[]> updatePartners(List<Partner> partners) {
+		LocalDateTime now = LocalDateTime.now();
+		return updateEach(UPDATE_QUERY, partners, ChangeType.UPDATE, Partner::getId, now,
+				(statement, partner) -> bindUpdate(statement, partner, now));
+	}
+
+	@Override
+	public Mono<int[]> deletePartners(List<Long> ids) {
+		LocalDateTime now = LocalDateTime.now();
+		return updateEach(DELETE_QUERY, ids, ChangeType.DELETE, Long::longValue, now,
+				(statement, id) -> statement.bind(0, id));
+	}
+
+	/**
+	 * Keeps the allocator from handing out an ID chosen by a client.
+	 */
+	private Mono<Void> reserve(long id) {
+		return Mono.fromCallable(() -> {
+			idAllocator.reserve(id);
+			return id;
+		}).subscribeOn(Schedulers.boundedElastic()).then();
+	}
+
+	private <T> Flux<T> query(String query, Function<Statement, Statement> binder,
+			BiFunction<Row, RowMetadata, T> mapper) {
+		return Flux.usingWhen(connectionFactory.create(),
+				connection -> Flux.from(binder.apply(connection.createStatement(query)).execute())
+						.concatMap(result -> result.map(mapper)),
+				Connection::close)
+				.onErrorMap(R2dbcException.class, e -> new InternalErrorException(e.getMessage()));
+	}
+
+	private Mono<Integer> update(Function<Connection, Mono<Integer>> work) {
+		return Mono.usingWhen(connectionFactory.create(), work, Connection::close);
+	}
+
+	/**
+	 * Executes a statement on a partner in a transaction, with the record of its change if it changes a row.
+	 * @return Number of rows changed.
+	 */
+	private static Mono<Integer> write(Connection connection, String query, Function<Statement, Statement> binder,
+			ChangeType type, long id, LocalDateTime now) {
+		return Mono.from(connection.beginTransaction())
+				.then(execute(connection, query, binder))
+				.flatMap(rows -> rows == 0 ? Mono.just(rows) : recordChange(connection, type, id, now).thenReturn(rows))
+				.flatMap(rows -> Mono.from(connection.commitTransaction()).thenReturn(rows))
+				.onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.error(e)));
+	}
+
+	/**
+	 * Records a change in PARTNER_CHANGE with the next sequence number, as PartnerDataAccessService does. The lock
+	 * on PARTNER_CHANGE_SEQ is kept until the end of the transaction, so the numbers are committed in order.
+	 */
+	private static Mono<Void> recordChange(Connection connection, ChangeType type, long id, LocalDateTime now) {
+		return Flux.from(connection.createStatement(LOCK_SEQ_QUERY).execute())
+				.concatMap(result -> result.map((row, metadata) -> row.get(0, Long.class))).next()
+				.flatMap(last -> {
+					long seq = last + 1;
+					Function<Statement, Statement> change = type == ChangeType.DELETE
+							? statement -> statement.bind(0, seq).bind(1, id).bind(2, now)
+							: statement -> statement.bind(0, seq).bind(1, type.name()).bind(2, id);
+					return execute(connection, type == ChangeType.DELETE ? DELETE_CHANGE_QUERY : CHANGE_QUERY, change)
+							.then(execute(connection, UPDATE_SEQ_QUERY, statement -> statement.bind(0, seq)));
+				}).then();
+	}
+
+	private static Mono<Integer> execute(Connection connection, String query,
+			Function<Statement, Statement> binder) {
+		return Flux.from(binder.apply(connection.createStatement(query)).execute())
+				.concatMap(result -> result.getRowsUpdated()).reduce(0, Integer::sum);
+	}
+
+	private static Mono<Integer> found(Mono<Integer> update) {
+		return update.onErrorMap(R2dbcException.class, e -> new InternalErrorException(e.getMessage()))
+				.flatMap(rows -> rows == 0 ? Mono.error(new PartnerNotFoundException()) : Mono.just(rows));
+	}
+
+	/**
+	 * Executes a statement for every item on one connection, each in its own transaction with its change, a failed
+	 * item does not stop the others.
+	 */
+	private <T> Mono<int[]> updateEach(String query, List<T> items, ChangeType type, ToLongFunction<T> id,
+			LocalDateTime now, BiFunction<Statement, T, Statement> binder) {
+		return Mono.usingWhen(connectionFactory.create(), connection -> Flux.fromIterable(items)
+				.concatMap(item -> write(connection, query, statement -> binder.apply(statement, item), type,
+						id.applyAsLong(item), now)
+						.onErrorResume(R2dbcDataIntegrityViolationException.class, e -> Mono.just(0))
+						.onErrorResume(R2dbcException.class, e -> Mono.just(java.sql.Statement.EXECUTE_FAILED)))
+				.collectList().map(rows -> rows.stream().mapToInt(Integer::intValue).toArray()),
+				Connection::close)
+				.onErrorMap(R2dbcException.class, e -> new InternalErrorException(e.getMessage()));
+	}
+
+	private static Statement bindInsert(Statement statement, Partner partner, LocalDateTime now) {
+		statement.bind(0, partner.getId());
+		return bindData(statement, 1, partner).bind(5, now);
+	}
+
+	private static Statement bindUpdate(Statement statement, Partner partner, LocalDateTime now) {
+		return bindData(statement, 0, partner).bind(4, now).bind(5, partner.getId());
+	}
+
+	/**
+	 * Binds the name, the reference, the locale and the expiration date from the index, stored as JDBC does.
+	 */
+	private static Statement bindData(Statement statement, int index, Partner partner) {
+		statement.bind(index, partner.getCompanyName()).bind(index + 1, partner.getRef())
+				.bind(index + 2, partner.getLocale().toLanguageTag());
+		if (partner.getExpires() == null)
+			return statement.bindNull(index + 3, LocalDate.class);
+		return statement.bind(index + 3, new java.sql.Date(partner.getExpires().getTime()).toLocalDate());
+	}
+
+	/**
+	 * Maps a row as PartnerRowMapper does.
+	 */
+	private Partner mapRow(Row row, RowMetadata metadata) {
+		LocalDate expires = row.get("EXPIRES", LocalDate.class);
+		Partner partner = new Partner(row.get("ID", Long.class), row.get("COMPANYNAME", String.class),
+				row.get("REF", String.class), new Locale(row.get("LOCALE", String.class)),
+				expires == null ? null : java.sql.Date.valueOf(expires));
+		partner.setVersion(row.get("VERSION", Long.class));
+		partner.setLastModified(date(row.get("LASTMODIFIED", LocalDateTime.class)));
+		return partner;
+	}
+
+	private static Date date(LocalDateTime time) {
+		return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+	}
+}
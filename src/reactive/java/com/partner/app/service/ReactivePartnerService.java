@@ -0,0 +1,201 @@
+package com.partner.app.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.partner.app.cache.PartnerInvalidations;
+import com.partner.app.dao.ReactivePartnerDao;
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.model.BulkItemOutcome;
+import com.partner.app.model.BulkItemOutcome.Outcome;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service layer of the reactive variant of the API, with the operations of PartnerService. The cache and the
+ * filter of IDs of PartnerService are not used, every read goes to the database, but the IDs of the partners
+ * written are sent on the invalidation bus as PartnerService does, so the servlet nodes on the same database
+ * forget them.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+@Profile("reactive")
+@Service
+public class ReactivePartnerService {
+
+	private final ReactivePartnerDao partnerDao;
+
+	private final Validator validator;
+
+	private final PartnerInvalidations partnerInvalidations;
+
+	/**
+	 * Constructor of the class ReactivePartnerService.
+	 * @param partnerDao Interface to interact with the database.
+	 * @param validator Validator of the partners received in bulk operations.
+	 * @param partnerInvalidations Sender of the IDs of the partners changed to the other nodes.
+	 */
+	@Autowired
+	public ReactivePartnerService(ReactivePartnerDao partnerDao, Validator validator,
+			PartnerInvalidations partnerInvalidations) {
+		this.partnerDao = partnerDao;
+		this.validator = validator;
+		this.partnerInvalidations = partnerInvalidations;
+	}
+
+	/**
+	 * Adds a partner to the database, with a new ID if it has none.
+	 * @param partner Partner which is going to be added.
+	 * @return Partner added, BadRequestError if it already exists, or InternalErrorException.
+	 */
+	public Mono<Partner> addPartner(Partner partner) {
+		Mono<Partner> identified = partner.getId() != 0 ? Mono.just(partner) : partnerDao.getNewID().map(id -> {
+			partner.setId(id);
+			return partner;
+		});
+		return identified.flatMap(partnerDao::insertPartner).doOnNext(rows -> changed(partner.getId()))
+				.thenReturn(partner);
+	}
+
+	/**
+	 * Gets the partners of a window of the database.
+	 * @param from Offset in the resultset to paginate to.
+	 * @param size Window pagination size.
+	 * @return Partners, or InternalErrorException.
+	 */
+	public Flux<Partner> getAllPartners(int from, int size) {
+		return partnerDao.selectAllPartners(from, size);
+	}
+
+	/**
+	 * Reads all the partners, as fast as they are requested.
+	 * @return Partners in the order of the IDs, or InternalErrorException.
+	 */
+	public Flux<Partner> exportPartners() {
+		return partnerDao.streamAllPartners();
+	}
+
+	/**
+	 * Gets a page of partners using a cursor, the cost of a page does not depend on its position.
+	 * @param cursor Cursor returned with the previous page, null for the first page.
+	 * @param limit Maximum number of partners in the page.
+	 * @return Page of partners with the cursor of the next one, BadRequestError if the cursor is not valid, or
+	 * InternalErrorException.
+	 */
+	public Mono<PartnerPage> getPartnersPage(String cursor, int limit) {
+		long after;
+		try {
+			after = cursor == null ? Long.MIN_VALUE : PartnerPage.decodeCursor(cursor);
+		} catch (BadRequestError e) {
+			return Mono.error(e);
+		}
+		return partnerDao.selectPartnersAfter(after, limit).collectList().map(partners -> {
+			String next = null;
+			if (limit > 0 && partners.size() == limit)
+				next = PartnerPage.encodeCursor(partners.get(partners.size() - 1).getId());
+			return new PartnerPage(partners, next);
+		});
+	}
+
+	/**
+	 * Gets the partner with the selected ID.
+	 * @param id ID of the partner.
+	 * @return Partner, PartnerNotFoundException if there is none, or InternalErrorException.
+	 */
+	public Mono<Partner> getPartner(long id) {
+		return partnerDao.selectPartner(id);
+	}
+
+	/**
+	 * Removes a partner from the database.
+	 * @param id ID of the partner.
+	 * @return Completion, PartnerNotFoundException if there is no partner with the ID, or InternalErrorException.
+	 */
+	public Mono<Void> deletePartner(long id) {
+		return partnerDao.deletePartner(id).doOnNext(rows -> changed(id)).then();
+	}
+
+	/**
+	 * Updates the information of a partner.
+	 * @param partner New data of the partner.
+	 * @return Partner updated, PartnerNotFoundException if there is no partner with its ID, or
+	 * InternalErrorException.
+	 */
+	public Mono<Partner> updatePartner(Partner partner) {
+		return partnerDao.updatePartner(partner).doOnNext(rows -> changed(partner.getId())).thenReturn(partner);
+	}
+
+	/**
+	 * Adds several partners to the database, partners without ID get a new one.
+	 * @param partners Partners which are going to be added.
+	 * @return Outcome of every partner, in the same order, or InternalErrorException.
+	 */
+	public Mono<List<BulkItemOutcome>> addPartners(List<Partner> partners) {
+		BulkItemOutcome[] results = new BulkItemOutcome[partners.size()];
+		List<Partner> valid = BulkResults.validate(validator, partners, results);
+		return Flux.fromIterable(valid).concatMap(partner -> partner.getId() != 0 ? Mono.just(partner)
+				: partnerDao.getNewID().map(id -> {
+					partner.setId(id);
+					return partner;
+				})).then(partnerDao.insertPartners(valid)).map(rows -> {
+					BulkResults.fill(valid, rows, results, Outcome.EXISTS);
+					return changed(Arrays.asList(results));
+				});
+	}
+
+	/**
+	 * Updates the information of several partners.
+	 * @param partners New data of the partners.
+	 * @return Outcome of every partner, in the same order, or InternalErrorException.
+	 */
+	public Mono<List<BulkItemOutcome>> updatePartners(List<Partner> partners) {
+		BulkItemOutcome[] results = new BulkItemOutcome[partners.size()];
+		List<Partner> valid = BulkResults.validate(validator, partners, results);
+		return partnerDao.updatePartners(valid).map(rows -> {
+			BulkResults.fill(valid, rows, results, Outcome.NOT_FOUND);
+			return changed(Arrays.asList(results));
+		});
+	}
+
+	/**
+	 * Removes several partners from the database.
+	 * @param ids IDs of the partners.
+	 * @return Outcome of every ID, in the same order, or InternalErrorException.
+	 */
+	public Mono<List<BulkItemOutcome>> deletePartners(List<Long> ids) {
+		return partnerDao.deletePartners(ids).map(rows -> {
+			List<BulkItemOutcome> results = new ArrayList<>(ids.size());
+			for (int i = 0; i < ids.size(); i++) {
+				results.add(BulkResults.result(ids.get(i), rows[i], Outcome.NOT_FOUND));
+			}
+			return changed(results);
+		});
+	}
+
+	private void changed(long id) {
+		partnerInvalidations.publish(Collections.singletonList(id));
+	}
+
+	/**
+	 * Sends the IDs of the partners changed by a bulk operation.
+	 * @return Outcomes of the operation.
+	 */
+	private List<BulkItemOutcome> changed(List<BulkItemOutcome> outcomes) {
+		partnerInvalidations.publish(outcomes.stream().filter(outcome -> outcome.getOutcome() == Outcome.DONE)
+				.map(BulkItemOutcome::getId).collect(Collectors.toList()));
+		return outcomes;
+	}
+}
@@ -0,0 +1,181 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.app.controller.PartnerController;
+import com.partner.app.controller.ReactivePartnerController;
+import com.partner.app.model.BulkItemResult;
+import com.partner.app.model.ImportReport;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties =
+		"spring.datasource.url=jdbc:h2:mem:reactivedb;QUERY_CACHE_SIZE=64")
+@ActiveProfiles("reactive")
+class ReactiveApiTest extends ApiTestBase {
+
+	private static final long FIRST_ID = REACTIVE_IDS;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	ReactiveApiTest() {
+		super(FIRST_ID);
+	}
+
+	/**
+	 * Without the servlet stack there are no HttpMessageConverters, so the client has to be given the mapper of the
+	 * application to write the partners as the clients of the API do.
+	 */
+	@BeforeEach
+	public void useApplicationMapper() {
+		restTemplate.getRestTemplate().getMessageConverters().stream()
+				.filter(MappingJackson2HttpMessageConverter.class::isInstance)
+				.forEach(converter -> ((MappingJackson2HttpMessageConverter) converter).setObjectMapper(objectMapper));
+	}
+
+	/**
+	 * The reactive controller replaces the servlet one.
+	 */
+	@Test
+	public void testProfile() {
+		assertThat(context.getBeansOfType(ReactivePartnerController.class)).hasSize(1);
+		assertThat(context.getBeansOfType(PartnerController.class)).isEmpty();
+	}
+
+	/**
+	 * The writes bump the version and record their changes in PARTNER_CHANGE, in the order of the sequence, as the
+	 * writes of the servlet variant do.
+	 */
+	@Test
+	public void testChangesRecorded() {
+		long id = FIRST_ID + 50;
+		Partner partner = new Partner(id, "Changed", "ref", Locale.ENGLISH, null);
+		restTemplate.postForObject(url(""), partner, Partner.class);
+		restTemplate.put(url("" + id), partner);
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT version FROM PARTNER WHERE id = ?", Long.class, id));
+		restTemplate.exchange(url("_bulk"), HttpMethod.DELETE, new HttpEntity<>(Arrays.asList(id)),
+				BulkItemResult[].class);
+
+		List<String> types = jdbcTemplate.queryForList("SELECT type FROM PARTNER_CHANGE WHERE id = ? ORDER BY seq",
+				String.class, id);
+		assertThat(types).containsExactly("INSERT", "UPDATE", "DELETE");
+		assertEquals(jdbcTemplate.queryForObject("SELECT MAX(seq) FROM PARTNER_CHANGE", Long.class),
+				jdbcTemplate.queryForObject("SELECT seq FROM PARTNER_CHANGE_SEQ", Long.class));
+	}
+
+	/**
+	 * A partner is created, read, updated and removed with the same statuses as the servlet API.
+	 */
+	@Test
+	public void testSinglePartner() {
+		Partner partner = new Partner(FIRST_ID, "Reactive", "ref", Locale.ENGLISH, new Date());
+		ResponseEntity<Partner> created = restTemplate.postForEntity(url(""), partner, Partner.class);
+		assertEquals(HttpStatus.CREATED, created.getStatusCode());
+		assertThat(created.getHeaders().getLocation().toString()).endsWith("/api/partners/" + FIRST_ID);
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity(url(""), partner, String.class).getStatusCode());
+
+		assertEquals("Reactive", restTemplate.getForObject(url("" + FIRST_ID), Partner.class).getCompanyName());
+		partner.setCompanyName("Updated");
+		ResponseEntity<Partner> updated = restTemplate.exchange(url("" + FIRST_ID), HttpMethod.PUT,
+				new HttpEntity<>(partner), Partner.class);
+		assertEquals(HttpStatus.OK, updated.getStatusCode());
+		assertEquals("Updated", restTemplate.getForObject(url("" + FIRST_ID), Partner.class).getCompanyName());
+
+		ResponseEntity<Void> deleted = restTemplate.exchange(url("" + FIRST_ID), HttpMethod.DELETE, null, Void.class);
+		assertEquals(HttpStatus.OK, deleted.getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url("" + FIRST_ID), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange(url("" + FIRST_ID), HttpMethod.DELETE, null,
+				String.class).getStatusCode());
+	}
+
+	/**
+	 * A partner without ID gets one from the sequence, and invalid partners and parameters are rejected.
+	 */
+	@Test
+	public void testNewIdAndValidation() {
+		Partner partner = restTemplate.postForObject(url(""), new Partner(0, "New", "ref", Locale.ENGLISH, null),
+				Partner.class);
+		assertThat(partner.getId()).isPositive();
+		restTemplate.delete(url("" + partner.getId()));
+
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity(url(""),
+				new Partner(FIRST_ID, " ", "ref", Locale.ENGLISH, null), String.class).getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("a/5"), String.class).getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("?limit=5&after=x"), String.class)
+				.getStatusCode());
+	}
+
+	/**
+	 * Partners are added in bulk, paged with the cursor, exported and removed in bulk.
+	 */
+	@Test
+	public void testListings() {
+		List<Partner> partners = new ArrayList<>();
+		for (long id = FIRST_ID; id < FIRST_ID + 20; id++) {
+			partners.add(new Partner(id, "Bulk" + id, "ref", Locale.ENGLISH, null));
+		}
+		partners.add(new Partner(FIRST_ID + 100, "", "ref", Locale.ENGLISH, null));
+		BulkItemResult[] added = restTemplate.postForObject(url("_bulk"), partners, BulkItemResult[].class);
+		assertThat(added).extracting(BulkItemResult::getStatus).containsOnly(201, 400);
+		assertEquals(400, added[20].getStatus());
+
+		PartnerPage page = restTemplate.getForObject(url("?limit=5&after=" + PartnerPage.encodeCursor(FIRST_ID + 4)),
+				PartnerPage.class);
+		assertThat(page.getPartners()).extracting(Partner::getId).containsExactly(FIRST_ID + 5, FIRST_ID + 6,
+				FIRST_ID + 7, FIRST_ID + 8, FIRST_ID + 9);
+		assertEquals(PartnerPage.encodeCursor(FIRST_ID + 9), page.getNext());
+		assertThat(restTemplate.getForObject(url("0/3"), Partner[].class)).hasSize(3);
+
+		String export = restTemplate.getForObject(url("_export"), String.class);
+		assertThat(export.split("\n")).hasSizeGreaterThanOrEqualTo(20).anyMatch(line -> line.contains("Bulk" + FIRST_ID));
+
+		ResponseEntity<BulkItemResult[]> deleted = restTemplate.exchange(url("_bulk"), HttpMethod.DELETE,
+				new HttpEntity<>(Arrays.asList(FIRST_ID, FIRST_ID + 100)), BulkItemResult[].class);
+		assertThat(deleted.getBody()).extracting(BulkItemResult::getStatus).containsExactly(200, 404);
+	}
+
+	/**
+	 * A body of newline delimited JSON is imported.
+	 */
+	@Test
+	public void testImport() {
+		String body = "{\"id\":" + (FIRST_ID + 1) + ",\"name\":\"Import1\",\"reference\":\"ref\",\"locale\":\"en_GB\"}\n"
+				+ "{\"id\":" + (FIRST_ID + 2) + ",\"name\":\"Import2\",\"reference\":\"ref\",\"locale\":\"en_GB\"}\n";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+		ImportReport report = restTemplate.postForObject(url("_import"), new HttpEntity<>(body, headers),
+				ImportReport.class);
+		assertEquals(2, report.getImported());
+		assertEquals("Import2", restTemplate.getForObject(url("" + (FIRST_ID + 2)), Partner.class).getCompanyName());
+	}
+}
@@ -0,0 +1,109 @@
+package com.partner.app.test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.model.Partner;
+import com.partner.app.service.PartnerService;
+
+/**
+ * Fixture of the tests of the API. They share the application and its H2 database, so every test class works on its
+ * own range of IDs, allocated here, whose partners are removed after every test. They are removed through
+ * PartnerService, so the cache, the ID filter and the indexes forget them too.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+abstract class ApiTestBase {
+
+	/**
+	 * Number of IDs of every range.
+	 */
+	static final long RANGE = 1_000_000;
+
+	static final long PAGINATION_IDS = 1_000_000;
+	static final long BULK_IDS = 2_000_000;
+	static final long EXPORT_IMPORT_IDS = 3_000_000;
+	static final long CACHE_IDS = 4_000_000;
+	static final long ID_FILTER_IDS = 5_000_000;
+	static final long LOAD_TEST_IDS = 6_000_000;
+	static final long METRICS_IDS = 7_000_000;
+	static final long REACTIVE_IDS = 8_000_000;
+	static final long CONDITIONAL_REQUEST_IDS = 9_000_000;
+	static final long WIRE_FORMAT_IDS = 10_000_000;
+	static final long SEARCH_IDS = 11_000_000;
+	static final long FUZZY_SEARCH_IDS = 12_000_000;
+	static final long EXPIRY_IDS = 13_000_000;
+	static final long CHANGE_FEED_IDS = 14_000_000;
+	static final long INVALIDATION_IDS = 15_000_000;
+
+	@LocalServerPort
+	protected int port;
+
+	@Autowired
+	protected TestRestTemplate restTemplate;
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PartnerDao partnerDao;
+
+	@Autowired
+	private PartnerService partnerService;
+
+	private final long firstId;
+
+	/**
+	 * Constructor of the class ApiTestBase.
+	 * @param firstId First ID of the range of the test class.
+	 */
+	protected ApiTestBase(long firstId) {
+		this.firstId = firstId;
+	}
+
+	/**
+	 * Removes the partners of the range left by the test, after the cleanup of the test class.
+	 * @throws InternalErrorException Error with the database.
+	 */
+	@AfterEach
+	public void removeRange() throws InternalErrorException {
+		long after = firstId - 1;
+		for (;;) {
+			List<Long> ids = partnerDao.selectPartnersAfter(after, 1000, null).stream().map(Partner::getId)
+					.filter(id -> id < firstId + RANGE).collect(Collectors.toList());
+			if (ids.isEmpty())
+				return;
+			partnerService.deletePartners(ids);
+			after = ids.get(ids.size() - 1);
+		}
+	}
+
+	/**
+	 * @param path Path under api/partners/, for instance "_bulk" or an ID.
+	 * @return URL of the path in this application.
+	 */
+	protected String url(String path) {
+		return url(port, path);
+	}
+
+	static String url(int port, String path) {
+		return "http://localhost:" + port + "/api/partners/" + path;
+	}
+
+	/**
+	 * @return Partner with the locale en-GB which expires on 2030-01-01.
+	 */
+	static Partner partner(long id, String name, String ref) {
+		return new Partner(id, name, ref, Locale.forLanguageTag("en-GB"), java.sql.Date.valueOf("2030-01-01"));
+	}
+}
@@ -0,0 +1,181 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.model.BulkItemResult;
+import com.partner.app.model.Partner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class BulkTest extends ApiTestBase {
+
+	private static final long FIRST_ID = BULK_IDS;
+
+	BulkTest() {
+		super(FIRST_ID);
+	}
+
+	/**
+	 * Posts more partners than one chunk, with a duplicated and an invalid partner in the middle, only those two
+	 * must fail.
+	 */
+	@Test
+	public void testBulkInsert() {
+		List<Partner> partners = partners(1_200);
+		partners.set(700, new Partner(1, "Duplicated", "ref", Locale.ENGLISH, new Date()));
+		partners.set(701, new Partner(FIRST_ID + 701, " ", "ref", Locale.ENGLISH, new Date()));
+		long since = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM PARTNER_CHANGE", Long.class);
+
+		List<BulkItemResult> results = exchange(HttpMethod.POST, partners);
+		assertEquals(1_200, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			int expected = i == 700 || i == 701 ? 400 : 201;
+			assertEquals(expected, results.get(i).getStatus(), "item " + i);
+			assertEquals(partners.get(i).getId(), results.get(i).getId());
+		}
+		assertThat(results.get(701).getError()).contains("companyName");
+		assertEquals(1_198, count());
+		assertEquals(1_198, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTNER_CHANGE WHERE seq > ?",
+				Integer.class, since));
+	}
+
+	/**
+	 * A chunk which cannot be committed fails alone: the chunks committed before it are reported, and read back
+	 * updated instead of from the cache.
+	 */
+	@Test
+	public void testFailedChunk() {
+		List<Partner> partners = partners(1_000);
+		exchange(HttpMethod.POST, partners);
+		assertEquals("Bulk0", restTemplate.getForObject(url(Long.toString(FIRST_ID)), Partner.class)
+				.getCompanyName());
+		List<Partner> updated = new ArrayList<>();
+		for (Partner partner : partners) {
+			updated.add(new Partner(partner.getId(), "Updated", "ref", Locale.ENGLISH, new Date()));
+		}
+
+		FailingChangeTrigger.failingId = FIRST_ID + 700;
+		jdbcTemplate.execute("CREATE TRIGGER FAILING_CHANGE BEFORE INSERT ON PARTNER_CHANGE FOR EACH ROW CALL \""
+				+ FailingChangeTrigger.class.getName() + "\"");
+		List<BulkItemResult> results;
+		try {
+			results = exchange(HttpMethod.PUT, updated);
+		} finally {
+			jdbcTemplate.execute("DROP TRIGGER FAILING_CHANGE");
+		}
+		assertThat(results.subList(0, 500)).extracting(BulkItemResult::getStatus).containsOnly(200);
+		assertThat(results.subList(500, 1_000)).extracting(BulkItemResult::getStatus).containsOnly(500);
+		assertEquals("Updated", restTemplate.getForObject(url(Long.toString(FIRST_ID)), Partner.class)
+				.getCompanyName());
+		assertEquals("Bulk500", restTemplate.getForObject(url(Long.toString(FIRST_ID + 500)), Partner.class)
+				.getCompanyName());
+	}
+
+	/**
+	 * A partner without locale fails alone, in insertions and updates.
+	 */
+	@Test
+	public void testBulkWithoutLocale() {
+		List<Partner> partners = partners(3);
+		List<Partner> withoutLocale = new ArrayList<>(partners);
+		withoutLocale.set(1, new Partner(FIRST_ID + 1, "Bulk1", "ref1", null, new Date()));
+		assertThat(exchange(HttpMethod.POST, withoutLocale)).extracting(BulkItemResult::getStatus)
+				.containsExactly(201, 400, 201);
+
+		exchange(HttpMethod.POST, partners.subList(1, 2));
+		partners.set(2, new Partner(FIRST_ID + 2, "Bulk2", "ref2", null, new Date()));
+		List<BulkItemResult> results = exchange(HttpMethod.PUT, partners);
+		assertThat(results).extracting(BulkItemResult::getStatus).containsExactly(200, 200, 400);
+		assertThat(results.get(2).getError()).contains("locale");
+	}
+
+	/**
+	 * Partners without ID get a new one.
+	 */
+	@Test
+	public void testBulkInsertAssignsIds() {
+		List<Partner> partners = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			partners.add(new Partner(0, "Without ID", "ref", Locale.ENGLISH, new Date()));
+		}
+		List<BulkItemResult> results = exchange(HttpMethod.POST, partners);
+		assertThat(results).extracting(BulkItemResult::getStatus).containsOnly(201);
+		assertThat(results).extracting(BulkItemResult::getId).doesNotContain(0L).doesNotHaveDuplicates();
+		for (BulkItemResult result : results) {
+			restTemplate.delete(url(String.valueOf(result.getId())));
+		}
+	}
+
+	/**
+	 * Updates existing and missing partners, the missing ones get a 404 status.
+	 */
+	@Test
+	public void testBulkUpdate() {
+		List<Partner> partners = partners(10);
+		exchange(HttpMethod.POST, partners);
+		for (Partner partner : partners) {
+			partner.setCompanyName("Updated");
+		}
+		partners.add(new Partner(FIRST_ID + 999_999, "Missing", "ref", Locale.ENGLISH, new Date()));
+
+		List<BulkItemResult> results = exchange(HttpMethod.PUT, partners);
+		assertThat(results.subList(0, 10)).extracting(BulkItemResult::getStatus).containsOnly(200);
+		assertEquals(404, results.get(10).getStatus());
+		assertEquals(10, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER WHERE ID >= ? AND companyName = 'Updated'", Integer.class, FIRST_ID));
+	}
+
+	/**
+	 * Removes existing and missing partners, the missing ones get a 404 status.
+	 */
+	@Test
+	public void testBulkDelete() {
+		exchange(HttpMethod.POST, partners(10));
+		List<Long> ids = Arrays.asList(FIRST_ID, FIRST_ID + 5, FIRST_ID + 999_999);
+
+		HttpEntity<List<Long>> request = new HttpEntity<>(ids);
+		ResponseEntity<BulkItemResult[]> response = restTemplate.exchange(url("_bulk"), HttpMethod.DELETE, request,
+				BulkItemResult[].class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getBody()).extracting(BulkItemResult::getStatus).containsExactly(200, 200, 404);
+		assertEquals(8, count());
+	}
+
+	private List<BulkItemResult> exchange(HttpMethod method, List<Partner> partners) {
+		HttpEntity<List<Partner>> request = new HttpEntity<>(partners);
+		ResponseEntity<BulkItemResult[]> response = restTemplate.exchange(url("_bulk"), method, request,
+				BulkItemResult[].class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return Arrays.asList(response.getBody());
+	}
+
+	private List<Partner> partners(int count) {
+		List<Partner> partners = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			partners.add(new Partner(FIRST_ID + i, "Bulk" + i, "ref" + i, Locale.ENGLISH, new Date()));
+		}
+		return partners;
+	}
+
+	private int count() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTNER WHERE ID >= ? AND ID < ?", Integer.class,
+				FIRST_ID, FIRST_ID + RANGE);
+	}
+}
@@ -0,0 +1,131 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.cache.PartnerCache;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.model.Partner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class CacheTest extends ApiTestBase {
+
+	private static final long ID = CACHE_IDS;
+
+	CacheTest() {
+		super(ID);
+	}
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private PartnerCache partnerCache;
+
+	@AfterEach
+	public void removePartner() {
+		restTemplate.delete(url());
+	}
+
+	/**
+	 * The second read of a partner is served by the cache, even if the row has been changed behind its back.
+	 */
+	@Test
+	public void testReadThrough() {
+		post("Cached");
+		double hits = hits();
+		assertEquals("Cached", get().getCompanyName());
+		jdbcTemplate.update("UPDATE PARTNER SET companyName = 'Changed' WHERE ID = ?", ID);
+		assertEquals("Cached", get().getCompanyName());
+		assertThat(hits()).isGreaterThan(hits);
+	}
+
+	/**
+	 * Updates and deletions through the API are seen by the next read.
+	 */
+	@Test
+	public void testWritesInvalidate() {
+		post("Cached");
+		get();
+		Partner partner = new Partner(ID, "Updated", "ref", Locale.ENGLISH, new Date());
+		restTemplate.put(url(), partner);
+		assertEquals("Updated", get().getCompanyName());
+
+		restTemplate.delete(url());
+		ResponseEntity<String> response = restTemplate.getForEntity(url(), String.class);
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+	}
+
+	/**
+	 * A version older than the one cached, written out of order, does not replace it, and the partners handed out
+	 * by the cache can be changed without changing it.
+	 * @throws Exception Error reading the cache.
+	 */
+	@Test
+	public void testNewerVersionWins() throws Exception {
+		Partner newer = new Partner(ID + 1, "Newer", "ref", Locale.ENGLISH, null);
+		newer.setVersion(2);
+		Partner older = new Partner(ID + 1, "Older", "ref", Locale.ENGLISH, null);
+		older.setVersion(1);
+		try {
+			partnerCache.put(newer);
+			partnerCache.put(older);
+			newer.setCompanyName("Changed by the writer");
+			Partner cached = partnerCache.get(ID + 1, id -> {
+				throw new PartnerNotFoundException();
+			});
+			assertEquals("Newer", cached.getCompanyName());
+			cached.setCompanyName("Changed by the reader");
+			assertEquals("Newer", partnerCache.getIfPresent(ID + 1).getCompanyName());
+		} finally {
+			partnerCache.invalidate(ID + 1);
+		}
+	}
+
+	/**
+	 * The counters of the cache are published by the actuator.
+	 */
+	@Test
+	public void testMetricsEndpoint() {
+		ResponseEntity<String> response = restTemplate.getForEntity(
+				"http://localhost:" + port + "/actuator/metrics/cache.gets?tag=cache:partners", String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getBody()).contains("\"result\"");
+	}
+
+	private double hits() {
+		return registry.get("cache.gets").tag("cache", "partners").tag("result", "hit").functionCounter().count();
+	}
+
+	private void post(String name) {
+		Partner partner = new Partner(ID, name, "ref", Locale.ENGLISH, new Date());
+		ResponseEntity<Partner> response = restTemplate.postForEntity(url(""), partner, Partner.class);
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+	}
+
+	private Partner get() {
+		ResponseEntity<Partner> response = restTemplate.getForEntity(url(), Partner.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return response.getBody();
+	}
+
+	private String url() {
+		return url(Long.toString(ID));
+	}
+}
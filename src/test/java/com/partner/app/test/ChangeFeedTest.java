@@ -0,0 +1,198 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.dao.ChangeType;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChange;
+import com.partner.app.model.PartnerChanges;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "partner.changes.max-wait=5s")
+class ChangeFeedTest extends ApiTestBase {
+
+	private static final long FIRST_ID = CHANGE_FEED_IDS;
+
+	/**
+	 * Sequence number of the last change made before the test.
+	 */
+	private long head;
+
+	ChangeFeedTest() {
+		super(FIRST_ID);
+	}
+
+	@BeforeEach
+	public void readHead() {
+		PartnerChanges changes;
+		do {
+			changes = changes(head, 0);
+			head = changes.getNext();
+		} while (!changes.getChanges().isEmpty());
+	}
+
+	@AfterEach
+	public void removePartners() {
+		restTemplate.exchange(url("_bulk"), HttpMethod.DELETE,
+				new HttpEntity<>(Arrays.asList(FIRST_ID, FIRST_ID + 1, FIRST_ID + 2)), String.class);
+	}
+
+	/**
+	 * An insertion, an update and an elimination are read in order, with the partner after every change.
+	 */
+	@Test
+	public void testChanges() {
+		restTemplate.postForEntity(url(""), partner(FIRST_ID, "Created"), String.class);
+		restTemplate.put(url(String.valueOf(FIRST_ID)), partner(FIRST_ID, "Updated"));
+		restTemplate.delete(url(String.valueOf(FIRST_ID)));
+
+		PartnerChanges changes = changes(head, 0);
+		List<PartnerChange> list = changes.getChanges();
+		assertEquals(Arrays.asList(ChangeType.INSERT, ChangeType.UPDATE, ChangeType.DELETE),
+				list.stream().map(PartnerChange::getType).collect(Collectors.toList()));
+		assertThat(list).extracting(PartnerChange::getId).containsOnly(FIRST_ID);
+		assertEquals("Created", list.get(0).getPartner().getCompanyName());
+		assertEquals("Updated", list.get(1).getPartner().getCompanyName());
+		assertNull(list.get(2).getPartner());
+		assertThat(list.get(0).getSeq()).isGreaterThan(head).isLessThan(list.get(1).getSeq());
+		assertEquals(list.get(2).getSeq(), changes.getNext());
+
+		assertEquals(2, changes(head, 0, 2).getChanges().size());
+		assertThat(changes(changes.getNext(), 0).getChanges()).isEmpty();
+	}
+
+	/**
+	 * The partners changed in bulk are recorded, the partners which could not be inserted are not.
+	 */
+	@Test
+	public void testBulkChanges() {
+		restTemplate.postForEntity(url(""), partner(FIRST_ID, "Created"), String.class);
+		restTemplate.exchange(url("_bulk"), HttpMethod.POST, new HttpEntity<>(Arrays.asList(
+				partner(FIRST_ID, "Duplicated"), partner(FIRST_ID + 1, "Bulk1"), partner(FIRST_ID + 2, "Bulk2"))),
+				String.class);
+		List<PartnerChange> list = changes(head, 0).getChanges();
+		assertThat(list).extracting(PartnerChange::getId).containsExactly(FIRST_ID, FIRST_ID + 1, FIRST_ID + 2);
+		assertThat(list).extracting(change -> change.getPartner().getCompanyName())
+				.containsExactly("Created", "Bulk1", "Bulk2");
+	}
+
+	/**
+	 * A consumer which has read every change waits for the next one, and gets nothing when its time is over.
+	 * @throws Exception The waiting request failed.
+	 */
+	@Test
+	public void testLongPoll() throws Exception {
+		CompletableFuture<PartnerChanges> waiting = CompletableFuture.supplyAsync(() -> changes(head, 20));
+		Thread.sleep(500);
+		assertThat(waiting).isNotDone();
+		long started = System.nanoTime();
+		restTemplate.postForEntity(url(""), partner(FIRST_ID, "Awaited"), String.class);
+		PartnerChanges changes = waiting.get(10, TimeUnit.SECONDS);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5_000);
+		assertEquals("Awaited", changes.getChanges().get(0).getPartner().getCompanyName());
+
+		PartnerChanges none = changes(changes.getNext(), 1);
+		assertThat(none.getChanges()).isEmpty();
+		assertEquals(changes.getNext(), none.getNext());
+	}
+
+	/**
+	 * A consumer reading while several writers commit concurrently does not skip any of their changes.
+	 * @throws Exception A writer failed.
+	 */
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		for (long id = FIRST_ID; id < FIRST_ID + 3; id++) {
+			restTemplate.postForEntity(url(""), partner(id, "Created"), String.class);
+		}
+		ExecutorService writers = Executors.newFixedThreadPool(3);
+		List<Future<?>> results = new ArrayList<>();
+		for (long id = FIRST_ID; id < FIRST_ID + 3; id++) {
+			long written = id;
+			results.add(writers.submit(() -> {
+				for (int i = 0; i < 20; i++) {
+					restTemplate.put(url(String.valueOf(written)), partner(written, "Updated " + i));
+				}
+			}));
+		}
+		List<PartnerChange> read = new ArrayList<>();
+		long since = head;
+		while (results.stream().anyMatch(result -> !result.isDone())) {
+			PartnerChanges changes = changes(since, 0);
+			read.addAll(changes.getChanges());
+			since = changes.getNext();
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		writers.shutdown();
+		read.addAll(changes(since, 0).getChanges());
+
+		assertThat(read).filteredOn(change -> change.getId() >= FIRST_ID && change.getId() < FIRST_ID + 3)
+				.hasSize(3 + 3 * 20);
+		assertThat(read).extracting(PartnerChange::getSeq).isSorted().doesNotHaveDuplicates();
+	}
+
+	/**
+	 * A wait longer than the maximum, or no wait at all, waits the maximum when it is shorter than the default.
+	 */
+	@Test
+	public void testMaxWait() {
+		for (String query : Arrays.asList("&wait=3600", "")) {
+			long started = System.nanoTime();
+			ResponseEntity<PartnerChanges> response = restTemplate.getForEntity(
+					url("_changes?since=" + head + query), PartnerChanges.class);
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+			assertThat(response.getBody().getChanges()).isEmpty();
+			assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started)).isBetween(4L, 20L);
+		}
+	}
+
+	/**
+	 * A negative sequence number is rejected.
+	 */
+	@Test
+	public void testBadRequest() {
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("_changes?since=-1"), String.class)
+				.getStatusCode());
+	}
+
+	private PartnerChanges changes(long since, int wait) {
+		return changes(since, wait, 1000);
+	}
+
+	private PartnerChanges changes(long since, int wait, int limit) {
+		ResponseEntity<PartnerChanges> response = restTemplate.getForEntity(
+				url("_changes?since=" + since + "&wait=" + wait + "&limit=" + limit), PartnerChanges.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return response.getBody();
+	}
+
+	private static Partner partner(long id, String name) {
+		return partner(id, name, "changeref");
+	}
+}
@@ -0,0 +1,181 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ConditionalRequestTest extends ApiTestBase {
+
+	private static final long ID = CONDITIONAL_REQUEST_IDS;
+
+	ConditionalRequestTest() {
+		super(ID);
+	}
+
+	@AfterEach
+	public void removePartner() {
+		restTemplate.delete(url());
+	}
+
+	/**
+	 * A partner is sent with its version, and a client which has that version gets a 304 without a body.
+	 */
+	@Test
+	public void testIfNoneMatch() {
+		String first = post().getHeaders().getETag();
+		assertThat(first).startsWith("\"1-");
+		ResponseEntity<String> response = get(HttpHeaders.IF_NONE_MATCH, first);
+		assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+		assertNull(response.getBody());
+		assertEquals(first, response.getHeaders().getETag());
+
+		put(null);
+		response = get(HttpHeaders.IF_NONE_MATCH, first);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getHeaders().getETag()).startsWith("\"2-");
+		assertThat(response.getBody()).contains("Updated").doesNotContain("version");
+	}
+
+	/**
+	 * A partner removed and added again starts over from the first version, but with another ETag, so the tags of
+	 * the partner removed do not match it.
+	 * @throws Exception Error waiting.
+	 */
+	@Test
+	public void testAddedAgain() throws Exception {
+		String removed = post().getHeaders().getETag();
+		restTemplate.delete(url());
+		Thread.sleep(5);
+		String added = post().getHeaders().getETag();
+		assertThat(added).startsWith("\"1-").isNotEqualTo(removed);
+		assertEquals(HttpStatus.OK, get(HttpHeaders.IF_NONE_MATCH, removed).getStatusCode());
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put(removed).getStatusCode());
+		assertEquals(HttpStatus.OK, put(added).getStatusCode());
+	}
+
+	/**
+	 * A client which has read the partner after its last change gets a 304.
+	 */
+	@Test
+	public void testIfModifiedSince() {
+		post();
+		ResponseEntity<String> response = get(null, null);
+		long lastModified = response.getHeaders().getLastModified();
+		assertThat(lastModified).isPositive();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfModifiedSince(lastModified);
+		assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(url(), HttpMethod.GET, new HttpEntity<>(headers),
+				String.class).getStatusCode());
+		headers.setIfModifiedSince(lastModified - 60_000);
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url(), HttpMethod.GET, new HttpEntity<>(headers),
+				String.class).getStatusCode());
+	}
+
+	/**
+	 * An update with the version read succeeds, an update with an older version gets a 412 and changes nothing.
+	 */
+	@Test
+	public void testIfMatch() {
+		String first = post().getHeaders().getETag();
+		ResponseEntity<Partner> updated = put(first);
+		assertEquals(HttpStatus.OK, updated.getStatusCode());
+		String second = updated.getHeaders().getETag();
+		assertThat(second).startsWith("\"2-");
+
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put(first).getStatusCode());
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put("W/" + second).getStatusCode());
+		assertEquals(HttpStatus.PRECONDITION_FAILED, put("\"2\"").getStatusCode());
+		assertEquals(second, get(null, null).getHeaders().getETag());
+		assertEquals(HttpStatus.OK, put("*").getStatusCode());
+		assertThat(get(null, null).getHeaders().getETag()).startsWith("\"3-");
+	}
+
+	/**
+	 * A page of partners gets a 304 until one of its partners changes.
+	 */
+	@Test
+	public void testPage() {
+		post();
+		String page = url("?after=" + PartnerPage.encodeCursor(ID - 1) + "&limit=5");
+		ResponseEntity<String> response = restTemplate.getForEntity(page, String.class);
+		String etag = response.getHeaders().getETag();
+		assertThat(etag).isNotNull();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(etag);
+		assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(page, HttpMethod.GET, new HttpEntity<>(headers),
+				String.class).getStatusCode());
+		put(null);
+		assertEquals(HttpStatus.OK, restTemplate.exchange(page, HttpMethod.GET, new HttpEntity<>(headers),
+				String.class).getStatusCode());
+	}
+
+	/**
+	 * A page whose partner is removed and added again gets another ETag, though the partner starts over from the
+	 * first version.
+	 * @throws Exception Error waiting.
+	 */
+	@Test
+	public void testPageAddedAgain() throws Exception {
+		post();
+		String page = url("?after=" + PartnerPage.encodeCursor(ID - 1) + "&limit=5");
+		String etag = restTemplate.getForEntity(page, String.class).getHeaders().getETag();
+		restTemplate.delete(url());
+		Thread.sleep(5);
+		post();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(etag);
+		ResponseEntity<String> response = restTemplate.exchange(page, HttpMethod.GET, new HttpEntity<>(headers),
+				String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(etag);
+	}
+
+	private ResponseEntity<Partner> post() {
+		Partner partner = new Partner(ID, "Versioned", "ref", Locale.ENGLISH, new Date());
+		ResponseEntity<Partner> response = restTemplate.postForEntity(url(""), partner, Partner.class);
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		return response;
+	}
+
+	private ResponseEntity<Partner> put(String ifMatch) {
+		HttpHeaders headers = new HttpHeaders();
+		if (ifMatch != null)
+			headers.set(HttpHeaders.IF_MATCH, ifMatch);
+		Partner partner = new Partner(ID, "Updated", "ref", Locale.ENGLISH, new Date());
+		return restTemplate.exchange(url(), HttpMethod.PUT, new HttpEntity<>(partner, headers), Partner.class);
+	}
+
+	private ResponseEntity<String> get(String header, String value) {
+		HttpHeaders headers = new HttpHeaders();
+		if (header != null)
+			headers.set(header, value);
+		return restTemplate.exchange(url(), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	private String url() {
+		return url(Long.toString(ID));
+	}
+}
@@ -0,0 +1,61 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ConnectionPoolTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	/**
+	 * The pool is full when the application starts, and its state is part of the health.
+	 */
+	@Test
+	public void testHealth() {
+		ResponseEntity<JsonNode> response = restTemplate.getForEntity("http://localhost:" + port + "/actuator/health",
+				JsonNode.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		JsonNode pool = response.getBody().path("components").path("connectionPool");
+		assertEquals("UP", pool.path("status").asText());
+		assertEquals(10, pool.path("details").path("total").asInt());
+		assertEquals(10, pool.path("details").path("maximum").asInt());
+	}
+
+	/**
+	 * The statistics of the pool are published as metrics, the acquisitions once a request has read the database.
+	 */
+	@Test
+	public void testMetrics() {
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("http://localhost:" + port + "/api/partners?limit=1",
+				String.class).getStatusCode());
+		assertThat(registry.get("hikaricp.connections.idle").tag("pool", "partner-pool").gauge().value())
+				.isPositive();
+		assertThat(registry.get("hikaricp.connections.pending").gauge()).isNotNull();
+		assertThat(registry.get("hikaricp.connections.active").gauge()).isNotNull();
+		assertThat(registry.get("hikaricp.connections.acquire").timer().count()).isPositive();
+	}
+}
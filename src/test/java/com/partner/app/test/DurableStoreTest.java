@@ -0,0 +1,278 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.partner.app.dao.DurablePartnerStore;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.dao.PartnerRowMapper;
+import com.partner.app.exceptions.InternalErrorException;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.model.Partner;
+
+class DurableStoreTest {
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * The store is seeded from the database once, then every change survives a crash through the log.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testReplayAfterCrash() throws Exception {
+		DurablePartnerStore store = store(1_000_000);
+		assertEquals("Seed 2", store.selectPartner(2).getCompanyName());
+		store.insertPartner(new Partner(10, "Inserted", "ref", Locale.forLanguageTag("en-GB"), new Date(1000)));
+		store.updatePartner(new Partner(2, "Updated", "ref", Locale.ENGLISH, null));
+		store.deletePartner(3);
+
+		// No shutdown, as if the process had been killed.
+		DurablePartnerStore restarted = store(1_000_000);
+		Partner inserted = restarted.selectPartner(10);
+		assertEquals("Inserted", inserted.getCompanyName());
+		assertEquals(Locale.forLanguageTag("en-GB"), inserted.getLocale());
+		assertEquals(new Date(1000), inserted.getExpires());
+		assertEquals(1, inserted.getVersion());
+		assertEquals(store.selectPartner(10).getLastModified(), inserted.getLastModified());
+		assertEquals("Updated", restarted.selectPartner(2).getCompanyName());
+		assertEquals(store.selectPartner(2).getVersion(), restarted.selectPartner(2).getVersion());
+		assertNull(restarted.selectPartner(2).getExpires());
+		assertThatThrownBy(() -> restarted.selectPartner(3)).isInstanceOf(PartnerNotFoundException.class);
+		assertEquals(11, restarted.getNewID());
+		restarted.shutdown();
+	}
+
+	/**
+	 * A record torn by a crash at the end of the log is dropped, and the log goes on after the previous one.
+	 * @throws Exception InternalErrorException, BadRequestError or IOException
+	 */
+	@Test
+	public void testTornRecord() throws Exception {
+		DurablePartnerStore store = store(1_000_000);
+		store.insertPartner(partner(10));
+		store.insertPartner(partner(11));
+		Path segment = segments().get(segments().size() - 1);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(4);
+			int offset = 0;
+			int last = 0;
+			while (channel.read(buffer.clear(), offset) == 4 && buffer.getInt(0) > 0) {
+				last = offset;
+				offset += 8 + buffer.getInt(0);
+			}
+			channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), last + 12);
+		}
+
+		DurablePartnerStore restarted = store(1_000_000);
+		assertEquals(10, restarted.selectPartner(10).getId());
+		assertThatThrownBy(() -> restarted.selectPartner(11)).isInstanceOf(PartnerNotFoundException.class);
+		restarted.insertPartner(partner(12));
+
+		DurablePartnerStore again = store(1_000_000);
+		assertEquals(12, again.selectPartner(12).getId());
+		assertThatThrownBy(() -> again.selectPartner(11)).isInstanceOf(PartnerNotFoundException.class);
+		again.shutdown();
+	}
+
+	/**
+	 * Snapshots are taken every few changes and the log segments they hold are deleted.
+	 * @throws Exception InternalErrorException, BadRequestError or IOException
+	 */
+	@Test
+	public void testSnapshots() throws Exception {
+		DurablePartnerStore store = store(100);
+		for (long id = 10; id < 1010; id++) {
+			store.insertPartner(partner(id));
+		}
+		for (long id = 10; id < 1010; id += 2) {
+			store.deletePartner(id);
+		}
+		store.shutdown();
+		assertThat(segments()).hasSize(1);
+		assertThat(files("snapshot-")).hasSize(1);
+
+		DurablePartnerStore restarted = store(100);
+		List<Partner> partners = restarted.selectAllPartners(0, 2000, null);
+		assertEquals(3 + 500, partners.size());
+		assertEquals(11, partners.get(3).getId());
+		assertThatThrownBy(() -> restarted.selectPartner(10)).isInstanceOf(PartnerNotFoundException.class);
+		restarted.shutdown();
+	}
+
+	/**
+	 * The locales of the partners read from the database, which the row mapper makes single languages such as
+	 * "en_gb", are kept by the snapshots and the log.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testDatabaseLocales() throws Exception {
+		DurablePartnerStore store = store(1_000_000);
+		Locale seeded = store.selectPartner(1).getLocale();
+		assertEquals("en_gb", seeded.toString());
+		store.updatePartner(new Partner(2, "Updated", "ref", seeded, null));
+		store.shutdown();
+
+		DurablePartnerStore restarted = store(1_000_000);
+		assertEquals(seeded, restarted.selectPartner(1).getLocale());
+		assertEquals(seeded, restarted.selectPartner(2).getLocale());
+		restarted.updatePartner(new Partner(3, "Updated", "ref", seeded, null));
+
+		// No shutdown, the last update is only in the log.
+		DurablePartnerStore again = store(1_000_000);
+		assertEquals(seeded, again.selectPartner(3).getLocale());
+		again.shutdown();
+	}
+
+	/**
+	 * Once the store has stopped the changes are refused, none is lost after the last snapshot.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testWritesAfterShutdown() throws Exception {
+		DurablePartnerStore store = store(1_000_000);
+		store.insertPartner(partner(10));
+		store.shutdown();
+		assertThatThrownBy(() -> store.insertPartner(partner(11))).isInstanceOf(InternalErrorException.class);
+		assertThatThrownBy(() -> store.deletePartner(10)).isInstanceOf(InternalErrorException.class);
+
+		DurablePartnerStore restarted = store(1_000_000);
+		assertEquals(10, restarted.selectPartner(10).getId());
+		assertThatThrownBy(() -> restarted.selectPartner(11)).isInstanceOf(PartnerNotFoundException.class);
+		restarted.shutdown();
+	}
+
+	/**
+	 * Concurrent writers share the forces of the log and none of their changes is lost.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		DurablePartnerStore store = store(1_000);
+		ExecutorService writers = Executors.newFixedThreadPool(8);
+		List<Future<?>> results = new ArrayList<>();
+		for (int w = 0; w < 8; w++) {
+			long first = 100 + w * 1000;
+			results.add(writers.submit(() -> {
+				for (long id = first; id < first + 500; id++) {
+					store.insertPartner(partner(id));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		writers.shutdown();
+
+		DurablePartnerStore restarted = store(1_000);
+		assertEquals(3 + 8 * 500, restarted.selectAllPartners(0, 10_000, null).size());
+		restarted.shutdown();
+	}
+
+	/**
+	 * After a clean shutdown a store of 200000 partners restarts from its snapshot in a few seconds.
+	 * @throws Exception InternalErrorException or PartnerNotFoundException
+	 */
+	@Test
+	public void testRestartTime() throws Exception {
+		DurablePartnerStore store = store(1_000_000);
+		List<Partner> batch = new ArrayList<>();
+		for (long id = 10; id < 200_010; id++) {
+			batch.add(partner(id));
+			if (batch.size() == 1000) {
+				store.insertPartners(batch);
+				batch.clear();
+			}
+		}
+		store.shutdown();
+
+		long started = System.nanoTime();
+		DurablePartnerStore restarted = store(1_000_000);
+		long millis = (System.nanoTime() - started) / 1_000_000;
+		assertEquals(200_009, restarted.selectPartner(200_009).getId());
+		assertThat(millis).isLessThan(5000);
+		restarted.shutdown();
+	}
+
+	private DurablePartnerStore store(long snapshotEvery) throws Exception {
+		DurablePartnerStore store = new DurablePartnerStore(seedDatabase(), directory.toString(),
+				DataSize.ofMegabytes(1), true, snapshotEvery);
+		store.load();
+		return store;
+	}
+
+	/**
+	 * Database with three partners, read with the row mapper of the JDBC implementation.
+	 */
+	@SuppressWarnings("unchecked")
+	private static PartnerDao seedDatabase() throws Exception {
+		PartnerDao dao = mock(PartnerDao.class);
+		doAnswer(invocation -> {
+			Consumer<Partner> consumer = invocation.getArgument(0);
+			PartnerRowMapper mapper = new PartnerRowMapper();
+			for (long id = 1; id <= 3; id++) {
+				consumer.accept(mapper.mapRow(row(id), (int) id - 1));
+			}
+			return null;
+		}).when(dao).streamAllPartners(any(Consumer.class));
+		return dao;
+	}
+
+	private static ResultSet row(long id) throws SQLException {
+		ResultSet row = mock(ResultSet.class);
+		when(row.getLong("id")).thenReturn(id);
+		when(row.getString("companyName")).thenReturn("Seed " + id);
+		when(row.getString("ref")).thenReturn("ref");
+		when(row.getString("locale")).thenReturn("en_GB");
+		when(row.getDate("expires")).thenReturn(new java.sql.Date(System.currentTimeMillis()));
+		when(row.getLong("version")).thenReturn(1L);
+		when(row.getTimestamp("lastModified")).thenReturn(new Timestamp(System.currentTimeMillis()));
+		return row;
+	}
+
+	private static Partner partner(long id) {
+		return new Partner(id, "Partner " + id, "ref" + id % 10, Locale.ENGLISH, null);
+	}
+
+	private List<Path> segments() throws IOException {
+		return files("0");
+	}
+
+	private List<Path> files(String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+import com.partner.app.service.PartnerExpiryService;
+import com.partner.app.service.PartnerService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs on its own database, the partners inserted by the migrations have expired and the other tests need them.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:expirytest", "partner.expiry.batch-size=2",
+		"partner.expiry.hide-expired=true" })
+class ExpiryTest extends ApiTestBase {
+
+	private static final long FIRST_ID = EXPIRY_IDS;
+
+	private static final int EXPIRED = 5;
+
+	@Autowired
+	private PartnerService partnerService;
+
+	@Autowired
+	private PartnerExpiryService partnerExpiryService;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	ExpiryTest() {
+		super(FIRST_ID);
+	}
+
+	/**
+	 * Partners FIRST_ID to FIRST_ID + 4 have expired, FIRST_ID + 5 expires in 2100.
+	 */
+	@BeforeEach
+	public void insertPartners() {
+		List<Partner> partners = new ArrayList<>();
+		for (int i = 0; i < EXPIRED; i++) {
+			partners.add(new Partner(FIRST_ID + i, "Expired" + i, "expiryref", Locale.forLanguageTag("en-GB"),
+					java.sql.Date.valueOf("2000-01-0" + (i + 1))));
+		}
+		partners.add(new Partner(FIRST_ID + EXPIRED, "Valid", "expiryref", Locale.forLanguageTag("en-GB"),
+				java.sql.Date.valueOf("2100-01-01")));
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.POST, new HttpEntity<>(partners),
+				String.class).getStatusCode());
+	}
+
+	@AfterEach
+	public void removeArchived() {
+		jdbcTemplate.update("DELETE FROM PARTNER_ARCHIVE WHERE ID >= ? AND ID < ?", FIRST_ID, FIRST_ID + RANGE);
+	}
+
+	/**
+	 * A tick archives and removes every expired partner, batch by batch, and keeps the others.
+	 */
+	@Test
+	public void testTick() {
+		double before = registry.counter("partner.expiry.partners", "action", "archived").count();
+		assertThat(partnerExpiryService.tick()).isGreaterThanOrEqualTo(EXPIRED);
+
+		assertEquals(Arrays.asList(FIRST_ID + EXPIRED), jdbcTemplate.queryForList(
+				"SELECT id FROM PARTNER WHERE ID >= ? AND ID < ?", Long.class, FIRST_ID, FIRST_ID + 100));
+		assertEquals(EXPIRED, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER_ARCHIVE WHERE ID >= ? AND ID < ? AND version = 1", Integer.class,
+				FIRST_ID, FIRST_ID + 100));
+		assertThat(registry.counter("partner.expiry.partners", "action", "archived").count() - before)
+				.isGreaterThanOrEqualTo(EXPIRED);
+		assertThat(partnerExpiryService.tick()).isZero();
+	}
+
+	/**
+	 * A tick whose time is over after the first batch leaves the rest for the next one.
+	 */
+	@Test
+	public void testBoundedTick() {
+		PartnerExpiryService bounded = new PartnerExpiryService(partnerService, false, Duration.ofMinutes(1), 2,
+				Duration.ZERO, false, registry);
+		assertEquals(2, bounded.tick());
+		assertEquals(EXPIRED - 2, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER WHERE ID >= ? AND ID < ? AND expires < CURRENT_DATE", Integer.class,
+				FIRST_ID, FIRST_ID + 100));
+		assertThat(bounded.tick()).isEqualTo(2);
+	}
+
+	/**
+	 * The expired partners are hidden before they are removed.
+	 */
+	@Test
+	public void testHideExpired() {
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url(String.valueOf(FIRST_ID)), String.class)
+				.getStatusCode());
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity(url(String.valueOf(FIRST_ID + EXPIRED)), String.class)
+				.getStatusCode());
+		Partner[] partners = restTemplate.getForObject(url("0/1000000"), Partner[].class);
+		assertThat(partners).extracting(Partner::getId).contains(FIRST_ID + EXPIRED).doesNotContain(FIRST_ID);
+	}
+
+	/**
+	 * The expired partners are left out by the queries, so the pages are full, and by every other read.
+	 */
+	@Test
+	public void testHideExpiredEverywhere() {
+		PartnerPage page = restTemplate.getForObject(url("?after=" + PartnerPage.encodeCursor(FIRST_ID - 1)
+				+ "&limit=1"), PartnerPage.class);
+		assertThat(page.getPartners()).extracting(Partner::getId).containsExactly(FIRST_ID + EXPIRED);
+		assertThat(restTemplate.getForObject(url("search?ref=expiryref&size=1"), Partner[].class))
+				.extracting(Partner::getId).containsExactly(FIRST_ID + EXPIRED);
+		assertThat(restTemplate.getForObject(url("_search?q=Expired"), Partner[].class)).extracting(Partner::getId)
+				.doesNotContain(FIRST_ID, FIRST_ID + 1);
+		assertThat(restTemplate.getForObject(url("_export"), String.class)).contains("Valid")
+				.doesNotContain("Expired");
+	}
+}
@@ -0,0 +1,177 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.model.ImportReport;
+import com.partner.app.model.Partner;
+import com.partner.app.service.PartnerImportService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ExportImportTest extends ApiTestBase {
+
+	/**
+	 * First ID of the rows inserted by these tests, far away from the IDs used by the other tests.
+	 */
+	private static final long FIRST_ID = EXPORT_IMPORT_IDS;
+
+	ExportImportTest() {
+		super(FIRST_ID);
+	}
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private PartnerImportService partnerImportService;
+
+	/**
+	 * Exports the whole table, every partner must be written in its own line, in the order of the IDs.
+	 */
+	@Test
+	public void testExport() {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			rows.add(new Object[] { FIRST_ID + i, "Export" + i, "ref" + i, "en_GB", new Date(0) });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO PARTNER (id, companyName, ref, locale, expires) VALUES (?, ?, ?, ?, ?)", rows);
+
+		List<Partner> partners = restTemplate.execute("http://localhost:" + port + "/api/partners/_export",
+				HttpMethod.GET, null, response -> {
+					assertEquals(HttpStatus.OK, response.getStatusCode());
+					assertThat(response.getHeaders().getContentType())
+							.isEqualTo(MediaType.parseMediaType("application/x-ndjson"));
+					List<Partner> read = new ArrayList<>();
+					BufferedReader reader = new BufferedReader(
+							new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+					for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+						read.add(objectMapper.readValue(line, Partner.class));
+					}
+					return read;
+				});
+
+		assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTNER", Integer.class), partners.size());
+		for (int i = 1; i < partners.size(); i++) {
+			assertThat(partners.get(i).getId()).isGreaterThan(partners.get(i - 1).getId());
+		}
+		assertThat(partners).extracting(Partner::getCompanyName).contains("Partner1", "Export0", "Export4999");
+	}
+
+	/**
+	 * Imports partners in newline delimited JSON, the invalid lines must be reported and the rest imported.
+	 */
+	@Test
+	public void testImportJson() {
+		StringBuilder body = new StringBuilder();
+		for (int i = 1; i <= 1_200; i++) {
+			String name = i == 5 ? " " : "Import" + i;
+			String expires = i == 10 ? "not a date" : "2030-01-01T00:00:00.000+0000";
+			body.append("{\"id\":").append(FIRST_ID + i).append(",\"name\":\"").append(name)
+					.append("\",\"reference\":\"ref\",\"locale\":\"en_GB\",\"expirationTime\":\"").append(expires)
+					.append("\"}\n");
+		}
+
+		ImportReport report = post(body.toString(), "application/x-ndjson");
+		assertEquals(1_200, report.getReceived());
+		assertEquals(1_198, report.getImported());
+		assertEquals(2, report.getFailed());
+		assertThat(report.getFailedLines()).containsExactly(10L, 5L);
+		assertFalse(report.isAborted());
+		assertEquals(1_198, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER WHERE companyName LIKE 'Import%'", Integer.class));
+	}
+
+	/**
+	 * Imports partners in CSV with a header line, the duplicated partner must be reported.
+	 */
+	@Test
+	public void testImportCsv() {
+		String body = "id,name,reference,locale,expirationTime\n"
+				+ (FIRST_ID + 1) + ",Csv1,ref1,en_GB,2030-01-01\n"
+				+ (FIRST_ID + 2) + ",Csv2,ref2,es_ES,2030-01-01\n"
+				+ "1,Duplicated,ref3,es_ES,2030-01-01\n";
+
+		ImportReport report = post(body, "text/csv");
+		assertEquals(3, report.getReceived());
+		assertEquals(2, report.getImported());
+		assertThat(report.getFailedLines()).containsExactly(4L);
+		assertEquals("Csv2", jdbcTemplate.queryForObject("SELECT companyName FROM PARTNER WHERE ID = ?",
+				String.class, FIRST_ID + 2));
+	}
+
+	/**
+	 * A body which breaks off stops the import there, the partners read before are kept and reported. A body which
+	 * breaks off before any partner is added gets a 400.
+	 * @throws Exception Error with the import.
+	 */
+	@Test
+	public void testImportAborted() throws Exception {
+		StringBuilder body = new StringBuilder();
+		for (int i = 1; i <= 600; i++) {
+			body.append("{\"id\":").append(FIRST_ID + i).append(",\"name\":\"Aborted").append(i)
+					.append("\",\"reference\":\"ref\",\"locale\":\"en_GB\"}\n");
+		}
+
+		ImportReport report = partnerImportService.importJson(brokenOff(body.toString()));
+		assertEquals(600, report.getReceived());
+		assertEquals(600, report.getImported());
+		assertTrue(report.isAborted());
+		assertThat(report.getAbortLine()).isGreaterThanOrEqualTo(600);
+		assertEquals(600, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER WHERE companyName LIKE 'Aborted%'", Integer.class));
+
+		assertThrows(BadRequestError.class, () -> partnerImportService.importJson(brokenOff("")));
+	}
+
+	/**
+	 * @return Stream of the body which fails as a connection reset at its end.
+	 */
+	private static InputStream brokenOff(String body) {
+		return new SequenceInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+				new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("Connection reset");
+					}
+				});
+	}
+
+	private ImportReport post(String body, String contentType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType(contentType));
+		ResponseEntity<ImportReport> response = restTemplate.postForEntity(
+				"http://localhost:" + port + "/api/partners/_import", new HttpEntity<>(body, headers), ImportReport.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return response.getBody();
+	}
+}
@@ -0,0 +1,34 @@
+package com.partner.app.test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.h2.api.Trigger;
+
+/**
+ * Trigger of PARTNER_CHANGE which fails the recording of the changes of one partner, so the whole transaction
+ * which changes it is rolled back.
+ */
+public class FailingChangeTrigger implements Trigger {
+
+	static volatile long failingId;
+
+	@Override
+	public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+			int type) {
+	}
+
+	@Override
+	public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+		if (((Number) newRow[2]).longValue() == failingId)
+			throw new SQLException("Change of partner " + failingId + " refused by the test");
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public void remove() {
+	}
+}
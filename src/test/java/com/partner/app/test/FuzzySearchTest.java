@@ -0,0 +1,129 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.cache.PartnerTextIndex;
+import com.partner.app.model.Partner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class FuzzySearchTest extends ApiTestBase {
+
+	private static final long FIRST_ID = FUZZY_SEARCH_IDS;
+
+	private static final String[] NAMES = { "Brightwater Logistics", "Bluewater Shipping", "Greenfield Farms",
+			"Greenhill Farming", "Northwind Traders" };
+
+	@Autowired
+	private PartnerTextIndex partnerTextIndex;
+
+	FuzzySearchTest() {
+		super(FIRST_ID);
+	}
+
+	@BeforeEach
+	public void insertPartners() {
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.POST,
+				new HttpEntity<>(partners(NAMES)), String.class).getStatusCode());
+	}
+
+	@AfterEach
+	public void removePartners() {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < NAMES.length; i++) {
+			ids.add(FIRST_ID + i);
+		}
+		restTemplate.exchange(url("_bulk"), HttpMethod.DELETE, new HttpEntity<>(ids), String.class);
+	}
+
+	/**
+	 * The names and references with typos find the right partner first.
+	 */
+	@Test
+	public void testTypos() {
+		assertEquals(FIRST_ID, search("Brigthwater").get(0).getId());
+		assertEquals(FIRST_ID + 1, search("bluewatr shiping").get(0).getId());
+		assertEquals(Arrays.asList(FIRST_ID + 2, FIRST_ID + 3), ids(search("Greenfeld Farms")).subList(0, 2));
+		assertEquals(FIRST_ID + 4, search("fuzzyref4").get(0).getId());
+		assertThat(search("Qxzvkj")).isEmpty();
+		assertThat(restTemplate.getForEntity(url("_search?q=Greenfield&size=1"), Partner[].class).getBody())
+				.hasSize(1);
+	}
+
+	/**
+	 * The index follows the partners which are updated and removed.
+	 */
+	@Test
+	public void testChanges() {
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.PUT,
+				new HttpEntity<>(partners("Brightwater Logistics", "Saltmarsh Shipping")), String.class)
+				.getStatusCode());
+		assertThat(ids(search("Bluewater"))).doesNotContain(FIRST_ID + 1);
+		assertEquals(FIRST_ID + 1, search("Saltmarsh").get(0).getId());
+
+		restTemplate.delete(url(String.valueOf(FIRST_ID)));
+		assertThat(ids(search("Brightwater Logistics"))).doesNotContain(FIRST_ID);
+	}
+
+	/**
+	 * A version older than the one indexed, written out of order, does not replace it.
+	 */
+	@Test
+	public void testOutOfOrder() {
+		Partner stale = new Partner(FIRST_ID + 1, "Stalemate Holdings", "fuzzyref1", Locale.forLanguageTag("en-GB"),
+				null);
+		stale.setVersion(1);
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.PUT,
+				new HttpEntity<>(partners(NAMES[0], "Saltmarsh Shipping")), String.class).getStatusCode());
+		partnerTextIndex.put(stale);
+		assertThat(ids(search("Stalemate"))).doesNotContain(FIRST_ID + 1);
+		assertEquals(FIRST_ID + 1, search("Saltmarsh").get(0).getId());
+	}
+
+	/**
+	 * A size which is not a number is rejected.
+	 */
+	@Test
+	public void testBadRequest() {
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("_search?q=Greenfield&size=ten"),
+				String.class).getStatusCode());
+	}
+
+	private static List<Partner> partners(String... names) {
+		List<Partner> partners = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			partners.add(partner(FIRST_ID + i, names[i], "fuzzyref" + i));
+		}
+		return partners;
+	}
+
+	private List<Partner> search(String text) {
+		ResponseEntity<Partner[]> response = restTemplate.getForEntity(url("_search?q=" + text), Partner[].class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return Arrays.asList(response.getBody());
+	}
+
+	private static List<Long> ids(List<Partner> partners) {
+		return partners.stream().map(Partner::getId).collect(Collectors.toList());
+	}
+}
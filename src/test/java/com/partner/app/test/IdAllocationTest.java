@@ -0,0 +1,145 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.dao.PartnerIdAllocator;
+import com.partner.app.model.Partner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class IdAllocationTest {
+
+	private static final int THREADS = 16;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private PartnerIdAllocator idAllocator;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final Set<Long> created = ConcurrentHashMap.newKeySet();
+
+	@AfterEach
+	public void removePartners() {
+		restTemplate.exchange("http://localhost:" + port + "/api/partners/_bulk", HttpMethod.DELETE,
+				new HttpEntity<>(new ArrayList<>(created)), String.class);
+	}
+
+	/**
+	 * Many threads posting partners without ID at the same time must all get a 201 status and different IDs.
+	 * @throws Exception RestClientException
+	 */
+	@Test
+	public void testConcurrentPostsGetUniqueIds() throws Exception {
+		int postsPerThread = 50;
+		String url = "http://localhost:" + port + "/api/partners";
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < postsPerThread; i++) {
+					Partner partner = new Partner(0, "Concurrent", "ref", Locale.ENGLISH, new Date());
+					ResponseEntity<Partner> response = restTemplate.postForEntity(url, partner, Partner.class);
+					assertEquals(HttpStatus.CREATED, response.getStatusCode());
+					assertThat(created.add(response.getBody().getId())).isTrue();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertThat(created).hasSize(THREADS * postsPerThread);
+		assertEquals(THREADS * postsPerThread, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM PARTNER WHERE companyName = 'Concurrent'", Integer.class));
+	}
+
+	/**
+	 * The allocator hands out different IDs to many threads without going to the database for each one.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testAllocatorIsUniqueUnderContention() throws Exception {
+		int idsPerThread = 10_000;
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < idsPerThread; i++) {
+					assertThat(ids.add(idAllocator.nextId())).isTrue();
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertThat(ids).hasSize(THREADS * idsPerThread);
+	}
+
+	/**
+	 * The IDs chosen by the clients are not allocated later, whether they are in the block of the node or ahead of
+	 * the sequence, as 150 on a new database.
+	 * @throws Exception RestClientException
+	 */
+	@Test
+	public void testExplicitIdsAreNotAllocated() throws Exception {
+		String url = "http://localhost:" + port + "/api/partners";
+		long allocated = post(url, 0);
+		assertEquals(allocated + 1, post(url, allocated + 1));
+		long ahead = jdbcTemplate.queryForObject("SELECT CURRENT_VALUE + INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES "
+				+ "WHERE SEQUENCE_NAME = 'PARTNER_ID_SEQ'", Long.class);
+		assertEquals(ahead, post(url, ahead));
+		for (int i = 0; i < 100; i++) {
+			long id = post(url, 0);
+			assertThat(id).isNotEqualTo(allocated + 1).isNotEqualTo(ahead);
+		}
+	}
+
+	private long post(String url, long id) {
+		Partner partner = new Partner(id, "Explicit", "ref", Locale.ENGLISH, new Date());
+		ResponseEntity<Partner> response = restTemplate.postForEntity(url, partner, Partner.class);
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		created.add(response.getBody().getId());
+		return response.getBody().getId();
+	}
+}
@@ -0,0 +1,116 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.cache.PartnerIdFilter;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "partner.id-filter.enabled=true",
+		"partner.id-filter.single-node=true" })
+class IdFilterTest {
+
+	private static final long ID = ApiTestBase.ID_FILTER_IDS;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	/**
+	 * IDs which were never inserted are answered by the filter, and inserted IDs get through it.
+	 */
+	@Test
+	public void testUnknownIdsAreAbsent() {
+		double absent = registry.get("partner.id.filter.lookups").tag("result", "absent").counter().count();
+		ResponseEntity<String> response = restTemplate.getForEntity(url(ID), String.class);
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+		assertThat(registry.get("partner.id.filter.lookups").tag("result", "absent").counter().count())
+				.isGreaterThan(absent);
+
+		Partner partner = new Partner(ID, "Filtered", "ref", Locale.ENGLISH, new Date());
+		restTemplate.postForEntity("http://localhost:" + port + "/api/partners", partner, Partner.class);
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity(url(ID), Partner.class).getStatusCode());
+
+		restTemplate.delete(url(ID));
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url(ID), String.class).getStatusCode());
+	}
+
+	/**
+	 * A filter built from 100000 partners has no false negatives and about the configured false positive rate.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFalsePositiveRate() throws Exception {
+		int partners = 100_000;
+		PartnerDao dao = mock(PartnerDao.class);
+		doAnswer(invocation -> {
+			Consumer<Partner> consumer = invocation.getArgument(0);
+			for (long id = 1; id <= partners; id++) {
+				consumer.accept(new Partner(id, "Partner", "ref", Locale.ENGLISH, null));
+			}
+			return null;
+		}).when(dao).streamAllPartners(any(Consumer.class));
+		PartnerIdFilter filter = new PartnerIdFilter(dao, true, true, "none", partners, 0.01,
+				new SimpleMeterRegistry());
+		filter.init();
+
+		for (long id = 1; id <= partners; id++) {
+			assertThat(filter.mightContain(id)).isTrue();
+		}
+		int falsePositives = 0;
+		for (long id = partners + 1; id <= 2 * partners; id++) {
+			if (filter.mightContain(id))
+				falsePositives++;
+		}
+		assertThat(falsePositives).isLessThan(partners / 50);
+		assertThat(filter.expectedFalsePositiveRate()).isLessThan(0.02);
+		filter.shutdown();
+	}
+
+	/**
+	 * Without bus, the filter is only enabled on a node stated to be the only one which inserts partners.
+	 */
+	@Test
+	public void testNeedsBusOrSingleNode() {
+		PartnerDao dao = mock(PartnerDao.class);
+		assertThatThrownBy(() -> new PartnerIdFilter(dao, true, false, "none", 1_000, 0.01,
+				new SimpleMeterRegistry())).isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("partner.invalidation.bus");
+		new PartnerIdFilter(dao, true, false, "multicast", 1_000, 0.01, new SimpleMeterRegistry());
+		new PartnerIdFilter(dao, false, false, "none", 1_000, 0.01, new SimpleMeterRegistry());
+	}
+
+	private String url(long id) {
+		return "http://localhost:" + port + "/api/partners/" + id;
+	}
+}
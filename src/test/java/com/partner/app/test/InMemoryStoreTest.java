@@ -0,0 +1,271 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.partner.app.dao.InMemoryPartnerStore;
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.dao.PartnerIdAllocator;
+import com.partner.app.exceptions.BadRequestError;
+import com.partner.app.exceptions.PartnerNotFoundException;
+import com.partner.app.exceptions.PreconditionFailedException;
+import com.partner.app.exceptions.ServiceUnavailableException;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerQuery;
+import com.partner.app.service.PartnerChangeFeed;
+
+class InMemoryStoreTest {
+
+	/**
+	 * The partners in the database are loaded at startup and can be read by ID, by pages and by reference.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testLoadAndRead() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(1000), false);
+
+		assertEquals("Partner 500", store.selectPartner(500).getCompanyName());
+		assertThatThrownBy(() -> store.selectPartner(1001)).isInstanceOf(PartnerNotFoundException.class);
+
+		List<Partner> page = store.selectAllPartners(10, 5, null);
+		assertEquals(Arrays.asList(11L, 12L, 13L, 14L, 15L), ids(page));
+		assertEquals(Arrays.asList(998L, 999L, 1000L), ids(store.selectPartnersAfter(997, 10, null)));
+		assertThat(store.selectPartnersAfter(1000, 10, null)).isEmpty();
+
+		List<Partner> byRef = store.selectPartnersByRef("ref7");
+		assertEquals(100, byRef.size());
+		assertEquals(7L, byRef.get(0).getId());
+		assertThat(store.selectPartnersByRef("none")).isEmpty();
+		store.shutdown();
+	}
+
+	/**
+	 * Writes are seen by the following reads and keep the reference index up to date.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testWrites() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(0), false);
+
+		Partner partner = new Partner(1, "Partner", "old", Locale.ENGLISH, null);
+		assertEquals(1, store.insertPartner(partner));
+		assertThatThrownBy(() -> store.insertPartner(partner)).isInstanceOf(BadRequestError.class);
+		partner.setCompanyName("Changed by the caller");
+		assertEquals("Partner", store.selectPartner(1).getCompanyName());
+
+		Partner stale = new Partner(1, "Updated", "new", Locale.ENGLISH, null);
+		stale.setVersion(1);
+		store.updatePartner(stale);
+		assertEquals("Updated", store.selectPartner(1).getCompanyName());
+		assertEquals(2, store.selectPartner(1).getVersion());
+		stale.setVersion(1);
+		assertThatThrownBy(() -> store.updatePartner(stale)).isInstanceOf(PreconditionFailedException.class);
+		assertThat(store.selectPartnersByRef("old")).isEmpty();
+		assertEquals(1, store.selectPartnersByRef("new").size());
+
+		assertEquals(1, store.deletePartner(1));
+		assertThatThrownBy(() -> store.deletePartner(1)).isInstanceOf(PartnerNotFoundException.class);
+		assertThatThrownBy(() -> store.updatePartner(partner)).isInstanceOf(PartnerNotFoundException.class);
+		assertThat(store.selectPartnersByRef("new")).isEmpty();
+
+		List<Partner> partners = Arrays.asList(partner(2), partner(3), partner(2));
+		assertArrayEquals(new int[] { 1, 1, 0 }, store.insertPartners(partners));
+		assertArrayEquals(new int[] { 1, 0 }, store.updatePartners(Arrays.asList(partner(3), partner(4))));
+		assertArrayEquals(new int[] { 1, 0, 1 }, store.deletePartners(Arrays.asList(2L, 4L, 3L)));
+		assertThat(store.selectAllPartners(0, 10, null)).isEmpty();
+		store.shutdown();
+	}
+
+	/**
+	 * The partners read can be changed by the callers without changing the stored ones.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testReadsAreCopies() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(10), false);
+		store.selectPartner(5).setCompanyName("Changed");
+		store.selectAllPartners(0, 10, null).get(0).setCompanyName("Changed");
+		store.selectPartnersAfter(0, 10, null).get(1).setCompanyName("Changed");
+		store.selectPartnersByRef("ref3").get(0).setCompanyName("Changed");
+		store.streamAllPartners(partner -> partner.setCompanyName("Changed"));
+		assertEquals("Partner 5", store.selectPartner(5).getCompanyName());
+		assertThat(store.selectAllPartners(0, 10, null)).extracting(Partner::getCompanyName)
+				.doesNotContain("Changed");
+		store.shutdown();
+	}
+
+	/**
+	 * Searches filter and sort the partners as the database does.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testSearch() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(1000), false);
+
+		assertEquals(Arrays.asList(999L, 989L, 979L), ids(store.searchPartners(new PartnerQuery("Partner 9", "ref9",
+				Locale.ENGLISH, null, null, PartnerQuery.Sort.ID, true, 0, 3))));
+		assertEquals(Arrays.asList(9L, 90L, 900L), ids(store.searchPartners(new PartnerQuery("Partner 9", null, null,
+				null, null, PartnerQuery.Sort.NAME, false, 0, 3))));
+		assertThat(store.searchPartners(new PartnerQuery(null, null, Locale.FRENCH, null, null, PartnerQuery.Sort.ID,
+				false, 0, 10))).isEmpty();
+		store.shutdown();
+	}
+
+	/**
+	 * The partners which have expired are left out before the window is applied, as the database does.
+	 * @throws Exception InternalErrorException or BadRequestError
+	 */
+	@Test
+	public void testUnexpired() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(0), false);
+		Date now = new Date();
+		for (long id = 1; id <= 4; id++) {
+			store.insertPartner(new Partner(id, "Partner " + id, "ref", Locale.ENGLISH,
+					id % 2 == 0 ? null : new Date(now.getTime() - 1000)));
+		}
+		assertEquals(Arrays.asList(2L, 4L), ids(store.selectAllPartners(0, 2, now)));
+		assertEquals(Arrays.asList(4L), ids(store.selectPartnersAfter(2, 2, now)));
+		assertEquals(Arrays.asList(2L, 4L), ids(store.searchPartners(new PartnerQuery(null, "ref", null, null, null,
+				PartnerQuery.Sort.ID, false, 0, 2).unexpiredAt(now))));
+		assertEquals(4, store.selectAllPartners(0, 10, null).size());
+		store.shutdown();
+	}
+
+	/**
+	 * Removals fill their holes in the hash map, so every remaining partner can still be found.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testRemovalsKeepLookups() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(0), false);
+		for (long id = 1; id <= 20_000; id++) {
+			store.insertPartner(partner(id));
+		}
+		for (long id = 1; id <= 20_000; id += 3) {
+			store.deletePartner(id);
+		}
+		for (long id = 1; id <= 20_000; id++) {
+			long deleted = id;
+			if (id % 3 == 1)
+				assertThatThrownBy(() -> store.selectPartner(deleted)).isInstanceOf(PartnerNotFoundException.class);
+			else
+				assertEquals(id, store.selectPartner(id).getId());
+		}
+		store.shutdown();
+	}
+
+	/**
+	 * Readers never miss an existing partner while another thread inserts and removes partners, growing the map.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(1000), false);
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		List<Future<Long>> results = new ArrayList<>();
+		for (int r = 0; r < 4; r++) {
+			results.add(readers.submit(() -> {
+				long found = 0;
+				for (int i = 0; i < 200_000; i++) {
+					found += store.selectPartner(1 + i % 1000).getId() > 0 ? 1 : 0;
+				}
+				return found;
+			}));
+		}
+		for (long id = 1001; id <= 50_000; id++) {
+			store.insertPartner(partner(id));
+			if (id % 2 == 0)
+				store.deletePartner(id);
+		}
+		for (Future<Long> result : results) {
+			assertEquals(200_000L, result.get());
+		}
+		readers.shutdown();
+		store.shutdown();
+	}
+
+	/**
+	 * With write-through enabled the changes reach the database.
+	 * @throws Exception InternalErrorException, BadRequestError or PartnerNotFoundException
+	 */
+	@Test
+	public void testWriteThrough() throws Exception {
+		PartnerDao database = mockDatabase(0);
+		InMemoryPartnerStore store = store(database, true);
+		store.insertPartner(partner(1));
+		store.deletePartner(1);
+		verify(database, timeout(5000)).insertPartner(any(Partner.class));
+		verify(database, timeout(5000)).deletePartner(1);
+		store.shutdown();
+	}
+
+	/**
+	 * The store does not keep the log of changes, so the feed refuses to read it instead of returning nothing.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testNoChangeLog() throws Exception {
+		InMemoryPartnerStore store = store(mockDatabase(0), true);
+		PartnerChangeFeed feed = new PartnerChangeFeed(store, Duration.ZERO);
+		assertThatThrownBy(() -> feed.getChanges(0, 10)).isInstanceOf(ServiceUnavailableException.class);
+		assertThatThrownBy(() -> feed.poll(0, 10, Duration.ofSeconds(1)))
+				.isInstanceOf(ServiceUnavailableException.class);
+		store.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PartnerDao mockDatabase(int partners) throws Exception {
+		PartnerDao dao = mock(PartnerDao.class);
+		doAnswer(invocation -> {
+			Consumer<Partner> consumer = invocation.getArgument(0);
+			for (long id = 1; id <= partners; id++) {
+				consumer.accept(new Partner(id, "Partner " + id, "ref" + id % 10, Locale.ENGLISH, null));
+			}
+			return null;
+		}).when(dao).streamAllPartners(any(Consumer.class));
+		return dao;
+	}
+
+	private static InMemoryPartnerStore store(PartnerDao database, boolean writeThrough) throws Exception {
+		PartnerIdAllocator allocator = mock(PartnerIdAllocator.class);
+		AtomicLong ids = new AtomicLong(1_000_000);
+		when(allocator.nextId()).thenAnswer(invocation -> ids.incrementAndGet());
+		InMemoryPartnerStore store = new InMemoryPartnerStore(database, allocator, writeThrough);
+		store.load();
+		return store;
+	}
+
+	private static Partner partner(long id) {
+		return new Partner(id, "Partner " + id, "ref", Locale.ENGLISH, null);
+	}
+
+	private static List<Long> ids(List<Partner> partners) {
+		List<Long> ids = new ArrayList<>();
+		for (Partner partner : partners) {
+			ids.add(partner.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,255 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.partner.app.DemoApplication;
+import com.partner.app.cache.invalidation.InvalidationBus;
+import com.partner.app.cache.invalidation.InvalidationMessage;
+import com.partner.app.cache.invalidation.MulticastInvalidationBus;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerChanges;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs two nodes of the API on the same database, in the same JVM, joined by the local invalidation bus.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+class InvalidationTest {
+
+	private static final long FIRST_ID = ApiTestBase.INVALIDATION_IDS;
+
+	/**
+	 * Time within which a write on a node is seen by the other.
+	 */
+	private static final long BOUND_MILLIS = 2_000;
+
+	private ConfigurableApplicationContext nodeA;
+
+	private ConfigurableApplicationContext nodeB;
+
+	private TestRestTemplate restTemplate;
+
+	@BeforeAll
+	public void startNodes() {
+		nodeA = start();
+		nodeB = start();
+		// Built like the one of the application, which reads and writes the partners in its own format.
+		restTemplate = new TestRestTemplate(nodeA.getBean(RestTemplateBuilder.class));
+	}
+
+	@AfterAll
+	public void stopNodes() {
+		nodeB.close();
+		nodeA.close();
+	}
+
+	@AfterEach
+	public void deletePartners() {
+		restTemplate.exchange(url(nodeA, "_bulk"), HttpMethod.DELETE,
+				new HttpEntity<>(Arrays.asList(FIRST_ID, FIRST_ID + 1)), String.class);
+	}
+
+	/**
+	 * A partner inserted, updated and removed on a node is read as such from the other, which had it in its cache.
+	 */
+	@Test
+	public void testReadAfterWrite() {
+		assertEquals(HttpStatus.NOT_FOUND, get(nodeB, FIRST_ID).getStatusCode());
+		restTemplate.postForEntity(url(nodeA, ""), partner(FIRST_ID, "Created"), String.class);
+		awaitName(nodeB, FIRST_ID, "Created");
+
+		restTemplate.put(url(nodeA, String.valueOf(FIRST_ID)), partner(FIRST_ID, "Updated"));
+		awaitName(nodeB, FIRST_ID, "Updated");
+		await(() -> search(nodeB, "Updatd").contains("Updated"));
+
+		restTemplate.delete(url(nodeA, String.valueOf(FIRST_ID)));
+		await(() -> get(nodeB, FIRST_ID).getStatusCode() == HttpStatus.NOT_FOUND);
+	}
+
+	/**
+	 * The partners changed in bulk on a node are read as such from the other.
+	 */
+	@Test
+	public void testBulkWrite() {
+		restTemplate.exchange(url(nodeB, "_bulk"), HttpMethod.POST,
+				new HttpEntity<>(Arrays.asList(partner(FIRST_ID, "Bulk0"), partner(FIRST_ID + 1, "Bulk1"))),
+				String.class);
+		awaitName(nodeA, FIRST_ID, "Bulk0");
+		awaitName(nodeA, FIRST_ID + 1, "Bulk1");
+
+		restTemplate.exchange(url(nodeB, "_bulk"), HttpMethod.PUT,
+				new HttpEntity<>(Arrays.asList(partner(FIRST_ID + 1, "Bulk2"))), String.class);
+		awaitName(nodeA, FIRST_ID + 1, "Bulk2");
+	}
+
+	/**
+	 * A node which misses messages of another one flushes its cache, so a partner changed behind its back is read
+	 * again.
+	 */
+	@Test
+	public void testGapFlushesCache() {
+		restTemplate.postForEntity(url(nodeA, ""), partner(FIRST_ID, "Cached"), String.class);
+		awaitName(nodeB, FIRST_ID, "Cached");
+		nodeB.getBean(JdbcTemplate.class).update("UPDATE PARTNER SET companyName = 'Behind' WHERE id = ?", FIRST_ID);
+		assertEquals("Cached", get(nodeB, FIRST_ID).getBody().getCompanyName());
+
+		double gaps = gaps(nodeB);
+		InvalidationBus bus = nodeA.getBean(InvalidationBus.class);
+		long node = ThreadLocalRandom.current().nextLong();
+		bus.publish(new InvalidationMessage(node, 1, new long[] { FIRST_ID + 1 }));
+		bus.publish(new InvalidationMessage(node, 1, new long[0]));
+		bus.publish(new InvalidationMessage(node, 2, new long[] { FIRST_ID + 1 }));
+		bus.publish(new InvalidationMessage(node, 2, new long[0]));
+		assertEquals(gaps, gaps(nodeB));
+		assertEquals("Cached", get(nodeB, FIRST_ID).getBody().getCompanyName());
+
+		// The heartbeat tells that message 3 was lost.
+		bus.publish(new InvalidationMessage(node, 3, new long[0]));
+		assertEquals(gaps + 1, gaps(nodeB));
+		awaitName(nodeB, FIRST_ID, "Behind");
+	}
+
+	/**
+	 * The first message of a node which had already sent others, before this node subscribed, flushes the cache.
+	 */
+	@Test
+	public void testFirstContactFlushesCache() {
+		restTemplate.postForEntity(url(nodeA, ""), partner(FIRST_ID, "Cached"), String.class);
+		awaitName(nodeB, FIRST_ID, "Cached");
+		nodeB.getBean(JdbcTemplate.class).update("UPDATE PARTNER SET companyName = 'Behind' WHERE id = ?", FIRST_ID);
+
+		double gaps = gaps(nodeB);
+		long node = ThreadLocalRandom.current().nextLong();
+		nodeA.getBean(InvalidationBus.class).publish(new InvalidationMessage(node, 5, new long[0]));
+		assertEquals(gaps + 1, gaps(nodeB));
+		awaitName(nodeB, FIRST_ID, "Behind");
+	}
+
+	/**
+	 * A consumer of the changes waiting on a node is woken up by a write on the other.
+	 * @throws Exception The waiting request failed.
+	 */
+	@Test
+	public void testChangeFeedWokenUp() throws Exception {
+		long head = 0;
+		PartnerChanges changes;
+		do {
+			changes = restTemplate.getForObject(url(nodeB, "_changes?wait=0&limit=1000&since=" + head),
+					PartnerChanges.class);
+			head = changes.getNext();
+		} while (!changes.getChanges().isEmpty());
+		long since = head;
+		CompletableFuture<PartnerChanges> waiting = CompletableFuture.supplyAsync(() -> restTemplate
+				.getForObject(url(nodeB, "_changes?wait=30&since=" + since), PartnerChanges.class));
+		Thread.sleep(500);
+		assertThat(waiting).isNotDone();
+		restTemplate.postForEntity(url(nodeA, ""), partner(FIRST_ID, "Awaited"), String.class);
+		assertEquals("Awaited", waiting.get(BOUND_MILLIS, TimeUnit.MILLISECONDS).getChanges().get(0).getPartner()
+				.getCompanyName());
+	}
+
+	/**
+	 * Two buses in the same group get each other's messages, if the host has multicast.
+	 */
+	@Test
+	public void testMulticast() throws Exception {
+		int port = 40_000 + ThreadLocalRandom.current().nextInt(10_000);
+		MulticastInvalidationBus sender;
+		MulticastInvalidationBus receiver;
+		try {
+			sender = new MulticastInvalidationBus("239.255.42.99", port, 0);
+			receiver = new MulticastInvalidationBus("239.255.42.99", port, 0);
+		} catch (UncheckedIOException e) {
+			assumeTrue(false, "No multicast: " + e.getMessage());
+			return;
+		}
+		try {
+			BlockingQueue<InvalidationMessage> messages = new LinkedBlockingQueue<>();
+			receiver.subscribe(messages::add);
+			sender.publish(new InvalidationMessage(7, 1, new long[] { FIRST_ID, -1 }));
+			InvalidationMessage message = messages.poll(BOUND_MILLIS, TimeUnit.MILLISECONDS);
+			assumeTrue(message != null, "Multicast datagrams are not looped back");
+			assertEquals(7, message.getNode());
+			assertEquals(1, message.getSeq());
+			assertThat(message.getIds()).containsExactly(FIRST_ID, -1);
+		} finally {
+			sender.close();
+			receiver.close();
+		}
+	}
+
+	private static ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(DemoApplication.class).run("--server.port=0",
+				"--spring.datasource.url=jdbc:h2:mem:invalidationtest;DB_CLOSE_DELAY=-1",
+				"--partner.invalidation.bus=local", "--partner.invalidation.local.channel=invalidationtest",
+				"--partner.invalidation.heartbeat=0", "--partner.id-filter.enabled=true", "--spring.jmx.enabled=false");
+	}
+
+	private void awaitName(ConfigurableApplicationContext node, long id, String name) {
+		await(() -> {
+			ResponseEntity<Partner> response = get(node, id);
+			return response.getStatusCode() == HttpStatus.OK && name.equals(response.getBody().getCompanyName());
+		});
+	}
+
+	private static void await(Supplier<Boolean> condition) {
+		long deadline = System.currentTimeMillis() + BOUND_MILLIS;
+		while (!condition.get()) {
+			assertThat(System.currentTimeMillis()).as("Not seen within %d ms", BOUND_MILLIS).isLessThan(deadline);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private ResponseEntity<Partner> get(ConfigurableApplicationContext node, long id) {
+		return restTemplate.getForEntity(url(node, String.valueOf(id)), Partner.class);
+	}
+
+	private String search(ConfigurableApplicationContext node, String text) {
+		return restTemplate.getForObject(url(node, "_search?q=" + text), String.class);
+	}
+
+	private static double gaps(ConfigurableApplicationContext node) {
+		return node.getBean(MeterRegistry.class).counter("partner.invalidation.gaps").count();
+	}
+
+	private static Partner partner(long id, String name) {
+		return ApiTestBase.partner(id, name, "invalidationref");
+	}
+
+	private static String url(ConfigurableApplicationContext node, String path) {
+		return ApiTestBase.url(Integer.parseInt(node.getEnvironment().getProperty("local.server.port")), path);
+	}
+}
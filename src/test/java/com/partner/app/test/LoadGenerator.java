@@ -0,0 +1,333 @@
+package com.partner.app.test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.partner.app.model.PartnerPage;
+
+/**
+ * Open-model load generator for the partner API. Requests are started at a fixed rate whatever the server does,
+ * and the latency of a request is measured from the time it should have started, so a server which stalls is not
+ * hidden by requests which were sent late (coordinated omission). The latency from the time the request was
+ * actually sent is recorded too, for comparison.
+ * <p>
+ * GET, PUT and the pages read a range of partners loaded beforehand. DELETE removes the partners created by POST,
+ * and a second range loaded beforehand while there are none.
+ *
+ * @author Alejandro Torreblanca
+ *
+ */
+class LoadGenerator {
+
+	enum Operation {
+		GET, PAGE, POST, PUT, DELETE
+	}
+
+	private static final double MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String url;
+
+	private final long firstId;
+
+	private final int partners;
+
+	private final Operation[] mix;
+
+	private final int maxInFlight;
+
+	private final Semaphore inFlight;
+
+	private final HttpClient client;
+
+	private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+
+	private final Map<Operation, Recorder> corrected = new EnumMap<>(Operation.class);
+
+	private final Map<Operation, Recorder> uncorrected = new EnumMap<>(Operation.class);
+
+	private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+	/**
+	 * Constructor of the class LoadGenerator.
+	 * @param url Base URL of the server.
+	 * @param firstId First ID of the partners loaded beforehand.
+	 * @param partners Number of partners read, and of partners deleted while POST has created none.
+	 * @param mix Weights of the operations, as GET:60,PAGE:10,...
+	 * @param maxInFlight Maximum number of requests waiting for their response.
+	 */
+	LoadGenerator(String url, long firstId, int partners, String mix, int maxInFlight) {
+		this.url = url;
+		this.firstId = firstId;
+		this.partners = partners;
+		this.mix = parseMix(mix);
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(8, r -> {
+			Thread thread = new Thread(r, "load-generator");
+			thread.setDaemon(true);
+			return thread;
+		})).version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10)).build();
+		for (Operation operation : Operation.values()) {
+			corrected.put(operation, new Recorder(3));
+			uncorrected.put(operation, new Recorder(3));
+			errors.put(operation, new LongAdder());
+		}
+	}
+
+	/**
+	 * Loads the partners read and deleted by the load.
+	 * @throws IOException Error sending the partners.
+	 * @throws InterruptedException Interrupted while waiting for a response.
+	 */
+	void preload() throws IOException, InterruptedException {
+		for (long from = firstId; from < firstId + 2 * partners; from += 1000) {
+			StringBuilder body = new StringBuilder("[");
+			for (long id = from; id < Math.min(from + 1000, firstId + 2 * partners); id++) {
+				body.append(id == from ? "" : ",").append(partner(id));
+			}
+			send(HttpRequest.newBuilder(URI.create(url + "/api/partners/_bulk")).header("Content-Type", "application/json")
+					.POST(BodyPublishers.ofString(body.append(']').toString())).build());
+		}
+		for (long id = firstId + partners; id < firstId + 2 * partners; id++) {
+			deletable.add(id);
+		}
+	}
+
+	/**
+	 * Removes the partners loaded beforehand and the ones created by the load.
+	 * @throws IOException Error sending the IDs.
+	 * @throws InterruptedException Interrupted while waiting for a response.
+	 */
+	void cleanUp() throws IOException, InterruptedException {
+		List<Long> ids = new ArrayList<>(deletable);
+		for (long id = firstId; id < firstId + partners; id++) {
+			ids.add(id);
+		}
+		for (int from = 0; from < ids.size(); from += 1000) {
+			String body = ids.subList(from, Math.min(from + 1000, ids.size())).toString();
+			send(HttpRequest.newBuilder(URI.create(url + "/api/partners/_bulk")).header("Content-Type", "application/json")
+					.method("DELETE", BodyPublishers.ofString(body)).build());
+		}
+	}
+
+	/**
+	 * Sends requests at a rate for a while, then waits for their responses.
+	 * @param rate Requests per second.
+	 * @param warmup Time the requests are sent before the latencies are recorded.
+	 * @param duration Time the latencies are recorded.
+	 * @return Results of the operations, in the order of the operations.
+	 * @throws InterruptedException Interrupted while waiting.
+	 */
+	List<Result> run(int rate, Duration warmup, Duration duration) throws InterruptedException {
+		long period = TimeUnit.SECONDS.toNanos(1) / rate;
+		long start = System.nanoTime();
+		long measured = start + warmup.toNanos();
+		long end = measured + duration.toNanos();
+		boolean reset = false;
+		for (long i = 0;; i++) {
+			long intended = start + i * period;
+			if (intended >= end)
+				break;
+			if (!reset && intended >= measured) {
+				// Drops what the warmup recorded.
+				interval();
+				errors.values().forEach(LongAdder::reset);
+				reset = true;
+			}
+			for (long now = System.nanoTime(); now < intended; now = System.nanoTime()) {
+				LockSupport.parkNanos(intended - now);
+			}
+			inFlight.acquire();
+			send(mix[ThreadLocalRandom.current().nextInt(mix.length)], intended);
+		}
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+		double seconds = duration.toNanos() / 1e9;
+		Map<Operation, Histogram[]> histograms = interval();
+		List<Result> results = new ArrayList<>();
+		for (Operation operation : Operation.values()) {
+			Histogram[] pair = histograms.get(operation);
+			results.add(new Result(rate, operation, pair[0], pair[1], errors.get(operation).sumThenReset(), seconds));
+		}
+		return results;
+	}
+
+	private Map<Operation, Histogram[]> interval() {
+		Map<Operation, Histogram[]> histograms = new EnumMap<>(Operation.class);
+		for (Operation operation : Operation.values()) {
+			histograms.put(operation, new Histogram[] { corrected.get(operation).getIntervalHistogram(),
+					uncorrected.get(operation).getIntervalHistogram() });
+		}
+		return histograms;
+	}
+
+	private void send(Operation operation, long intended) {
+		long id = firstId + ThreadLocalRandom.current().nextInt(partners);
+		HttpRequest.Builder request;
+		switch (operation) {
+		case GET:
+			request = HttpRequest.newBuilder(URI.create(url + "/api/partners/" + id)).GET();
+			break;
+		case PAGE:
+			request = HttpRequest.newBuilder(page(id)).GET();
+			break;
+		case POST:
+			request = HttpRequest.newBuilder(URI.create(url + "/api/partners")).header("Content-Type", "application/json")
+					.POST(BodyPublishers.ofString(partner(0)));
+			break;
+		case PUT:
+			request = HttpRequest.newBuilder(URI.create(url + "/api/partners/" + id))
+					.header("Content-Type", "application/json").PUT(BodyPublishers.ofString(partner(id)));
+			break;
+		default:
+			Long created = deletable.poll();
+			request = HttpRequest.newBuilder(URI.create(url + "/api/partners/" + (created == null ? -1 : created)))
+					.DELETE();
+		}
+		long sent = System.nanoTime();
+		client.sendAsync(request.timeout(Duration.ofSeconds(30)).build(), BodyHandlers.discarding())
+				.whenComplete((response, error) -> {
+					long done = System.nanoTime();
+					inFlight.release();
+					corrected.get(operation).recordValue(done - intended);
+					uncorrected.get(operation).recordValue(done - sent);
+					if (error != null || response.statusCode() >= 300)
+						errors.get(operation).increment();
+					else if (operation == Operation.POST)
+						response.headers().firstValue("Location").ifPresent(location -> deletable
+								.add(Long.parseLong(location.substring(location.lastIndexOf('/') + 1))));
+				});
+	}
+
+	/**
+	 * @param id ID of the partner the page starts after.
+	 * @return URI of the page of the PAGE operation.
+	 */
+	URI page(long id) {
+		return URI.create(url + "/api/partners?limit=20&after=" + PartnerPage.encodeCursor(id));
+	}
+
+	private void send(HttpRequest request) throws IOException, InterruptedException {
+		HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+		if (response.statusCode() >= 300)
+			throw new IOException("Unexpected response " + response.statusCode() + ": " + response.body());
+	}
+
+	private static String partner(long id) {
+		return "{\"id\":" + id + ",\"name\":\"Load" + id + "\",\"reference\":\"ref" + id
+				+ "\",\"locale\":\"en_GB\",\"expirationTime\":\"2030-01-01\"}";
+	}
+
+	private static Operation[] parseMix(String mix) {
+		List<Operation> operations = new ArrayList<>();
+		for (String weight : mix.split(",")) {
+			String[] parts = weight.trim().split(":");
+			for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+				operations.add(Operation.valueOf(parts[0].trim().toUpperCase()));
+			}
+		}
+		return operations.toArray(new Operation[0]);
+	}
+
+	/**
+	 * Latencies and throughput of an operation at a rate.
+	 */
+	static final class Result {
+		private final int rate;
+		private final Operation operation;
+		private final Histogram corrected;
+		private final Histogram uncorrected;
+		private final long errors;
+		private final double seconds;
+
+		private Result(int rate, Operation operation, Histogram corrected, Histogram uncorrected, long errors,
+				double seconds) {
+			this.rate = rate;
+			this.operation = operation;
+			this.corrected = corrected;
+			this.uncorrected = uncorrected;
+			this.errors = errors;
+			this.seconds = seconds;
+		}
+
+		long getRequests() {
+			return corrected.getTotalCount();
+		}
+
+		long getErrors() {
+			return errors;
+		}
+
+		static String header() {
+			return String.format("%8s %-7s %9s %10s %7s %9s %9s %9s %9s %13s", "rate", "op", "requests", "req/s",
+					"errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "p99 sent ms");
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%8d %-7s %9d %10.1f %7d %9.3f %9.3f %9.3f %9.3f %13.3f", rate, operation,
+					getRequests(), getRequests() / seconds, errors, percentile(corrected, 50), percentile(corrected, 99),
+					percentile(corrected, 99.9), corrected.getMaxValue() / MILLIS, percentile(uncorrected, 99));
+		}
+
+		/**
+		 * Gets the figures of the result for the JSON report.
+		 * @return Figures by name.
+		 */
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("rate", rate);
+			map.put("operation", operation);
+			map.put("requests", getRequests());
+			map.put("throughput", getRequests() / seconds);
+			map.put("errors", errors);
+			map.put("p50Millis", percentile(corrected, 50));
+			map.put("p99Millis", percentile(corrected, 99));
+			map.put("p999Millis", percentile(corrected, 99.9));
+			map.put("maxMillis", corrected.getMaxValue() / MILLIS);
+			map.put("uncorrectedP99Millis", percentile(uncorrected, 99));
+			return map;
+		}
+
+		/**
+		 * Writes the percentile distribution of the corrected latencies in milliseconds, in the format of the
+		 * HdrHistogram plotter.
+		 * @param directory Directory of the file.
+		 * @throws IOException Error writing the file.
+		 */
+		void writeDistribution(Path directory) throws IOException {
+			Path path = directory.resolve(rate + "-" + operation.name().toLowerCase() + ".hgrm");
+			try (PrintStream out = new PrintStream(Files.newOutputStream(path))) {
+				corrected.outputPercentileDistribution(out, MILLIS);
+			}
+		}
+
+		private static double percentile(Histogram histogram, double percentile) {
+			return histogram.getValueAtPercentile(percentile) / MILLIS;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.partner.app.model.PartnerPage;
+
+/**
+ * Load test of the partner API, excluded from the build. Run it with: mvn -P loadtest test
+ * <p>
+ * It is configured with system properties: loadtest.rates (requests per second of each stage, 1000,10000,50000),
+ * loadtest.warmup and loadtest.duration (seconds of each stage, 10 and 30), loadtest.mix (weights of the
+ * operations, GET:60,PAGE:10,POST:10,PUT:10,DELETE:10), loadtest.max-in-flight (1000) and loadtest.url (the
+ * server started by the test). The report is printed and written to target/loadtest.
+ */
+@Tag("loadtest")
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class LoadTest {
+
+	private static final long FIRST_ID = ApiTestBase.LOAD_TEST_IDS;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Test
+	public void testLoad() throws Exception {
+		String url = System.getProperty("loadtest.url", "http://localhost:" + port);
+		Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup", 10));
+		Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30));
+		LoadGenerator generator = new LoadGenerator(url, FIRST_ID, 10_000,
+				System.getProperty("loadtest.mix", "GET:60,PAGE:10,POST:10,PUT:10,DELETE:10"),
+				Integer.getInteger("loadtest.max-in-flight", 1000));
+		Path directory = Paths.get("target", "loadtest");
+		Files.createDirectories(directory);
+
+		List<Map<String, Object>> report = new ArrayList<>();
+		generator.preload();
+		try {
+			PartnerPage page = restTemplate.getForObject(generator.page(FIRST_ID + 100), PartnerPage.class);
+			assertThat(page.getPartners()).isNotEmpty();
+			assertThat(page.getPartners().get(0).getId()).isEqualTo(FIRST_ID + 101);
+			for (String rate : System.getProperty("loadtest.rates", "1000,10000,50000").split(",")) {
+				List<LoadGenerator.Result> results = generator.run(Integer.parseInt(rate.trim()), warmup, duration);
+				System.out.println(LoadGenerator.Result.header());
+				long requests = 0;
+				for (LoadGenerator.Result result : results) {
+					System.out.println(result);
+					result.writeDistribution(directory);
+					report.add(result.toMap());
+					requests += result.getRequests();
+				}
+				assertThat(requests).isPositive();
+			}
+		} finally {
+			generator.cleanUp();
+		}
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(
+				directory.resolve("report.json").toFile(), report);
+	}
+}
@@ -0,0 +1,103 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class MetricsTest {
+
+	private static final long UNKNOWN_ID = ApiTestBase.METRICS_IDS;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	/**
+	 * A page request is timed in every layer, and its query is split into the database and the mapping.
+	 */
+	@Test
+	public void testTimers() {
+		ResponseEntity<String> response = restTemplate.getForEntity(url() + "?limit=2", String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+
+		assertThat(timer("partner.controller", "method", "getPartnersPage").count()).isPositive();
+		assertThat(timer("partner.service", "method", "getPartnersPage").count()).isPositive();
+		assertThat(timer("partner.dao", "method", "selectPartnersAfter").count()).isPositive();
+		assertThat(timer("partner.dao.query.sql", "query", "selectPartnersAfter").count()).isPositive();
+		assertThat(timer("partner.dao.query.mapping", "query", "selectPartnersAfter").count()).isPositive();
+		assertThat(registry.get("partner.dao.query.rows").tag("query", "selectPartnersAfter").summary()
+				.totalAmount()).isPositive();
+	}
+
+	/**
+	 * The query of the change feed is split into the database and the mapping too.
+	 */
+	@Test
+	public void testChangeTimers() {
+		ResponseEntity<String> response = restTemplate.getForEntity(url() + "/_changes?wait=0&limit=1",
+				String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+
+		assertThat(timer("partner.dao.query.sql", "query", "selectChanges").count()).isPositive();
+		assertThat(timer("partner.dao.query.mapping", "query", "selectChanges").count()).isPositive();
+	}
+
+	/**
+	 * The exceptions are counted by type.
+	 */
+	@Test
+	public void testExceptions() {
+		double before = notFound();
+		ResponseEntity<String> response = restTemplate.getForEntity(url() + "/" + UNKNOWN_ID, String.class);
+		assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+		assertThat(notFound()).isGreaterThan(before);
+		assertThat(timer("partner.service", "exception", "PartnerNotFoundException").count()).isPositive();
+	}
+
+	/**
+	 * The histograms are published in the Prometheus format.
+	 */
+	@Test
+	public void testPrometheus() {
+		restTemplate.getForEntity(url() + "?limit=2", String.class);
+		ResponseEntity<String> response = restTemplate.getForEntity(
+				"http://localhost:" + port + "/actuator/prometheus", String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getBody()).contains("partner_dao_query_sql_seconds_bucket",
+				"partner_service_seconds_bucket", "http_server_requests_seconds_bucket");
+	}
+
+	private Timer timer(String name, String tag, String value) {
+		return registry.get(name).tag(tag, value).timer();
+	}
+
+	private double notFound() {
+		Counter counter = registry.find("partner.exceptions").tag("exception", "PartnerNotFoundException").counter();
+		return counter == null ? 0 : counter.count();
+	}
+
+	private String url() {
+		return "http://localhost:" + port + "/api/partners";
+	}
+}
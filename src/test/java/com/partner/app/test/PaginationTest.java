@@ -0,0 +1,150 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.dao.PartnerDao;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class PaginationTest extends ApiTestBase {
+
+	/**
+	 * First ID of the rows inserted by these tests, far away from the IDs used by the other tests.
+	 */
+	private static final long FIRST_ID = PAGINATION_IDS;
+
+	PaginationTest() {
+		super(FIRST_ID);
+	}
+
+	@Autowired
+	@Qualifier("fakeDao")
+	private PartnerDao partnerDao;
+
+	private long nextId = FIRST_ID;
+
+	/**
+	 * Consecutive pages must not overlap and together must contain the whole table.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testPagesAreDisjoint() throws Exception {
+		insertPartners(25);
+		List<Partner> all = new ArrayList<>();
+		for (int from = 0;; from += 10) {
+			List<Partner> page = partnerDao.selectAllPartners(from, 10, null);
+			assertThat(page.size()).isLessThanOrEqualTo(10);
+			all.addAll(page);
+			if (page.size() < 10)
+				break;
+		}
+		assertEquals(partnerDao.selectAllPartners(0, Integer.MAX_VALUE, null).size(), all.size());
+		assertThat(all.stream().map(Partner::getId).distinct().count()).isEqualTo(all.size());
+	}
+
+	/**
+	 * Walking the table with cursors must return every partner once, in the order of the IDs.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testKeysetWalk() throws Exception {
+		insertPartners(25);
+		List<Partner> all = new ArrayList<>();
+		long after = Long.MIN_VALUE;
+		for (;;) {
+			List<Partner> page = partnerDao.selectPartnersAfter(after, 10, null);
+			all.addAll(page);
+			if (page.size() < 10)
+				break;
+			after = page.get(page.size() - 1).getId();
+		}
+		assertEquals(partnerDao.selectAllPartners(0, Integer.MAX_VALUE, null).size(), all.size());
+		for (int i = 1; i < all.size(); i++) {
+			assertThat(all.get(i).getId()).isGreaterThan(all.get(i - 1).getId());
+		}
+	}
+
+	/**
+	 * The cursor returned by the API must lead to the next page, and the last page has no cursor.
+	 */
+	@Test
+	public void testCursorEndpoint() {
+		insertPartners(5);
+		String url = "http://localhost:" + port + "/api/partners?limit=3&after=" + PartnerPage.encodeCursor(FIRST_ID - 1);
+		PartnerPage page = restTemplate.getForObject(url, PartnerPage.class);
+		assertThat(page.getPartners()).extracting(Partner::getId).containsExactly(FIRST_ID, FIRST_ID + 1, FIRST_ID + 2);
+		assertThat(page.getNext()).isNotNull();
+
+		url = "http://localhost:" + port + "/api/partners?limit=3&after=" + page.getNext();
+		page = restTemplate.getForObject(url, PartnerPage.class);
+		assertThat(page.getPartners()).extracting(Partner::getId).containsExactly(FIRST_ID + 3, FIRST_ID + 4);
+		assertThat(page.getNext()).isNull();
+
+		ResponseEntity<String> response = restTemplate.getForEntity("http://localhost:" + port + "/api/partners?limit=3&after=???", String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+
+	/**
+	 * Pages beyond the end of the table and pages of size 0 are empty.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testEmptyPages() throws Exception {
+		assertThat(partnerDao.selectAllPartners(Integer.MAX_VALUE, 10, null)).isEmpty();
+		assertThat(partnerDao.selectAllPartners(0, 0, null)).isEmpty();
+	}
+
+	/**
+	 * The time needed to read the first page must not depend on the size of the table.
+	 * @throws Exception InternalErrorException
+	 */
+	@Test
+	public void testPageLatencyIsFlat() throws Exception {
+		insertPartners(1_000);
+		long small = medianPageNanos();
+		insertPartners(99_000);
+		long large = medianPageNanos();
+		// A page read from a table 100 times larger must not be anywhere near 100 times slower.
+		assertThat(large).isLessThan(Math.max(small * 10, 2_000_000));
+	}
+
+	private long medianPageNanos() throws Exception {
+		long[] samples = new long[51];
+		for (int i = 0; i < samples.length; i++) {
+			long start = System.nanoTime();
+			assertEquals(20, partnerDao.selectAllPartners(0, 20, null).size());
+			samples[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(samples);
+		return samples[samples.length / 2];
+	}
+
+	private void insertPartners(int count) {
+		List<Object[]> rows = new ArrayList<>(count);
+		Date expires = new Date(System.currentTimeMillis());
+		for (int i = 0; i < count; i++) {
+			long id = nextId++;
+			rows.add(new Object[] { id, "Partner" + id, "ref" + id, "en_GB", expires });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO PARTNER (id, companyName, ref, locale, expires) VALUES (?, ?, ?, ?, ?)",
+				rows);
+	}
+}
@@ -0,0 +1,96 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Checks the schema created by the migrations on its own database. The plans only tell which index is used, so a
+ * table of ten thousand partners is enough: a scan of the whole table would read all of them.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+class SchemaTest {
+
+	private static final int ROWS = 10_000;
+
+	private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	public void createDatabase() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:schematest", "sa", "", true);
+		Flyway.configure().dataSource(dataSource).load().migrate();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("INSERT INTO PARTNER(id, companyName, ref, locale, expires) "
+				+ "SELECT X, CONCAT('Partner', X), CONCAT('ref', X), 'en_GB', CURRENT_DATE FROM SYSTEM_RANGE(?, ?)",
+				100, 99 + ROWS);
+	}
+
+	@AfterAll
+	public void dropDatabase() {
+		dataSource.destroy();
+	}
+
+	/**
+	 * A lookup by ID reads a couple of rows through the primary key, not the whole table.
+	 */
+	@Test
+	public void testLookupById() {
+		assertThat(scanCount("SELECT * FROM PARTNER WHERE ID = " + ROWS / 2)).isLessThanOrEqualTo(2);
+		assertThat(scanCount("SELECT * FROM PARTNER WHERE ID = 2")).isLessThanOrEqualTo(2);
+	}
+
+	/**
+	 * Updates and deletions find the row through the primary key.
+	 */
+	@Test
+	public void testUpdateAndDeleteById() {
+		assertThat(plan("UPDATE PARTNER SET ref = 'x' WHERE ID = 5")).contains("PRIMARY_KEY");
+		assertThat(plan("DELETE FROM PARTNER WHERE ID = 5")).contains("PRIMARY_KEY");
+	}
+
+	/**
+	 * Lookups by reference and by company's name use their secondary indexes.
+	 */
+	@Test
+	public void testLookupBySecondaryIndexes() {
+		assertThat(scanCount("SELECT * FROM PARTNER WHERE REF = 'ref4242'")).isLessThanOrEqualTo(2);
+		assertThat(scanCount("SELECT * FROM PARTNER WHERE COMPANYNAME = 'Partner4242'")).isLessThanOrEqualTo(2);
+	}
+
+	/**
+	 * The expired partners are read from the beginning of the index of the expiration dates, not from the whole
+	 * table.
+	 */
+	@Test
+	public void testExpiredPartners() {
+		assertThat(plan("SELECT * FROM PARTNER WHERE expires <= CURRENT_TIMESTAMP ORDER BY expires, id LIMIT 10"))
+				.contains("PARTNER_EXPIRES_IDX");
+		assertThat(scanCount("SELECT * FROM PARTNER WHERE expires <= DATE '2000-01-01' ORDER BY expires, id LIMIT 10"))
+				.isLessThanOrEqualTo(2);
+	}
+
+	private String plan(String query) {
+		return jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+	}
+
+	private long scanCount(String query) {
+		String plan = jdbcTemplate.queryForObject("EXPLAIN ANALYZE " + query, String.class);
+		Matcher matcher = SCAN_COUNT.matcher(plan);
+		assertThat(matcher.find()).as(plan).isTrue();
+		return Long.parseLong(matcher.group(1));
+	}
+}
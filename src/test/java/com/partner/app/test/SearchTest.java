@@ -0,0 +1,137 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.partner.app.cache.PartnerNameIndex;
+import com.partner.app.model.Partner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "partner.name-index.enabled=true")
+class SearchTest extends ApiTestBase {
+
+	private static final long FIRST_ID = SEARCH_IDS;
+
+	private static final int COUNT = 20;
+
+	@Autowired
+	private PartnerNameIndex partnerNameIndex;
+
+	SearchTest() {
+		super(FIRST_ID);
+	}
+
+	/**
+	 * Partner i is named Srch followed by a letter from A to E and i, has the reference srchref(i % 3), the locale
+	 * en-GB if i is even and es-ES otherwise, and expires the day i + 1 of January 2030.
+	 */
+	@BeforeEach
+	public void insertPartners() {
+		List<Partner> partners = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			partners.add(new Partner(FIRST_ID + i, "Srch" + (char) ('A' + i % 5) + i, "srchref" + i % 3,
+					i % 2 == 0 ? Locale.forLanguageTag("en-GB") : Locale.forLanguageTag("es-ES"),
+					java.sql.Date.valueOf(String.format("2030-01-%02d", i + 1))));
+		}
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.POST, new HttpEntity<>(partners),
+				String.class).getStatusCode());
+	}
+
+	@AfterEach
+	public void removePartners() {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			ids.add(FIRST_ID + i);
+		}
+		restTemplate.exchange(url("_bulk"), HttpMethod.DELETE, new HttpEntity<>(ids), String.class);
+	}
+
+	/**
+	 * The names are looked up by their beginning in the index, in the order of the names and by pages.
+	 */
+	@Test
+	public void testNameLookup() {
+		assertEquals(Arrays.asList("SrchB1", "SrchB11", "SrchB16", "SrchB6"), names(search("name=SrchB&sort=name")));
+		assertEquals(Arrays.asList("SrchB16", "SrchB6"), names(search("name=SrchB&sort=name&from=2&size=5")));
+		assertThat(search("name=SrchZ&sort=name")).isEmpty();
+		// The same search answered by the database.
+		assertEquals(names(search("name=Srch&sort=name&size=100")),
+				names(search("name=Srch&sort=name&size=100&expiresAfter=2000-01-01")));
+	}
+
+	/**
+	 * The filters are combined and the results sorted as asked.
+	 */
+	@Test
+	public void testFilters() {
+		assertEquals(Arrays.asList(FIRST_ID, FIRST_ID + 6, FIRST_ID + 12, FIRST_ID + 18),
+				ids(search("name=Srch&ref=srchref0&locale=en_GB")));
+		assertEquals(Arrays.asList(FIRST_ID + 3, FIRST_ID + 9, FIRST_ID + 15),
+				ids(search("name=Srch&ref=srchref0&locale=es-ES")));
+		assertEquals(Arrays.asList(FIRST_ID + 8, FIRST_ID + 7, FIRST_ID + 6),
+				ids(search("name=Srch&expiresAfter=2030-01-06&expiresBefore=2030-01-10&sort=-expires")));
+		assertEquals(Arrays.asList(FIRST_ID + 19, FIRST_ID + 16), ids(search("ref=srchref1&sort=-id&size=2")));
+	}
+
+	/**
+	 * The partners renamed in bulk are looked up by their new names, and a version older than the one indexed,
+	 * written out of order, does not replace it.
+	 */
+	@Test
+	public void testRenamed() {
+		Partner renamed = new Partner(FIRST_ID, "SrchRenamed", "srchref0", Locale.forLanguageTag("en-GB"), null);
+		assertEquals(HttpStatus.OK, restTemplate.exchange(url("_bulk"), HttpMethod.PUT,
+				new HttpEntity<>(Arrays.asList(renamed)), String.class).getStatusCode());
+		assertEquals(Arrays.asList(FIRST_ID), ids(search("name=SrchRenamed&sort=name")));
+
+		Partner stale = new Partner(FIRST_ID, "SrchStale", "srchref0", Locale.forLanguageTag("en-GB"), null);
+		stale.setVersion(1);
+		partnerNameIndex.put(stale);
+		assertThat(search("name=SrchStale&sort=name")).isEmpty();
+		assertEquals(Arrays.asList(FIRST_ID), ids(search("name=SrchRenamed&sort=name")));
+	}
+
+	/**
+	 * Orders and dates which cannot be parsed are rejected.
+	 */
+	@Test
+	public void testBadRequests() {
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("search?sort=ref"), String.class)
+				.getStatusCode());
+		assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("search?expiresAfter=31/01/2030"),
+				String.class).getStatusCode());
+	}
+
+	private List<Partner> search(String parameters) {
+		ResponseEntity<Partner[]> response = restTemplate.getForEntity(url("search?" + parameters), Partner[].class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return Arrays.asList(response.getBody());
+	}
+
+	private static List<String> names(List<Partner> partners) {
+		return partners.stream().map(Partner::getCompanyName).collect(Collectors.toList());
+	}
+
+	private static List<Long> ids(List<Partner> partners) {
+		return partners.stream().map(Partner::getId).collect(Collectors.toList());
+	}
+}
@@ -122,6 +122,20 @@ class Test1 {
 		assertEquals(partner.getExpires(), p.getExpires());
 	}
 	
+	/**
+	 * Tries to post a partner with an ID which already exists, we should receive a 400 status.
+	 * @throws Exception RestClientException
+	 */
+	@Test
+	public void testPostPartnerAlreadyExists() throws Exception {
+		String url = "http://localhost:" + port + "/api/partners";
+		Partner partner = new Partner(3, "Bells & Whistles", "xxxxxxx", Locale.ENGLISH, new Date());
+		HttpEntity<Partner> request = new HttpEntity<>(partner);
+		ResponseEntity<String> response = restTemplate
+				  .exchange(url, HttpMethod.POST, request, String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+	
 	/**
 	 * Tries to update a partner, we should receive a 200 status and check if the data has been saved correctly.
 	 * @throws Exception
@@ -0,0 +1,82 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import com.partner.app.config.VirtualThreadConfiguration;
+
+class VirtualThreadTest {
+
+	/**
+	 * Java 21 and later, JUnit 5.5 has no JRE constant for them.
+	 */
+	private static final String JAVA_21 = "2[1-9]|[3-9][0-9]";
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withUserConfiguration(VirtualThreadConfiguration.class);
+
+	/**
+	 * Without partner.execution=virtual Tomcat keeps its pool of threads.
+	 */
+	@Test
+	public void testDisabledByDefault() {
+		contextRunner.run(context -> assertThat(context).hasNotFailed()
+				.doesNotHaveBean(TomcatProtocolHandlerCustomizer.class).doesNotHaveBean(ExecutorService.class));
+	}
+
+	/**
+	 * The customizer hands the executor of the configuration to the protocol handler of Tomcat.
+	 */
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testCustomizer() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+			TomcatProtocolHandlerCustomizer customizer = new VirtualThreadConfiguration()
+					.virtualThreadCustomizer(executor);
+			customizer.customize(protocolHandler);
+			verify(protocolHandler).setExecutor(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * On a JVM without virtual threads the application does not start, and tells why.
+	 */
+	@Test
+	@DisabledIfSystemProperty(named = "java.specification.version", matches = JAVA_21)
+	public void testNeedsJava21() {
+		contextRunner.withPropertyValues("partner.execution=virtual").run(context -> assertThat(context)
+				.hasFailed().getFailure().hasRootCauseInstanceOf(NoSuchMethodException.class)
+				.hasMessageContaining("Java 21"));
+	}
+
+	/**
+	 * With partner.execution=virtual the requests run on virtual threads.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "java.specification.version", matches = JAVA_21)
+	public void testVirtualThreads() {
+		contextRunner.withPropertyValues("partner.execution=virtual").run(context -> {
+			assertThat(context).hasSingleBean(TomcatProtocolHandlerCustomizer.class);
+			ExecutorService executor = context.getBean(ExecutorService.class);
+			Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+					.get();
+			assertEquals(Boolean.TRUE, virtual);
+		});
+	}
+}
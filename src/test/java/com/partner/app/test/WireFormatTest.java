@@ -0,0 +1,142 @@
+package com.partner.app.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.partner.app.model.Partner;
+import com.partner.app.model.PartnerPage;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class WireFormatTest extends ApiTestBase {
+
+	private static final long FIRST_ID = WIRE_FORMAT_IDS;
+
+	private static final int COUNT = 100;
+
+	WireFormatTest() {
+		super(FIRST_ID);
+	}
+
+	@BeforeEach
+	public void insertPartners() {
+		List<Object[]> rows = new ArrayList<>(COUNT);
+		for (long id = FIRST_ID; id < FIRST_ID + COUNT; id++) {
+			rows.add(new Object[] { id, "Partner" + id, "ref" + id, "en_GB", new Date() });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO PARTNER (id, companyName, ref, locale, expires) VALUES (?, ?, ?, ?, ?)",
+				rows);
+	}
+
+	@AfterEach
+	public void removePartner() {
+		restTemplate.delete(url(Long.toString(FIRST_ID + COUNT)));
+	}
+
+	/**
+	 * The same page is sent as JSON, CBOR or Smile depending on the Accept header, the binary forms being smaller.
+	 * @throws IOException Error with the connection.
+	 */
+	@Test
+	public void testNegotiation() throws IOException {
+		byte[] json = get("application/json", null);
+		byte[] cbor = get("application/cbor", null);
+		byte[] smile = get("application/x-jackson-smile", null);
+
+		JsonNode page = new ObjectMapper().readTree(json);
+		assertEquals(page.get("partners").size(), new ObjectMapper(new CBORFactory()).readTree(cbor)
+				.get("partners").size());
+		assertEquals(page.get("partners").get(0).get("name").asText(), new ObjectMapper(new SmileFactory())
+				.readTree(smile).get("partners").get(0).get("name").asText());
+		assertThat(cbor.length).isLessThan(json.length);
+		assertThat(smile.length).isLessThan(json.length);
+		assertThat(get(null, null)).isEqualTo(json);
+	}
+
+	/**
+	 * A large response is compressed for the clients which accept gzip.
+	 * @throws IOException Error with the connection.
+	 */
+	@Test
+	public void testCompression() throws IOException {
+		byte[] plain = get("application/json", null);
+		assertEquals(new String(plain, "UTF-8"), new String(get("application/json", "gzip"), "UTF-8"));
+	}
+
+	/**
+	 * A partner has a different strong ETag in every format, revalidated in the same format, and the pages have a
+	 * weak one. The responses vary with the Accept header.
+	 * @throws IOException Error with the connection.
+	 */
+	@Test
+	public void testETags() throws IOException {
+		restTemplate.postForEntity(url(""), new Partner(FIRST_ID + COUNT, "Tagged", "ref",
+				Locale.forLanguageTag("en-GB"), null), String.class);
+		HttpURLConnection json = connect("application/json", null);
+		HttpURLConnection cbor = connect("application/cbor", null);
+		assertEquals(200, json.getResponseCode());
+		assertEquals(200, cbor.getResponseCode());
+		String tag = json.getHeaderField(HttpHeaders.ETAG);
+		assertEquals(tag.substring(0, tag.length() - 1) + "+cbor\"", cbor.getHeaderField(HttpHeaders.ETAG));
+		assertThat(cbor.getHeaderFields().get(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT);
+		assertEquals(304, connect("application/cbor", cbor.getHeaderField(HttpHeaders.ETAG)).getResponseCode());
+		assertEquals(200, connect("application/cbor", tag).getResponseCode());
+
+		URL url = new URL(url("?after=" + PartnerPage.encodeCursor(FIRST_ID - 1) + "&limit=" + COUNT));
+		HttpURLConnection page = (HttpURLConnection) url.openConnection();
+		assertEquals(200, page.getResponseCode());
+		assertThat(page.getHeaderField(HttpHeaders.ETAG)).startsWith("W/");
+		page.disconnect();
+	}
+
+	private HttpURLConnection connect(String accept, String ifNoneMatch) throws IOException {
+		URL url = new URL(url(Long.toString(FIRST_ID + COUNT)));
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestProperty(HttpHeaders.ACCEPT, accept);
+		if (ifNoneMatch != null)
+			connection.setRequestProperty(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		return connection;
+	}
+
+	private byte[] get(String accept, String encoding) throws IOException {
+		URL url = new URL(url("?after=" + PartnerPage.encodeCursor(FIRST_ID - 1) + "&limit=" + COUNT));
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		if (accept != null)
+			connection.setRequestProperty(HttpHeaders.ACCEPT, accept);
+		if (encoding != null)
+			connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, encoding);
+		assertEquals(200, connection.getResponseCode());
+		try (InputStream in = connection.getInputStream()) {
+			if (encoding == null)
+				return StreamUtils.copyToByteArray(in);
+			assertEquals(encoding, connection.getHeaderField(HttpHeaders.CONTENT_ENCODING));
+			return StreamUtils.copyToByteArray(new GZIPInputStream(in));
+		} finally {
+			connection.disconnect();
+		}
+	}
+}